@@ -4,25 +4,51 @@ import com.fastfood.management.entity.Delivery;
 import com.fastfood.management.entity.Drone;
 import com.fastfood.management.entity.DroneAssignment;
 import com.fastfood.management.entity.Order;
-import com.fastfood.management.repository.DeliveryRepository;
-import com.fastfood.management.repository.DroneRepository;
+import com.fastfood.management.event.DroneIdleEvent;
+import com.fastfood.management.event.OrderReadyForDeliveryEvent;
 import com.fastfood.management.repository.OrderRepository;
 import com.fastfood.management.service.api.DroneSimulator;
 import com.fastfood.management.service.api.FleetService;
+import com.fastfood.management.service.impl.FleetRegistry;
+import com.fastfood.management.service.impl.OptimisticRetry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Dispatcher gán drone cho đơn READY_FOR_DELIVERY, chạy theo sự kiện:
+ * - OrderReadyForDeliveryEvent (đơn sẵn sàng mà chưa gán được) và DroneIdleEvent (drone vừa xong chuyến) được nhận
+ *   sau khi transaction phát sự kiện commit và kích hoạt một lượt dispatch ngay, không chờ chu kỳ poll.
+ * - Mọi lượt chạy trên một luồng riêng, nối tiếp nhau; nhiều sự kiện đến khi đã có lượt đang chờ thì gộp làm một.
+ *   Lượt chạy sau commit nên thấy dữ liệu mới, và không chạy trong luồng/transaction của bên phát.
+ * - Poll (drone.autoAssign.pollDelayMs, mặc định 30 giây) chỉ còn là lưới an toàn cho thay đổi không phát sự kiện
+ *   (drone mới, sửa tay trạng thái, sự kiện lỡ khi dispatch lỗi).
+ * - Thời gian từ lúc đơn sẵn sàng tới lúc được gán xem qua /actuator/metrics/drone.dispatch.wait.
+ * - Khi context đóng, luồng dispatch dừng nhận lượt mới và được chờ tối đa drone.autoAssign.shutdownTimeoutMs,
+ *   trước khi EntityManagerFactory/TransactionManager mà nó dùng bị đóng.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -30,22 +56,96 @@ public class AutoAssignScheduler {
 
     private final FleetService fleetService;
     private final OrderRepository orderRepository;
-    private final DeliveryRepository deliveryRepository;
-    private final DroneRepository droneRepository;
     private final DroneSimulator droneSimulator;
+    private final OptimisticRetry optimisticRetry;
+    private final FleetRegistry fleetRegistry;
+    private final MeterRegistry meterRegistry;
 
-    private final AtomicBoolean running = new AtomicBoolean(false);
+    // batch: ghép cả lô đơn với drone theo tổng chi phí nhỏ nhất; greedy: gán lần lượt từng đơn cũ nhất
+    @Value("${drone.autoAssign.mode:batch}")
+    private String mode;
+
+    // Số đơn chờ tối đa đưa vào một lần ghép
+    @Value("${drone.autoAssign.batchSize:50}")
+    private int batchSize;
+
+    @Value("${drone.autoAssign.shutdownTimeoutMs:5000}")
+    private long shutdownTimeoutMs;
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "auto-assign");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Đã có một lượt dispatch xếp hàng mà chưa bắt đầu
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderReady(OrderReadyForDeliveryEvent event) {
+        requestDispatch();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDroneIdle(DroneIdleEvent event) {
+        requestDispatch();
+    }
+
+    /**
+     * Đơn đã chờ sẵn từ trước khi khởi động: lượt poll đầu chạy khi FleetRegistry chưa nạp nên không thấy drone IDLE
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        requestDispatch();
+    }
 
     /**
-     * Chu kỳ kiểm tra tự động: mỗi 5 giây (có thể điều chỉnh bằng property `drone.autoAssign.pollDelayMs`).
-     * Lấy tối đa số lượng bằng với số drone IDLE hiện có và auto-assign theo thứ tự đơn cũ nhất.
+     * Lưới an toàn: mỗi 30 giây (property `drone.autoAssign.pollDelayMs`) xếp một lượt dispatch như khi có sự kiện
      */
-    @Scheduled(fixedDelayString = "${drone.autoAssign.pollDelayMs:5000}")
+    @Scheduled(fixedDelayString = "${drone.autoAssign.pollDelayMs:30000}")
     public void pollAndAssign() {
-        if (!running.compareAndSet(false, true)) {
-            return; // tránh job chồng nhau
+        requestDispatch();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Bean này bị huỷ trước các bean nó dùng, nên lượt đang chạy/xếp hàng (tối đa một) vẫn có DB để chạy xong
+        dispatcher.shutdown();
+        try {
+            if (!dispatcher.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Auto-assign dispatcher did not stop within {} ms", shutdownTimeoutMs);
+                dispatcher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            dispatcher.shutdownNow();
+            Thread.currentThread().interrupt();
         }
+    }
+
+    private void requestDispatch() {
+        if (pending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> {
+                    // Hạ cờ trước khi đọc DB: sự kiện đến sau thời điểm này sẽ xếp thêm một lượt
+                    pending.set(false);
+                    dispatch();
+                });
+            } catch (RejectedExecutionException e) {
+                // Context đang đóng: sự kiện commit muộn không còn gì để dispatch
+                pending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Mặc định ghép theo lô (drone.autoAssign.mode=batch); greedy lấy tối đa số lượng bằng với số drone IDLE hiện có
+     * và auto-assign theo thứ tự đơn cũ nhất.
+     */
+    private void dispatch() {
         try {
+            if ("batch".equalsIgnoreCase(mode)) {
+                assignBatch();
+                return;
+            }
             List<Drone> available = fleetService.getAvailableDrones();
             if (available == null || available.isEmpty()) {
                 return;
@@ -65,35 +165,69 @@ public class AutoAssignScheduler {
                     continue;
                 }
 
-                Optional<DroneAssignment> opt = fleetService.autoAssignDrone(order);
+                // Gán + chuyển trạng thái trong một transaction; xung đột version (đơn/drone vừa bị luồng khác
+                // cập nhật) thì đọc lại và chạy lại
+                Optional<DroneAssignment> opt;
+                try {
+                    opt = optimisticRetry.execute("auto-assign order " + order.getId(),
+                            () -> fleetService.dispatchReadyOrder(order.getId()));
+                } catch (IllegalStateException e) {
+                    log.debug("Skip order {}: {}", order.getId(), e.getMessage());
+                    continue; // đơn đã được xử lý ở nơi khác
+                }
                 if (opt.isEmpty()) {
                     break; // hết drone rảnh
                 }
                 DroneAssignment assignment = opt.get();
-
-                // Cập nhật trạng thái order/delivery/drone để bắt đầu giao hàng
-                order.setStatus(Order.OrderStatus.OUT_FOR_DELIVERY);
-                order.setUpdatedAt(LocalDateTime.now());
-                orderRepository.save(order);
-
                 Delivery delivery = assignment.getDelivery();
-                delivery.setStatus(Delivery.DeliveryStatus.IN_PROGRESS);
-                delivery.setCurrentSegment("W0_W1");
-                delivery.setSegmentStartTime(LocalDateTime.now());
-                deliveryRepository.save(delivery);
-
                 Drone drone = assignment.getDrone();
-                drone.setStatus(Drone.DroneStatus.EN_ROUTE_TO_STORE);
-                droneRepository.save(drone);
 
                 // Bắt đầu mô phỏng bay
                 droneSimulator.startSimulation(delivery.getId());
+                recordWait(assignment.getOrder());
                 log.info("Auto-assigned order {} to drone {} and started simulation (delivery {}).", order.getId(), drone.getId(), delivery.getId());
             }
         } catch (Exception e) {
             log.error("Auto-assign scheduler error: {}", e.getMessage());
-        } finally {
-            running.set(false);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gán theo lô: lấy tối đa batchSize đơn chờ cũ nhất và ghép với drone rảnh trong một transaction. Gán lần lượt
+     * dễ để đơn đến trước lấy mất drone duy nhất ở gần một đơn khác, buộc đơn đó dùng drone xa; ghép cả lô tránh được.
+     */
+    private void assignBatch() {
+        if (fleetRegistry.countByStatus().getOrDefault(Drone.DroneStatus.IDLE, 0L) == 0) {
+            return;
+        }
+        Pageable oldestN = PageRequest.of(0, Math.max(1, batchSize), Sort.by(Sort.Direction.ASC, "createdAt"));
+        List<Long> orderIds = orderRepository.findByStatus(Order.OrderStatus.READY_FOR_DELIVERY, oldestN).getContent()
+                .stream()
+                .filter(order -> order.getPaymentStatus() == Order.PaymentStatus.PAID)
+                .map(Order::getId)
+                .toList();
+        if (orderIds.isEmpty()) {
+            return;
+        }
+
+        List<DroneAssignment> assigned = optimisticRetry.execute("batch auto-assign " + orderIds.size() + " orders",
+                () -> fleetService.dispatchReadyOrders(orderIds));
+        for (DroneAssignment assignment : assigned) {
+            Delivery delivery = assignment.getDelivery();
+            droneSimulator.startSimulation(delivery.getId());
+            recordWait(assignment.getOrder());
+            log.info("Auto-assigned order {} to drone {} and started simulation (delivery {}).",
+                    assignment.getOrder().getId(), assignment.getDrone().getId(), delivery.getId());
+        }
+    }
+
+    private void recordWait(Order order) {
+        if (order == null || order.getReadyAt() == null) {
+            return;
+        }
+        Timer.builder("drone.dispatch.wait")
+                .description("Time from an order becoming READY_FOR_DELIVERY to its drone assignment")
+                .register(meterRegistry)
+                .record(Duration.between(order.getReadyAt(), LocalDateTime.now()));
+    }
+}
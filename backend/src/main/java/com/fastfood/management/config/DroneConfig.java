@@ -20,13 +20,35 @@ public class DroneConfig {
     // Assignment mode: AUTO or MANUAL
     private String assignMode = "AUTO";
     
-    // Leg durations in seconds for each segment
+    // Fallback leg durations in seconds, used when a delivery has no waypoint coordinates
     private Map<String, Integer> legDurationSec = Map.of(
         "W0_W1", 90,   // Drone to Store: 1.5 minutes
         "W1_W2", 240,  // Store to Customer: 4 minutes  
         "W2_W3", 120   // Customer to Base: 2 minutes
     );
     
+    // ETA engine (DroneEtaEngine): flight path length relative to the straight line
+    private double pathFactor = 1.10;
+
+    // Nominal cruise speed (km/h), optional per-model override, and clamp bounds after wind
+    private double cruiseSpeedKmh = 30.0;
+    private Map<String, Double> modelSpeedKmh = Map.of();
+    private double minSpeedKmh = 5.0;
+    private double maxSpeedKmh = 60.0;
+
+    // Wind speed (km/h) and the bearing it blows towards (degrees, 0 = north, 90 = east); 0 = calm
+    private double windSpeedKmh = 0.0;
+    private double windToDeg = 0.0;
+
+    // Preparation/take-off before flying to the store, and pickup queue time at the store (seconds)
+    private int takeoffSec = 60;
+    private int storeQueueSec = 0;
+
+    // Range feasibility: share of the remaining range kept in reserve (%), and the estimated weight of one
+    // ordered item used as order payload, since menu items carry no weight
+    private double rangeReservePct = 10.0;
+    private double itemWeightKg = 0.3;
+    
     // Calculated dwell ticks
     public int getDwellTicks() {
         return dwellSecCustomer / gpsTickSec;
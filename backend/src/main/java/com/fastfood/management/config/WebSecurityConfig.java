@@ -134,7 +134,7 @@ public class WebSecurityConfig {
     configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
     configuration.setAllowedHeaders(Arrays.asList("*"));
     configuration.setAllowCredentials(true); // Enable credentials support
-    configuration.setExposedHeaders(Arrays.asList("x-auth-token"));
+    configuration.setExposedHeaders(Arrays.asList("x-auth-token", "X-Next-Cursor"));
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
     source.registerCorsConfiguration("/**", configuration);
     return source;
@@ -11,6 +11,7 @@ import com.fastfood.management.repository.DroneRepository;
 import com.fastfood.management.repository.OrderRepository;
 import com.fastfood.management.service.api.DeliveryService;
 import com.fastfood.management.service.api.DroneSimulator;
+import com.fastfood.management.service.impl.OptimisticRetry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -33,6 +34,7 @@ public class DeliveryController {
     private final DroneRepository droneRepository;
     private final DroneSimulator droneSimulator;
     private final OrderRepository orderRepository;
+    private final OptimisticRetry optimisticRetry;
 
 
     @GetMapping
@@ -61,7 +63,8 @@ public class DeliveryController {
     public ResponseEntity<DeliveryResponse> completeDelivery(@PathVariable Long id) {
         try {
             // Try treating id as a deliveryId first
-            DeliveryResponse delivery = deliveryService.completeDelivery(id);
+            DeliveryResponse delivery = optimisticRetry.execute("complete delivery " + id,
+                    () -> deliveryService.completeDelivery(id));
             return ResponseEntity.ok(delivery);
         } catch (IllegalStateException badState) {
             return ResponseEntity.badRequest().body(null);
@@ -74,7 +77,9 @@ public class DeliveryController {
                 if (linkedDelivery == null) {
                     return ResponseEntity.badRequest().body(new DeliveryResponse());
                 }
-                DeliveryResponse delivery = deliveryService.completeDelivery(linkedDelivery.getId());
+                Long deliveryId = linkedDelivery.getId();
+                DeliveryResponse delivery = optimisticRetry.execute("complete delivery " + deliveryId,
+                        () -> deliveryService.completeDelivery(deliveryId));
                 return ResponseEntity.ok(delivery);
             } catch (IllegalStateException e) {
                 return ResponseEntity.badRequest().body(null);
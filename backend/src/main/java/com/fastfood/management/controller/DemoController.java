@@ -1,11 +1,13 @@
 package com.fastfood.management.controller;
 
 import com.fastfood.management.entity.*;
+import com.fastfood.management.event.OrderReadyForDeliveryEvent;
 import com.fastfood.management.repository.*;
 import com.fastfood.management.service.api.DroneSimulator;
 import com.fastfood.management.service.api.FleetService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -30,6 +32,7 @@ public class DemoController {
     private final DroneAssignmentRepository assignmentRepository;
     private final FleetService fleetService;
     private final DroneSimulator droneSimulator;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * GET /demo/status - Xem trạng thái hệ thống
@@ -113,6 +116,7 @@ public class DemoController {
                         .build();
                 deliveryRepository.save(delivery);
             }
+            eventPublisher.publishEvent(new OrderReadyForDeliveryEvent(orderId, order.getStore().getId()));
 
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -158,7 +162,6 @@ public class DemoController {
             delivery.setStatus(Delivery.DeliveryStatus.IN_PROGRESS);
             delivery.setCurrentSegment("W0_W1");
             delivery.setSegmentStartTime(LocalDateTime.now());
-            delivery.setEtaSeconds(300); // 5 phút
             deliveryRepository.save(delivery);
 
             // Cập nhật drone
@@ -4,11 +4,10 @@ import com.fastfood.management.entity.Delivery;
 import com.fastfood.management.entity.Drone;
 import com.fastfood.management.entity.DroneAssignment;
 import com.fastfood.management.entity.Order;
-import com.fastfood.management.repository.DeliveryRepository;
-import com.fastfood.management.repository.DroneRepository;
 import com.fastfood.management.repository.OrderRepository;
 import com.fastfood.management.service.api.FleetService;
 import com.fastfood.management.service.api.DroneSimulator;
+import com.fastfood.management.service.impl.OptimisticRetry;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -22,7 +21,6 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import java.util.Map;
 import java.util.Optional;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,9 +31,8 @@ public class DroneAssignmentController {
 
     private final FleetService fleetService;
     private final OrderRepository orderRepository;
-    private final DeliveryRepository deliveryRepository;
-    private final DroneRepository droneRepository;
     private final DroneSimulator droneSimulator;
+    private final OptimisticRetry optimisticRetry;
 
     @PostMapping("/auto")
     @PreAuthorize("hasAnyRole('ADMIN','MERCHANT','STAFF')")
@@ -84,14 +81,6 @@ public class DroneAssignmentController {
                         .body(Map.of("success", false, "error", "Order not found by code: " + orderCode));
             }
         }
-        Optional<DroneAssignment> assignedOpt = fleetService.autoAssignDrone(order);
-        if (assignedOpt.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                    .body(Map.of("success", false, "message", "No available drones"));
-        }
-
-        DroneAssignment assignment = assignedOpt.get();
-
         // Optional: immediately start delivery and simulation if client requests
         boolean start = true; // Mặc định tự động bắt đầu mô phỏng cho demo đơn giản
         try {
@@ -101,26 +90,23 @@ public class DroneAssignmentController {
             }
         } catch (Exception ignored) {}
 
-        if (start) {
-            // Update order/delivery/drone statuses to kick off delivery
-            order.setStatus(Order.OrderStatus.OUT_FOR_DELIVERY);
-            order.setUpdatedAt(java.time.LocalDateTime.now());
-            orderRepository.save(order);
-
-            Delivery delivery = assignment.getDelivery();
-            if (delivery != null) {
-                delivery.setStatus(Delivery.DeliveryStatus.IN_PROGRESS);
-                delivery.setCurrentSegment("W0_W1");
-                delivery.setSegmentStartTime(java.time.LocalDateTime.now());
-                deliveryRepository.save(delivery);
-
-                Drone drone = assignment.getDrone();
-                drone.setStatus(Drone.DroneStatus.EN_ROUTE_TO_STORE);
-                droneRepository.save(drone);
+        // Gán (và chuyển sang giao hàng nếu start) trong một transaction, tự chạy lại khi xung đột version
+        final Long targetOrderId = order.getId();
+        Optional<DroneAssignment> assignedOpt = start
+                ? optimisticRetry.execute("auto-assign order " + targetOrderId,
+                        () -> fleetService.dispatchReadyOrder(targetOrderId))
+                : optimisticRetry.execute("auto-assign order " + targetOrderId,
+                        () -> fleetService.autoAssignDrone(orderRepository.findById(targetOrderId)
+                                .orElseThrow(() -> new EntityNotFoundException("Order not found: " + targetOrderId))));
+        if (assignedOpt.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("success", false, "message", "No available drones"));
+        }
 
-                // Start simulation loop
-                droneSimulator.startSimulation(delivery.getId());
-            }
+        DroneAssignment assignment = assignedOpt.get();
+        if (start && assignment.getDelivery() != null) {
+            // Start simulation loop
+            droneSimulator.startSimulation(assignment.getDelivery().getId());
         }
 
         return ResponseEntity.ok(Map.of(
@@ -213,28 +199,16 @@ public class DroneAssignmentController {
             }
 
             Order order = page.getContent().get(0);
-            Optional<DroneAssignment> assignedOpt = fleetService.autoAssignDrone(order);
+            Optional<DroneAssignment> assignedOpt = optimisticRetry.execute("auto-assign order " + order.getId(),
+                    () -> fleetService.dispatchReadyOrder(order.getId()));
             if (assignedOpt.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                         .body(Map.of("success", false, "message", "No available drones"));
             }
 
             DroneAssignment assignment = assignedOpt.get();
-
-            // Chuẩn bị bắt đầu giao hàng đơn giản cho demo
-            order.setStatus(Order.OrderStatus.OUT_FOR_DELIVERY);
-            order.setUpdatedAt(LocalDateTime.now());
-            orderRepository.save(order);
-
             Delivery delivery = assignment.getDelivery();
-            delivery.setStatus(Delivery.DeliveryStatus.IN_PROGRESS);
-            delivery.setCurrentSegment("W0_W1");
-            delivery.setSegmentStartTime(LocalDateTime.now());
-            deliveryRepository.save(delivery);
-
             Drone drone = assignment.getDrone();
-            drone.setStatus(Drone.DroneStatus.EN_ROUTE_TO_STORE);
-            droneRepository.save(drone);
 
             if (start) {
                 droneSimulator.startSimulation(delivery.getId());
@@ -284,26 +258,21 @@ public class DroneAssignmentController {
             }
 
             for (Order order : candidates) {
-                Optional<DroneAssignment> assignedOpt = fleetService.autoAssignDrone(order);
+                Optional<DroneAssignment> assignedOpt;
+                try {
+                    assignedOpt = optimisticRetry.execute("auto-assign order " + order.getId(),
+                            () -> fleetService.dispatchReadyOrder(order.getId()));
+                } catch (IllegalStateException e) {
+                    // Đơn vừa được scheduler/simulator gán trước – bỏ qua
+                    continue;
+                }
                 if (assignedOpt.isEmpty()) {
                     // Hết drone rảnh – dừng vòng lặp
                     break;
                 }
                 DroneAssignment assignment = assignedOpt.get();
-
-                order.setStatus(Order.OrderStatus.OUT_FOR_DELIVERY);
-                order.setUpdatedAt(LocalDateTime.now());
-                orderRepository.save(order);
-
                 Delivery delivery = assignment.getDelivery();
-                delivery.setStatus(Delivery.DeliveryStatus.IN_PROGRESS);
-                delivery.setCurrentSegment("W0_W1");
-                delivery.setSegmentStartTime(LocalDateTime.now());
-                deliveryRepository.save(delivery);
-
                 Drone drone = assignment.getDrone();
-                drone.setStatus(Drone.DroneStatus.EN_ROUTE_TO_STORE);
-                droneRepository.save(drone);
 
                 if (start) {
                     droneSimulator.startSimulation(delivery.getId());
@@ -8,6 +8,7 @@ import com.fastfood.management.repository.DroneAssignmentRepository;
 import com.fastfood.management.repository.DeliveryRepository;
 import com.fastfood.management.service.api.FleetService;
 import com.fastfood.management.service.api.DroneSimulator;
+import com.fastfood.management.service.impl.FleetRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -29,30 +30,29 @@ public class DroneManagementController {
     private final DeliveryRepository deliveryRepository;
     private final FleetService fleetService;
     private final DroneSimulator droneSimulator;
+    private final FleetRegistry fleetRegistry;
 
     /**
-     * GET /api/drone-management/stats - Thống kê số lượng drone theo trạng thái chính
+     * GET /api/drone-management/stats - Thống kê số lượng drone theo trạng thái chính (đọc từ FleetRegistry)
      */
     @GetMapping("/stats")
     public ResponseEntity<?> getFleetStats() {
         try {
-            List<Drone> drones = droneRepository.findAll();
-            Map<String, Long> counts = drones.stream()
-                .collect(Collectors.groupingBy(d -> String.valueOf(d.getStatus()), Collectors.counting()));
-
-            long idle = counts.getOrDefault(String.valueOf(Drone.DroneStatus.IDLE), 0L);
-            long assigned = counts.getOrDefault(String.valueOf(Drone.DroneStatus.ASSIGNED), 0L);
-            long delivering = counts.getOrDefault(String.valueOf(Drone.DroneStatus.EN_ROUTE_TO_STORE), 0L)
-                + counts.getOrDefault(String.valueOf(Drone.DroneStatus.EN_ROUTE_TO_CUSTOMER), 0L)
-                + counts.getOrDefault(String.valueOf(Drone.DroneStatus.ARRIVING), 0L);
-            long returning = counts.getOrDefault(String.valueOf(Drone.DroneStatus.RETURN_TO_BASE), 0L);
+            Map<Drone.DroneStatus, Long> counts = fleetRegistry.countByStatus();
+
+            long idle = counts.getOrDefault(Drone.DroneStatus.IDLE, 0L);
+            long assigned = counts.getOrDefault(Drone.DroneStatus.ASSIGNED, 0L);
+            long delivering = counts.getOrDefault(Drone.DroneStatus.EN_ROUTE_TO_STORE, 0L)
+                + counts.getOrDefault(Drone.DroneStatus.EN_ROUTE_TO_CUSTOMER, 0L)
+                + counts.getOrDefault(Drone.DroneStatus.ARRIVING, 0L);
+            long returning = counts.getOrDefault(Drone.DroneStatus.RETURN_TO_BASE, 0L);
             long charging = 0L; // trạng thái CHARGING chưa được định nghĩa trong DroneStatus
-            long maintenance = counts.getOrDefault(String.valueOf(Drone.DroneStatus.MAINTENANCE), 0L);
-            long offline = counts.getOrDefault(String.valueOf(Drone.DroneStatus.OFFLINE), 0L);
+            long maintenance = counts.getOrDefault(Drone.DroneStatus.MAINTENANCE, 0L);
+            long offline = counts.getOrDefault(Drone.DroneStatus.OFFLINE, 0L);
 
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "total", drones.size(),
+                "total", fleetRegistry.size(),
                 "idleCount", idle,
                 "assignedCount", assigned,
                 "deliveringCount", delivering,
@@ -69,6 +69,7 @@ public class DroneManagementController {
 
     /**
      * GET /api/drone-management/drones - Lấy danh sách drone có hỗ trợ phân trang và lọc trạng thái
+     * Lọc/phân trang trên FleetRegistry trong bộ nhớ, không truy vấn bảng drones.
      */
     @GetMapping("/drones")
     public ResponseEntity<?> getAllDrones(
@@ -79,7 +80,7 @@ public class DroneManagementController {
         try {
             // Nếu không có tham số phân trang, trả về danh sách như trước để giữ tương thích
             if (page == null || size == null) {
-                List<Drone> drones = droneRepository.findAll();
+                List<FleetRegistry.DroneState> drones = fleetRegistry.list(null);
                 List<Map<String, Object>> droneList = drones.stream()
                         .map(this::buildDroneResponse)
                         .collect(Collectors.toList());
@@ -94,58 +95,26 @@ public class DroneManagementController {
             int p = Math.max(0, page);
             int s = Math.max(1, size);
 
-            org.springframework.data.domain.Pageable pageable =
-                    org.springframework.data.domain.PageRequest.of(p, s,
-                            // Sort theo 'id' để tránh lỗi nếu DB chưa có cột 'created_at'
-                            org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.DESC, "id"));
-
-            org.springframework.data.domain.Page<Drone> pageResult;
-
-            Drone.DroneStatus filterStatus = null;
-            java.util.List<Drone.DroneStatus> statusesFilter = null;
+            Set<Drone.DroneStatus> statusesFilter = null;
             if (status != null && !status.isBlank()) {
                 String normalized = status.trim().toUpperCase();
                 // Cho phép "DELIVERING" ánh xạ về nhóm trạng thái vận chuyển
                 if ("DELIVERING".equals(normalized)) {
-                    statusesFilter = java.util.Arrays.asList(
+                    statusesFilter = EnumSet.of(
                             Drone.DroneStatus.EN_ROUTE_TO_STORE,
                             Drone.DroneStatus.EN_ROUTE_TO_CUSTOMER,
                             Drone.DroneStatus.ARRIVING
                     );
                 } else {
                     try {
-                        filterStatus = Drone.DroneStatus.valueOf(normalized);
+                        statusesFilter = EnumSet.of(Drone.DroneStatus.valueOf(normalized));
                     } catch (IllegalArgumentException ignored) {
-                        filterStatus = null;
+                        statusesFilter = null;
                     }
                 }
             }
 
-            try {
-                if (statusesFilter != null && !statusesFilter.isEmpty()) {
-                    pageResult = droneRepository.findByStatusIn(statusesFilter, pageable);
-                } else if (filterStatus != null) {
-                    pageResult = droneRepository.findByStatus(filterStatus, pageable);
-                } else {
-                    pageResult = droneRepository.findAll(pageable);
-                }
-            } catch (Exception repoEx) {
-                log.error("Paged query failed, falling back to in-memory pagination: {}", repoEx.getMessage());
-                // Fallback: load all then paginate in-memory to avoid 500 for legacy schemas
-                List<Drone> all = droneRepository.findAll();
-                final java.util.List<Drone.DroneStatus> statusesFilterFinal = statusesFilter;
-                final Drone.DroneStatus filterStatusFinal = filterStatus;
-                if (statusesFilterFinal != null && !statusesFilterFinal.isEmpty()) {
-                    final java.util.Set<Drone.DroneStatus> set = new java.util.HashSet<>(statusesFilterFinal);
-                    all = all.stream().filter(d -> set.contains(d.getStatus())).collect(Collectors.toList());
-                } else if (filterStatusFinal != null) {
-                    all = all.stream().filter(d -> d.getStatus() == filterStatusFinal).collect(Collectors.toList());
-                }
-                int from = Math.min(p * s, all.size());
-                int to = Math.min(from + s, all.size());
-                List<Drone> slice = all.subList(from, to);
-                pageResult = new org.springframework.data.domain.PageImpl<>(slice, pageable, all.size());
-            }
+            org.springframework.data.domain.Page<FleetRegistry.DroneState> pageResult = fleetRegistry.page(statusesFilter, p, s);
 
             List<Map<String, Object>> droneList = pageResult.getContent().stream()
                     .map(this::buildDroneResponse)
@@ -556,37 +525,36 @@ public class DroneManagementController {
 
     // Helper methods
     private Map<String, Object> buildDroneResponse(Drone drone) {
+        return buildDroneResponse(FleetRegistry.DroneState.of(drone));
+    }
+
+    private Map<String, Object> buildDroneResponse(FleetRegistry.DroneState drone) {
         Map<String, Object> response = new HashMap<>();
-        response.put("id", drone.getId());
-        response.put("serialNumber", drone.getSerialNumber());
-        response.put("model", drone.getModel());
-        response.put("status", String.valueOf(drone.getStatus()));
-        response.put("batteryLevel", drone.getBatteryPct());
-        response.put("currentLat", drone.getCurrentLat());
-        response.put("currentLng", drone.getCurrentLng());
-        response.put("homeLat", drone.getHomeLat());
-        response.put("homeLng", drone.getHomeLng());
-        response.put("maxPayload", drone.getMaxPayloadKg());
-        response.put("maxRange", drone.getMaxRangeKm());
-        response.put("lastAssignedAt", drone.getLastAssignedAt());
-        response.put("isActive", drone.getStatus() != Drone.DroneStatus.MAINTENANCE);
-        
-        // Thêm thông tin assignment hiện tại nếu có
-        try {
-            Optional<DroneAssignment> currentAssignment = fleetService.getCurrentAssignment(drone.getId());
-            if (currentAssignment.isPresent()) {
-                DroneAssignment assignment = currentAssignment.get();
-                if (assignment.getOrder() != null) {
-                    response.put("assignedOrderId", assignment.getOrder().getId());
-                }
-                if (assignment.getDelivery() != null) {
-                    response.put("deliveryId", assignment.getDelivery().getId());
-                }
+        response.put("id", drone.id());
+        response.put("serialNumber", drone.serial());
+        response.put("model", drone.model());
+        response.put("status", String.valueOf(drone.status()));
+        response.put("batteryLevel", drone.batteryPct());
+        response.put("currentLat", drone.currentLat());
+        response.put("currentLng", drone.currentLng());
+        response.put("homeLat", drone.homeLat());
+        response.put("homeLng", drone.homeLng());
+        response.put("maxPayload", drone.maxPayloadKg());
+        response.put("maxRange", drone.maxRangeKm());
+        response.put("lastAssignedAt", drone.lastAssignedAt());
+        response.put("isActive", drone.status() != Drone.DroneStatus.MAINTENANCE);
+
+        // Thêm thông tin assignment hiện tại nếu có (registry giữ assignment đang chạy của từng drone)
+        FleetRegistry.ActiveAssignment currentAssignment = fleetRegistry.currentAssignment(drone.id());
+        if (currentAssignment != null) {
+            if (currentAssignment.orderId() != null) {
+                response.put("assignedOrderId", currentAssignment.orderId());
+            }
+            if (currentAssignment.deliveryId() != null) {
+                response.put("deliveryId", currentAssignment.deliveryId());
             }
-        } catch (Exception ex) {
-            log.warn("getCurrentAssignment failed for drone {}: {}", drone.getId(), ex.getMessage());
         }
-        
+
         return response;
     }
 
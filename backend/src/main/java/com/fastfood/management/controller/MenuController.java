@@ -1,18 +1,35 @@
 package com.fastfood.management.controller;
 
+import com.fastfood.management.dto.response.MenuItemResponse;
+import com.fastfood.management.dto.response.PopularItemResponse;
 import com.fastfood.management.entity.Category;
 import com.fastfood.management.entity.MenuItem;
 import com.fastfood.management.entity.Store;
 import com.fastfood.management.repository.CategoryRepository;
 import com.fastfood.management.repository.MenuItemRepository;
 import com.fastfood.management.repository.StoreRepository;
+import com.fastfood.management.service.impl.CatalogCache;
+import com.fastfood.management.service.impl.MenuBulkService;
+import com.fastfood.management.service.impl.MenuItemJsonCache;
+import com.fastfood.management.service.impl.MenuSearchIndex;
+import com.fastfood.management.service.impl.PopularItemsTracker;
+import com.fastfood.management.service.impl.RatingAggregator;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -25,26 +42,26 @@ public class MenuController {
     private final MenuItemRepository menuItemRepository;
     private final CategoryRepository categoryRepository;
     private final StoreRepository storeRepository;
+    private final PopularItemsTracker popularItemsTracker;
+    private final RatingAggregator ratingAggregator;
+    private final CatalogCache catalogCache;
+    private final MenuSearchIndex menuSearchIndex;
+    private final MenuItemJsonCache menuItemJsonCache;
+    private final MenuBulkService menuBulkService;
+
+    private static final int MAX_POPULAR_LIMIT = 20;
 
     // 
-    // list món ăn.  page/size để phân trang.
+    // list món ăn.  page/size để phân trang. Kết quả đọc qua CatalogCache (kèm ETag)
     @GetMapping("/items")
-    public ResponseEntity<List<MenuItem>> getAvailableItems(
+    public ResponseEntity<byte[]> getAvailableItems(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) Long storeId) {
-        Page<MenuItem> result;
-        if (storeId != null) {
-            Optional<Store> store = storeRepository.findById(storeId);
-            if (store.isPresent()) {
-                result = menuItemRepository.findByStoreAndAvailableTrue(store.get(), PageRequest.of(page, size));
-            } else {
-                result = Page.empty();
-            }
-        } else {
-            result = menuItemRepository.findByAvailableTrue(PageRequest.of(page, size));
-        }
-        return ResponseEntity.ok(result.getContent());
+        return catalogCache.respond(storeId, "items:" + page + ":" + size, () -> menuItemJsonCache.toJsonArray(
+                storeId != null
+                        ? menuItemRepository.findAvailableResponsesByStore(storeId, PageRequest.of(page, size))
+                        : menuItemRepository.findAvailableResponses(PageRequest.of(page, size))));
     }
 
     // 
@@ -54,45 +71,47 @@ public class MenuController {
             @PathVariable Long categoryId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
-        Category category = categoryRepository.findById(categoryId).orElse(null);
-        if (category == null) {
+        ResponseEntity<byte[]> cached = catalogCache.respond(null, "category:" + categoryId + ":" + page + ":" + size, () -> {
+            if (!categoryRepository.existsById(categoryId)) {
+                return null;
+            }
+            return menuItemJsonCache.toJsonArray(
+                    menuItemRepository.findResponsesByCategory(categoryId, PageRequest.of(page, size)));
+        });
+        if (cached == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("message", "Không tìm thấy danh mục"));
         }
-        Page<MenuItem> result = menuItemRepository.findByCategory(category, PageRequest.of(page, size));
-        return ResponseEntity.ok(result.getContent());
+        return cached;
     }
 
     // 
-    // filter  search để tìm món có tên chứa từ khoá
+    // filter  search để tìm món theo tên/mô tả (không dấu, gõ dở, sai một ký tự), xếp theo độ khớp
     @GetMapping("/search")
-    public ResponseEntity<List<MenuItem>> searchByName(
+    public ResponseEntity<byte[]> searchByName(
             @RequestParam String name,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) Long storeId) {
-        Page<MenuItem> result;
-        if (storeId != null) {
-            Optional<Store> store = storeRepository.findById(storeId);
-            if (store.isPresent()) {
-                result = menuItemRepository.findByStoreAndNameContainingAndAvailableTrue(store.get(), name, PageRequest.of(page, size));
-            } else {
-                result = Page.empty();
+            @RequestParam(required = false) Long storeId,
+            @RequestParam(required = false) Long categoryId) {
+        String query = "search:" + page + ":" + size + ":" + categoryId + ":" + name;
+        return catalogCache.respond(storeId, query, () -> {
+            if (menuSearchIndex.isReady()) {
+                return menuItemJsonCache.toJsonArray(rankedItems(menuSearchIndex.search(name, storeId, categoryId, page, size)));
             }
-        } else {
-            result = menuItemRepository.findByNameContainingAndAvailableTrue(name, PageRequest.of(page, size));
-        }
-        return ResponseEntity.ok(result.getContent());
+            // Index chưa nạp xong (vừa khởi động): tìm LIKE như cũ
+            return menuItemJsonCache.toJsonArray(
+                    menuItemRepository.searchAvailableResponses(name, storeId, categoryId, PageRequest.of(page, size)));
+        });
     }
 
     // 
     // Admin endpoint để lấy tất cả menu items (bao gồm cả unavailable)
     @GetMapping("/all")
-    public ResponseEntity<List<MenuItem>> getAllItems(
+    public ResponseEntity<List<MenuItemResponse>> getAllItems(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
-        Page<MenuItem> result = menuItemRepository.findAll(PageRequest.of(page, size));
-        return ResponseEntity.ok(result.getContent());
+        return ResponseEntity.ok(menuItemRepository.findAllResponses(PageRequest.of(page, size)));
     }
 
     // 
@@ -101,7 +120,8 @@ public class MenuController {
     public ResponseEntity<?> createMenuItem(@RequestBody MenuItem menuItem) {
         try {
             MenuItem savedItem = menuItemRepository.save(menuItem);
-            return ResponseEntity.status(HttpStatus.CREATED).body(savedItem);
+            catalogCache.invalidateStore(storeIdOf(savedItem.getStore()));
+            return ResponseEntity.status(HttpStatus.CREATED).body(MenuItemResponse.from(savedItem));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("message", "Không thể tạo menu item: " + e.getMessage()));
@@ -120,6 +140,7 @@ public class MenuController {
 
         try {
             MenuItem item = existingItem.get();
+            Long previousStoreId = storeIdOf(item.getStore());
             item.setName(menuItem.getName());
             item.setDescription(menuItem.getDescription());
             item.setPrice(menuItem.getPrice());
@@ -129,7 +150,9 @@ public class MenuController {
             item.setStore(menuItem.getStore());
             
             MenuItem updatedItem = menuItemRepository.save(item);
-            return ResponseEntity.ok(updatedItem);
+            catalogCache.invalidateStore(previousStoreId);
+            catalogCache.invalidateStore(storeIdOf(updatedItem.getStore()));
+            return ResponseEntity.ok(MenuItemResponse.from(updatedItem));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("message", "Không thể cập nhật menu item: " + e.getMessage()));
@@ -148,6 +171,7 @@ public class MenuController {
 
         try {
             menuItemRepository.deleteById(id);
+            catalogCache.invalidateStore(storeIdOf(existingItem.get().getStore()));
             return ResponseEntity.ok(Map.of("message", "Đã xóa menu item thành công"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -184,6 +208,7 @@ public class MenuController {
             }
             cat.setSortOrder(req.getSortOrder());
             Category saved = categoryRepository.save(cat);
+            catalogCache.invalidateStore(storeIdOf(saved.getStore()));
             return ResponseEntity.status(HttpStatus.CREATED).body(saved);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -201,6 +226,7 @@ public class MenuController {
         }
         try {
             Category cat = existing.get();
+            Long previousStoreId = storeIdOf(cat.getStore());
             if (req.getName() != null && !req.getName().trim().isEmpty()) {
                 cat.setName(req.getName().trim());
             }
@@ -213,6 +239,8 @@ public class MenuController {
                 st.ifPresent(cat::setStore);
             }
             Category updated = categoryRepository.save(cat);
+            catalogCache.invalidateStore(previousStoreId);
+            catalogCache.invalidateStore(storeIdOf(updated.getStore()));
             return ResponseEntity.ok(updated);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -230,6 +258,7 @@ public class MenuController {
         }
         try {
             categoryRepository.deleteById(id);
+            catalogCache.invalidateStore(storeIdOf(existing.get().getStore()));
             return ResponseEntity.ok(Map.of("message", "Đã xóa danh mục thành công"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -244,14 +273,114 @@ public class MenuController {
         return ResponseEntity.ok(stores);
     }
 
+    // Món bán chạy của cửa hàng trong cửa sổ HOUR/DAY/WEEK, đọc từ sketch trong bộ nhớ (không quét order_items)
+    @GetMapping("/popular")
+    public ResponseEntity<?> getPopularItems(
+            @RequestParam Long storeId,
+            @RequestParam(defaultValue = "DAY") String window,
+            @RequestParam(defaultValue = "10") int limit) {
+        PopularItemsTracker.Window w;
+        try {
+            w = PopularItemsTracker.Window.valueOf(window.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", "window phải là HOUR, DAY hoặc WEEK"));
+        }
+        int k = Math.max(1, Math.min(MAX_POPULAR_LIMIT, limit));
+
+        // Lấy dư ứng viên để còn đủ K sau khi bỏ món đã ẩn/xoá
+        List<PopularItemsTracker.PopularItem> ranked = popularItemsTracker.top(storeId, w, k * 2);
+        Map<Long, MenuItem> items = new HashMap<>();
+        menuItemRepository.findAllById(ranked.stream().map(PopularItemsTracker.PopularItem::menuItemId).toList())
+                .forEach(item -> items.put(item.getId(), item));
+
+        List<PopularItemResponse> result = new ArrayList<>(k);
+        for (PopularItemsTracker.PopularItem p : ranked) {
+            MenuItem item = items.get(p.menuItemId());
+            if (item == null || !item.isAvailable()) {
+                continue;
+            }
+            result.add(PopularItemResponse.builder()
+                    .menuItemId(item.getId())
+                    .name(item.getName())
+                    .price(item.getPrice())
+                    .imageUrl(item.getImageUrl())
+                    .count(p.count())
+                    .countError(p.error())
+                    .build());
+            if (result.size() == k) {
+                break;
+            }
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    // Dựng lại tổng hợp đánh giá (rating của món/cửa hàng) từ bảng feedback, dùng khi dữ liệu bị lệch
+    @PostMapping("/ratings/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RatingAggregator.RebuildResult> rebuildRatings() {
+        return ResponseEntity.ok(ratingAggregator.rebuild());
+    }
+
+    // Nhập món hàng loạt: body là CSV (text/csv) hoặc JSON lines (application/x-ndjson), đọc dần và ghi theo lô.
+    // Luôn trả báo cáo từng dòng lỗi; các dòng hợp lệ vẫn được ghi. format sai thì GlobalExceptionHandler trả 400
+    @PostMapping("/items/import")
+    @PreAuthorize("hasAnyRole('MERCHANT', 'STAFF', 'ADMIN')")
+    public ResponseEntity<MenuBulkService.ImportResult> importItems(
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            InputStream body) throws IOException {
+        MenuBulkService.Format resolved = MenuBulkService.Format.resolve(format, contentType);
+        return ResponseEntity.ok(menuBulkService.importItems(body, resolved));
+    }
+
+    // Xuất menu (cả món ngừng bán) cùng định dạng với import, ghi thẳng ra response
+    @GetMapping("/items/export")
+    @PreAuthorize("hasAnyRole('MERCHANT', 'STAFF', 'ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportItems(
+            @RequestParam(required = false) Long storeId,
+            @RequestParam(defaultValue = "csv") String format) {
+        MenuBulkService.Format resolved = MenuBulkService.Format.resolve(format, null);
+        StreamingResponseBody body = out -> menuBulkService.exportItems(storeId, resolved, out);
+        boolean csv = resolved == MenuBulkService.Format.CSV;
+        String filename = "menu-" + (storeId != null ? storeId : "all") + "-" + LocalDate.now() + (csv ? ".csv" : ".jsonl");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(csv
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
     // Lấy chi tiết menu item theo id
     @GetMapping("/items/{id}")
     public ResponseEntity<?> getMenuItemById(@PathVariable Long id) {
-        Optional<MenuItem> item = menuItemRepository.findById(id);
+        Optional<MenuItemResponse> item = menuItemRepository.findResponseById(id);
         if (item.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "Không tìm thấy menu item"));
         }
         return ResponseEntity.ok(item.get());
     }
+
+    private static Long storeIdOf(Store store) {
+        return store != null ? store.getId() : null;
+    }
+
+    private List<MenuItemResponse> rankedItems(MenuSearchIndex.Result result) {
+        List<Long> ids = result.hits().stream().map(MenuSearchIndex.Hit::menuItemId).toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, MenuItemResponse> items = new HashMap<>();
+        menuItemRepository.findResponsesByIdIn(ids).forEach(item -> items.put(item.getId(), item));
+        List<MenuItemResponse> ranked = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MenuItemResponse item = items.get(id);
+            if (item != null) {
+                ranked.add(item);
+            }
+        }
+        return ranked;
+    }
 }
\ No newline at end of file
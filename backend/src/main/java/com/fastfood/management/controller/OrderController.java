@@ -1,9 +1,12 @@
 package com.fastfood.management.controller;
 
 import com.fastfood.management.dto.request.OrderRequest;
+import com.fastfood.management.dto.response.DashboardSnapshot;
 import com.fastfood.management.dto.response.OrderCompactResponse;
-import com.fastfood.management.mapper.OrderMapper;
+import com.fastfood.management.dto.response.OrderCursor;
 import com.fastfood.management.dto.response.OrderResponse;
+import com.fastfood.management.dto.response.OrderTimelineResponse;
+import com.fastfood.management.dto.response.RevenueSeriesResponse;
 import com.fastfood.management.dto.response.DeliveryResponse;
 import com.fastfood.management.entity.Order;
 import com.fastfood.management.entity.User;
@@ -11,18 +14,24 @@ import com.fastfood.management.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import com.fastfood.management.service.api.OrderService;
 import com.fastfood.management.service.api.DeliveryService;
+import com.fastfood.management.service.impl.DashboardMetrics;
+import com.fastfood.management.service.impl.OptimisticRetry;
+import com.fastfood.management.service.impl.OrderIdempotencyService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.Map;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -36,14 +45,30 @@ public class OrderController {
     private final OrderService orderService;
     private final UserRepository userRepository;
     private final DeliveryService deliveryService;
+    private final OrderIdempotencyService orderIdempotencyService;
+    private final OptimisticRetry optimisticRetry;
+    private final DashboardMetrics dashboardMetrics;
+
+    private static final int DEFAULT_HISTORY_LIMIT = 20;
+    private static final int MAX_HISTORY_LIMIT = 100;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @PostMapping
     @PreAuthorize("hasRole('CUSTOMER')")
     public ResponseEntity<?> createOrder(
             @Valid @RequestBody OrderRequest orderRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal org.springframework.security.core.userdetails.User principal) {
         User currentUser = resolveCurrentUser(principal);
-        Order order = orderService.createOrder(orderRequest, currentUser);
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            Order order = orderService.createOrder(orderRequest, currentUser);
+            return ResponseEntity.status(HttpStatus.CREATED).body(order);
+        }
+        // Client retry cùng Idempotency-Key: trả lại đúng đơn đã tạo, không chạy lại createOrder/Payment
+        Long orderId = orderIdempotencyService.createOnce(currentUser, idempotencyKey,
+                OrderIdempotencyService.requestHash(orderRequest),
+                () -> orderService.createOrder(orderRequest, currentUser, idempotencyKey.trim()));
+        Order order = orderService.getOrderById(orderId, currentUser);
         return ResponseEntity.status(HttpStatus.CREATED).body(order);
     }
 
@@ -55,6 +80,23 @@ public class OrderController {
         return ResponseEntity.ok(order);
     }
 
+    // Mốc thời gian từng giai đoạn của đơn (đọc từ cột timestamp trên orders) + thời lượng SLA bếp/giao hàng
+    @GetMapping("/{id}/timeline")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<OrderTimelineResponse> getOrderTimeline(@PathVariable Long id, @AuthenticationPrincipal org.springframework.security.core.userdetails.User principal) {
+        User currentUser = resolveCurrentUser(principal);
+        return ResponseEntity.ok(orderService.getOrderTimeline(id, currentUser));
+    }
+
+    // Các trạng thái kế tiếp user hiện tại được phép chuyển (UI bếp dùng để hiển thị nút thao tác)
+    @GetMapping("/{id}/next-statuses")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> getAllowedNextStatuses(@PathVariable Long id, @AuthenticationPrincipal org.springframework.security.core.userdetails.User principal) {
+        User currentUser = resolveCurrentUser(principal);
+        List<Order.OrderStatus> next = orderService.getAllowedNextStatuses(id, currentUser);
+        return ResponseEntity.ok(Map.of("orderId", id, "nextStatuses", next));
+    }
+
     @PostMapping("/{id}/complete")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ResponseEntity<?> completeOrder(
@@ -78,7 +120,9 @@ public class OrderController {
 
             // Nếu có delivery gắn với order, hoàn tất delivery (đồng thời set order DELIVERED ở service)
             if (order.getDelivery() != null) {
-                DeliveryResponse dr = deliveryService.completeDelivery(order.getDelivery().getId());
+                Long deliveryId = order.getDelivery().getId();
+                DeliveryResponse dr = optimisticRetry.execute("complete delivery " + deliveryId,
+                        () -> deliveryService.completeDelivery(deliveryId));
                 return ResponseEntity.ok(Map.of(
                         "success", true,
                         "orderId", order.getId(),
@@ -88,7 +132,8 @@ public class OrderController {
             }
 
             // Nếu không có delivery, chỉ cập nhật trạng thái đơn hàng sang DELIVERED
-            Order updated = orderService.updateOrderStatus(id, Order.OrderStatus.DELIVERED, currentUser);
+            Order updated = optimisticRetry.execute("complete order " + id,
+                    () -> orderService.updateOrderStatus(id, Order.OrderStatus.DELIVERED, currentUser));
             return ResponseEntity.ok(Map.of(
                     "success", true,
                     "orderId", updated.getId(),
@@ -121,27 +166,33 @@ public class OrderController {
         }
     }
 
+    // Lịch sử đơn phân trang keyset: trả mảng như cũ, con trỏ trang kế tiếp nằm ở header X-Next-Cursor
     @GetMapping("/me")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ResponseEntity<List<Order>> getMyOrders(
             @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_HISTORY_LIMIT) int limit,
             @AuthenticationPrincipal org.springframework.security.core.userdetails.User principal) {
         User currentUser = resolveUser(principal, userId);
-        List<Order> orders = orderService.listMyOrders(currentUser);
-        return ResponseEntity.ok(orders);
+        int pageSize = clampHistoryLimit(limit);
+        List<Order> orders = orderService.listMyOrders(currentUser, OrderCursor.decode(cursor), pageSize);
+        Order last = orders.size() == pageSize ? orders.get(orders.size() - 1) : null;
+        return withNextCursor(last != null ? new OrderCursor(last.getCreatedAt(), last.getId()) : null).body(orders);
     }
 
     @GetMapping("/me/compact")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ResponseEntity<List<OrderCompactResponse>> getMyOrdersCompact(
             @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_HISTORY_LIMIT) int limit,
             @AuthenticationPrincipal org.springframework.security.core.userdetails.User principal) {
         User currentUser = resolveUser(principal, userId);
-        List<Order> orders = orderService.listMyOrders(currentUser);
-        List<OrderCompactResponse> response = orders.stream()
-                .map(OrderMapper::toCompact)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(response);
+        int pageSize = clampHistoryLimit(limit);
+        List<OrderCompactResponse> orders = orderService.listMyOrdersCompact(currentUser, OrderCursor.decode(cursor), pageSize);
+        OrderCompactResponse last = orders.size() == pageSize ? orders.get(orders.size() - 1) : null;
+        return withNextCursor(last != null ? new OrderCursor(last.getCreatedAt(), last.getId()) : null).body(orders);
     }
 
     @DeleteMapping("/{id}")
@@ -151,7 +202,7 @@ public class OrderController {
             @RequestParam(required = false) String reason,
             @AuthenticationPrincipal org.springframework.security.core.userdetails.User principal) {
         User currentUser = resolveCurrentUser(principal);
-        orderService.cancelOrder(id, reason, currentUser);
+        optimisticRetry.run("cancel order " + id, () -> orderService.cancelOrder(id, reason, currentUser));
         return ResponseEntity.ok(Map.of("message", "Huỷ đơn hàng thành công"));
     }
 
@@ -179,7 +230,9 @@ public class OrderController {
                 normalized = "READY_FOR_DELIVERY";
             }
             Order.OrderStatus targetStatus = Order.OrderStatus.valueOf(normalized);
-            Order updatedOrder = orderService.updateOrderStatus(id, targetStatus, currentUser);
+            // Scheduler/simulator có thể cập nhật cùng đơn: xung đột version thì đọc lại và kiểm tra lại bước chuyển
+            Order updatedOrder = optimisticRetry.execute("update order " + id + " to " + targetStatus,
+                    () -> orderService.updateOrderStatus(id, targetStatus, currentUser));
             return ResponseEntity.ok(updatedOrder);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -219,14 +272,20 @@ public class OrderController {
     // Merchant view: list orders by status with pagination
     @GetMapping("/status")
     @PreAuthorize("hasAnyRole('MERCHANT', 'STAFF', 'ADMIN')")
-    public ResponseEntity<Page<OrderResponse>> getOrdersByStatus(
+    public ResponseEntity<?> getOrdersByStatus(
             @RequestParam("status") String status,
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "20") int size,
             @RequestParam(value = "code", required = false) String code,
-            @RequestParam(value = "storeId", required = false) Long storeId) {
+            @RequestParam(value = "storeId", required = false) Long storeId,
+            @RequestParam(value = "slice", defaultValue = "false") boolean slice) {
         Order.OrderStatus queryStatus = Order.OrderStatus.valueOf(status.toUpperCase());
-        Page<OrderResponse> orders = orderService.getOrdersByStatus(queryStatus, PageRequest.of(page, size), code, storeId);
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by("createdAt", "id"));
+        if (slice && (code == null || code.isBlank())) {
+            // Bảng bếp poll liên tục: bỏ count(*), chỉ cần biết còn trang sau hay không (hasNext)
+            return ResponseEntity.ok(orderService.sliceOrdersByStatus(queryStatus, pageRequest, storeId));
+        }
+        Page<OrderResponse> orders = orderService.getOrdersByStatus(queryStatus, pageRequest, code, storeId);
         return ResponseEntity.ok(orders);
     }
 
@@ -238,24 +297,7 @@ public class OrderController {
             @RequestParam(value = "start", required = false) String start,
             @RequestParam(value = "end", required = false) String end) {
         try {
-            LocalDateTime startDt = null;
-            LocalDateTime endDt = null;
-            if (start != null && !start.isBlank()) {
-                // Accept either ISO LocalDate or ISO LocalDateTime
-                try {
-                    startDt = LocalDate.parse(start).atStartOfDay();
-                } catch (DateTimeParseException ex) {
-                    startDt = LocalDateTime.parse(start);
-                }
-            }
-            if (end != null && !end.isBlank()) {
-                try {
-                    endDt = LocalDate.parse(end).atTime(23, 59, 59);
-                } catch (DateTimeParseException ex) {
-                    endDt = LocalDateTime.parse(end);
-                }
-            }
-            var stats = orderService.getOrderStats(storeId, startDt, endDt);
+            var stats = orderService.getOrderStats(storeId, parseStart(start), parseEnd(end));
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -265,6 +307,94 @@ public class OrderController {
                     ));
         }
     }
+
+    // Chuỗi số đơn/doanh thu theo giờ hoặc ngày cho biểu đồ của merchant
+    @GetMapping("/stats/series")
+    @PreAuthorize("hasAnyRole('MERCHANT', 'STAFF', 'ADMIN')")
+    public ResponseEntity<?> getRevenueSeries(
+            @RequestParam(value = "storeId", required = false) Long storeId,
+            @RequestParam(value = "start", required = false) String start,
+            @RequestParam(value = "end", required = false) String end,
+            @RequestParam(value = "bucket", defaultValue = "DAY") String bucket) {
+        try {
+            RevenueSeriesResponse.Bucket b = RevenueSeriesResponse.Bucket.valueOf(bucket.trim().toUpperCase());
+            return ResponseEntity.ok(orderService.getRevenueSeries(storeId, parseStart(start), parseEnd(end), b));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of(
+                            "error", "INVALID_PARAMS",
+                            "message", String.valueOf(e.getMessage())
+                    ));
+        }
+    }
+
+    // Xuất CSV đơn hàng: ghi thẳng ra response theo từng dòng, không dựng list trong bộ nhớ
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('MERCHANT', 'STAFF', 'ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrdersCsv(
+            @RequestParam(value = "storeId", required = false) Long storeId,
+            @RequestParam(value = "start", required = false) String start,
+            @RequestParam(value = "end", required = false) String end) {
+        // Kiểu trả về phải là ResponseEntity<StreamingResponseBody> để Spring ghi body dạng stream;
+        // tham số sai thì để GlobalExceptionHandler trả 400
+        LocalDateTime startDt;
+        LocalDateTime endDt;
+        try {
+            startDt = parseStart(start);
+            endDt = parseEnd(end);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        StreamingResponseBody body = out -> orderService.exportOrdersCsv(storeId, startDt, endDt, out);
+        String filename = "orders-" + (storeId != null ? storeId : "all") + "-" + LocalDate.now() + ".csv";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(new MediaType("text", "csv", java.nio.charset.StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    // Chấp nhận ISO LocalDate hoặc ISO LocalDateTime; end dạng ngày tính tới hết ngày
+    private static LocalDateTime parseStart(String start) {
+        if (start == null || start.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(start).atStartOfDay();
+        } catch (DateTimeParseException ex) {
+            return LocalDateTime.parse(start);
+        }
+    }
+
+    private static LocalDateTime parseEnd(String end) {
+        if (end == null || end.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(end).atTime(23, 59, 59);
+        } catch (DateTimeParseException ex) {
+            return LocalDateTime.parse(end);
+        }
+    }
+
+    // Trạng thái ban đầu cho dashboard admin; các thay đổi sau đó được đẩy qua /topic/admin/dashboard
+    @GetMapping("/dashboard")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<DashboardSnapshot> getDashboard() {
+        return ResponseEntity.ok(dashboardMetrics.snapshot());
+    }
+
+    private static int clampHistoryLimit(int limit) {
+        return Math.max(1, Math.min(MAX_HISTORY_LIMIT, limit));
+    }
+
+    private static ResponseEntity.BodyBuilder withNextCursor(OrderCursor next) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (next != null) {
+            builder.header(NEXT_CURSOR_HEADER, next.encode());
+        }
+        return builder;
+    }
+
     private User resolveCurrentUser(org.springframework.security.core.userdetails.User principal) {
         if (principal == null) {
             throw new EntityNotFoundException("Authenticated principal not found");
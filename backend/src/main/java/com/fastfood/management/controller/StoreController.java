@@ -1,17 +1,18 @@
 package com.fastfood.management.controller;
 
-import com.fastfood.management.entity.MenuItem;
 import com.fastfood.management.entity.Store;
 import com.fastfood.management.repository.MenuItemRepository;
 import com.fastfood.management.repository.StoreRepository;
+import com.fastfood.management.service.impl.CatalogCache;
+import com.fastfood.management.service.impl.MenuItemJsonCache;
+import com.fastfood.management.service.impl.MenuSnapshotStore;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,13 +22,16 @@ public class StoreController {
 
     private final StoreRepository storeRepository;
     private final MenuItemRepository menuItemRepository;
+    private final CatalogCache catalogCache;
+    private final MenuItemJsonCache menuItemJsonCache;
+    private final MenuSnapshotStore menuSnapshotStore;
 
     @GetMapping
-    public ResponseEntity<List<Store>> listStores(@RequestParam(name = "open", required = false) Boolean open) {
-        if (Boolean.TRUE.equals(open)) {
-            return ResponseEntity.ok(storeRepository.findByStatus(Store.StoreStatus.ACTIVE));
-        }
-        return ResponseEntity.ok(storeRepository.findAll());
+    public ResponseEntity<byte[]> listStores(@RequestParam(name = "open", required = false) Boolean open) {
+        boolean onlyOpen = Boolean.TRUE.equals(open);
+        return catalogCache.respond(null, "stores:" + onlyOpen, () -> onlyOpen
+                ? storeRepository.findByStatus(Store.StoreStatus.ACTIVE)
+                : storeRepository.findAll());
     }
 
     @GetMapping("/{id}")
@@ -40,18 +44,30 @@ public class StoreController {
         return ResponseEntity.ok(store);
     }
 
+    // Không truyền page/size: trả cả menu từ snapshot nén sẵn (MenuSnapshotStore); có phân trang thì đọc qua CatalogCache
     @GetMapping("/{id}/menu")
     public ResponseEntity<?> getStoreMenu(
             @PathVariable Long id,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
-        Store store = storeRepository.findById(id).orElse(null);
-        if (store == null) {
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ResponseEntity<byte[]> body;
+        if (page == null && size == null) {
+            body = menuSnapshotStore.respond(id, acceptEncoding);
+        } else {
+            PageRequest pageable = PageRequest.of(page != null ? page : 0, size != null ? size : 10);
+            body = catalogCache.respond(id, "store-menu:" + pageable.getPageNumber() + ":" + pageable.getPageSize(), () -> {
+                if (!storeRepository.existsById(id)) {
+                    return null;
+                }
+                return menuItemJsonCache.toJsonArray(menuItemRepository.findAvailableResponsesByStore(id, pageable));
+            });
+        }
+        if (body == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", "Không tìm thấy cửa hàng"));
         }
-        Page<MenuItem> result = menuItemRepository.findByStoreAndAvailableTrue(store, PageRequest.of(page, size));
-        return ResponseEntity.ok(result.getContent());
+        return body;
     }
 
     // Cập nhật ảnh cửa hàng (imageUrl)
@@ -69,6 +85,7 @@ public class StoreController {
         }
         store.setImageUrl(imageUrl);
         Store saved = storeRepository.save(store);
+        catalogCache.invalidateStore(id);
         return ResponseEntity.ok(saved);
     }
 
@@ -113,6 +130,7 @@ public class StoreController {
         }
 
         Store saved = storeRepository.save(store);
+        catalogCache.invalidateStore(id);
         return ResponseEntity.ok(saved);
     }
 
@@ -0,0 +1,35 @@
+package com.fastfood.management.dto.response;
+
+import com.fastfood.management.entity.Delivery;
+import com.fastfood.management.entity.Order;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ảnh chụp bộ đếm dashboard admin (số đơn/delivery hiện đang ở mỗi trạng thái, doanh thu đơn DELIVERED)
+ */
+@Data
+@Builder
+public class DashboardSnapshot {
+    private LocalDateTime generatedAt;
+
+    private Map<Order.OrderStatus, Long> ordersByStatus;
+    private Map<Delivery.DeliveryStatus, Long> deliveriesByStatus;
+    private BigDecimal deliveredRevenue;
+
+    private List<StoreDashboard> stores;
+
+    @Data
+    @Builder
+    public static class StoreDashboard {
+        private Long storeId;
+        private Map<Order.OrderStatus, Long> ordersByStatus;
+        private Map<Delivery.DeliveryStatus, Long> deliveriesByStatus;
+        private BigDecimal deliveredRevenue;
+    }
+}
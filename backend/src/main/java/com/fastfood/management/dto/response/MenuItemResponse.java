@@ -1,10 +1,20 @@
 package com.fastfood.management.dto.response;
 
+import com.fastfood.management.entity.MenuItem;
+import com.fastfood.management.entity.RatingSummary;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 
+/**
+ * Món ăn trả cho các API menu công khai: chỉ các cột cần hiển thị, category/store rút gọn còn id + tên
+ * (không kéo theo Store.manager). Được dựng trực tiếp bằng projection trong MenuItemRepository.
+ */
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class MenuItemResponse {
     private Long id;
     private String name;
@@ -12,5 +22,28 @@ public class MenuItemResponse {
     private BigDecimal price;
     private String imageUrl;
     private boolean available;
-    private CategoryResponse category;
-}
\ No newline at end of file
+    private Ref category;
+    private Ref store;
+    private RatingSummary rating;
+
+    public record Ref(Long id, String name) {
+    }
+
+    // Constructor cho JPQL "select new": các cột phẳng của menu_items + category + store
+    public MenuItemResponse(Long id, String name, String description, BigDecimal price, String imageUrl,
+                            Boolean available, Long categoryId, String categoryName, Long storeId, String storeName,
+                            Long ratingCount, Long ratingSum, Long star1, Long star2, Long star3, Long star4, Long star5) {
+        this(id, name, description, price, imageUrl, Boolean.TRUE.equals(available),
+                categoryId != null ? new Ref(categoryId, categoryName) : null,
+                storeId != null ? new Ref(storeId, storeName) : null,
+                ratingCount != null ? new RatingSummary(ratingCount, ratingSum, star1, star2, star3, star4, star5) : null);
+    }
+
+    public static MenuItemResponse from(MenuItem item) {
+        return new MenuItemResponse(item.getId(), item.getName(), item.getDescription(), item.getPrice(),
+                item.getImageUrl(), item.isAvailable(),
+                item.getCategory() != null ? new Ref(item.getCategory().getId(), item.getCategory().getName()) : null,
+                item.getStore() != null ? new Ref(item.getStore().getId(), item.getStore().getName()) : null,
+                item.getRating());
+    }
+}
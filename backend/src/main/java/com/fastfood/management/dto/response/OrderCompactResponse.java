@@ -1,5 +1,6 @@
 package com.fastfood.management.dto.response;
 
+import com.fastfood.management.entity.Order;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,6 +22,15 @@ public class OrderCompactResponse {
     private LocalDateTime createdAt;
     private List<Item> orderItems;
 
+    // Dùng cho projection JPQL (select new ...): items được gắn sau bằng một truy vấn IN theo orderId
+    public OrderCompactResponse(Long id, String orderCode, Order.OrderStatus status, BigDecimal total, LocalDateTime createdAt) {
+        this.id = id;
+        this.orderCode = orderCode;
+        this.status = status != null ? status.name() : "CREATED";
+        this.total = total != null ? total : BigDecimal.ZERO;
+        this.createdAt = createdAt;
+    }
+
     @Data
     @Builder
     @NoArgsConstructor
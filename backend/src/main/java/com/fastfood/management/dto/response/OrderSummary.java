@@ -0,0 +1,20 @@
+package com.fastfood.management.dto.response;
+
+import com.fastfood.management.entity.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projection cho danh sách đơn admin/bếp: chỉ các cột OrderResponse cần,
+ * không nạp customer/store/address/items.
+ */
+public record OrderSummary(
+        Long id,
+        String orderCode,
+        Order.OrderStatus status,
+        BigDecimal totalAmount,
+        Order.PaymentMethod paymentMethod,
+        Order.PaymentStatus paymentStatus,
+        LocalDateTime createdAt) {
+}
@@ -0,0 +1,30 @@
+package com.fastfood.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class OrderTimelineResponse {
+    private Long orderId;
+    private String orderCode;
+    private String status;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime confirmedAt;
+    private LocalDateTime preparingAt;
+    private LocalDateTime readyAt;
+    private LocalDateTime assignedAt;
+    private LocalDateTime outForDeliveryAt;
+    private LocalDateTime deliveredAt;
+    private LocalDateTime closedAt; // CANCELLED / REJECTED / FAILED
+
+    // Thời lượng từng giai đoạn (giây), null nếu đơn chưa tới mốc đó
+    private Long acceptSeconds;        // CREATED -> CONFIRMED
+    private Long kitchenSeconds;       // CONFIRMED -> READY_FOR_DELIVERY
+    private Long waitForDroneSeconds;  // READY_FOR_DELIVERY -> OUT_FOR_DELIVERY
+    private Long deliverySeconds;      // OUT_FOR_DELIVERY -> DELIVERED
+    private Long totalSeconds;         // CREATED -> DELIVERED
+}
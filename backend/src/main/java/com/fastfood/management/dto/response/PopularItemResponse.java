@@ -0,0 +1,19 @@
+package com.fastfood.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class PopularItemResponse {
+    private Long menuItemId;
+    private String name;
+    private BigDecimal price;
+    private String imageUrl;
+
+    // Số lượng bán ước lượng trong cửa sổ (Space-Saving: không thấp hơn số thật, lệch tối đa countError)
+    private Long count;
+    private Long countError;
+}
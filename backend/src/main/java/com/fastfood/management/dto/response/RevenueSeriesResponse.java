@@ -0,0 +1,31 @@
+package com.fastfood.management.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class RevenueSeriesResponse {
+    private Long storeId;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private Bucket bucket;
+
+    // Đủ mọi bucket trong khoảng (bucket không có đơn = 0) để vẽ biểu đồ trực tiếp
+    private List<Point> points;
+
+    public enum Bucket {
+        HOUR, DAY
+    }
+
+    /**
+     * bucketStart: đầu giờ/đầu ngày; orderCount: số đơn tạo trong bucket;
+     * deliveredCount/revenue: các đơn đó đã DELIVERED
+     */
+    public record Point(LocalDateTime bucketStart, long orderCount, long deliveredCount, BigDecimal revenue) {
+    }
+}
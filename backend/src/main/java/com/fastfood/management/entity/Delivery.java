@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import com.fastfood.management.entity.listener.DeliveryStatsListener;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -20,7 +24,7 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, DeliveryStatsListener.class})
 public class Delivery {
     
     @Id
@@ -101,6 +105,18 @@ public class Delivery {
     @LastModifiedDate
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    // Khoá lạc quan: scheduler, simulator và thao tác tay cùng cập nhật một dòng
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Trạng thái đang lưu trong DB (DeliveryStatsListener ghi lại khi load/flush) để báo đúng bước chuyển cho dashboard
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private DeliveryStatus persistedStatus;
     
     public enum DeliveryStatus {
         PENDING,     // Chờ gán drone
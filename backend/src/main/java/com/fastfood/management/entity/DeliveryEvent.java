@@ -25,7 +25,9 @@ import java.time.LocalDateTime;
 public class DeliveryEvent {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "delivery_events_id")
+    @TableGenerator(name = "delivery_events_id", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "delivery_events", allocationSize = 50)
     private Long id;
     
     @ManyToOne
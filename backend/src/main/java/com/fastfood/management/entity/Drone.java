@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import com.fastfood.management.entity.listener.FleetRegistryListener;
 
 import java.time.LocalDateTime;
 
@@ -17,7 +18,7 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, FleetRegistryListener.class})
 public class Drone {
 
     @Id
@@ -65,6 +66,11 @@ public class Drone {
     @Column(name = "last_seen_at")
     private LocalDateTime lastSeenAt;
 
+    // Khoá lạc quan: scheduler, simulator và thao tác tay cùng cập nhật một dòng
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public enum DroneStatus {
         OFFLINE,              // Drone không hoạt động
         IDLE,                 // Drone rảnh, sẵn sàng nhận nhiệm vụ
@@ -0,0 +1,18 @@
+package com.fastfood.management.entity;
+
+import org.hibernate.annotations.ValueGenerationType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Đánh dấu cột order_code được sinh ngay trong câu INSERT (ORD-YYYYMMDD-ID),
+ * dựa trên id đã cấp phát sẵn từ bảng id_generators.
+ */
+@ValueGenerationType(generatedBy = OrderCodeGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface GeneratedOrderCode {
+}
@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fastfood.management.entity.listener.MenuSearchIndexListener;
 
 import java.math.BigDecimal;
 
@@ -16,6 +17,7 @@ import java.math.BigDecimal;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners(MenuSearchIndexListener.class)
 public class MenuItem {
     
     @Id
@@ -44,4 +46,8 @@ public class MenuItem {
     @ManyToOne
     @JoinColumn(name = "store_id")
     private Store store;
+
+    // Tổng hợp đánh giá của món, RatingAggregator cập nhật khi có feedback
+    @Embedded
+    private RatingSummary rating;
 }
\ No newline at end of file
@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import com.fastfood.management.entity.listener.OrderStatsListener;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -16,16 +20,31 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(
+        name = "orders",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uq_orders_customer_idem_key", columnNames = {"customer_id", "idempotency_key"})
+        },
+        indexes = {
+                // Keyset phân trang lịch sử đơn của khách (createdAt, id) giảm dần
+                @Index(name = "idx_orders_customer_created", columnList = "customer_id, created_at, id"),
+                // Danh sách bếp/admin theo cửa hàng + trạng thái, sắp theo thời gian tạo
+                @Index(name = "idx_orders_store_status_created", columnList = "store_id, status, created_at"),
+                // Phần thống kê tính trực tiếp (hôm nay, mép ngày lẻ) theo cửa hàng + thời gian tạo
+                @Index(name = "idx_orders_store_created", columnList = "store_id, created_at")
+        }
+)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, OrderStatsListener.class})
 public class Order {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
     
     @ManyToOne
@@ -52,6 +71,7 @@ public class Order {
     private PaymentStatus paymentStatus;
 
     @Column(name = "order_code", unique = true)
+    @GeneratedOrderCode
     private String orderCode;
     
     @ManyToOne
@@ -60,6 +80,16 @@ public class Order {
     
     @Column(columnDefinition = "TEXT")
     private String note;
+
+    // Idempotency-Key do client gửi khi checkout (dedupe retry), duy nhất theo khách hàng
+    @Column(name = "idempotency_key", length = 64)
+    @JsonIgnore
+    private String idempotencyKey;
+
+    // SHA-256 nội dung request đi kèm Idempotency-Key: key dùng lại cho request khác thì bị từ chối
+    @Column(name = "idempotency_hash", length = 64)
+    @JsonIgnore
+    private String idempotencyHash;
     
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
@@ -76,6 +106,64 @@ public class Order {
     @LastModifiedDate
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    // Thời điểm đơn vào từng trạng thái (ghi một lần khi chuyển), dùng cho timeline/SLA thay vì đọc order_activity
+    @Column(name = "confirmed_at")
+    private LocalDateTime confirmedAt;
+
+    @Column(name = "preparing_at")
+    private LocalDateTime preparingAt;
+
+    @Column(name = "ready_at")
+    private LocalDateTime readyAt;
+
+    @Column(name = "assigned_at")
+    private LocalDateTime assignedAt;
+
+    @Column(name = "out_for_delivery_at")
+    private LocalDateTime outForDeliveryAt;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    // CANCELLED / REJECTED / FAILED
+    @Column(name = "closed_at")
+    private LocalDateTime closedAt;
+
+    // Khoá lạc quan: scheduler, simulator và thao tác tay cùng cập nhật một dòng
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Trạng thái đang lưu trong DB (OrderStatsListener ghi lại khi load/flush) để biết đơn chuyển từ nhóm nào
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private OrderStatus persistedStatus;
+    
+    /**
+     * Đổi trạng thái và ghi thời điểm vào trạng thái đó (lần đầu). Mọi đường cập nhật status
+     * (service, scheduler, simulator) đều đi qua setter này, kể cả các bước trung gian trong cùng transaction.
+     */
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+        if (status == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        switch (status) {
+            case CONFIRMED -> confirmedAt = confirmedAt != null ? confirmedAt : now;
+            case PREPARING -> preparingAt = preparingAt != null ? preparingAt : now;
+            case READY_FOR_DELIVERY -> readyAt = readyAt != null ? readyAt : now;
+            case ASSIGNED -> assignedAt = assignedAt != null ? assignedAt : now;
+            case OUT_FOR_DELIVERY -> outForDeliveryAt = outForDeliveryAt != null ? outForDeliveryAt : now;
+            case DELIVERED -> deliveredAt = deliveredAt != null ? deliveredAt : now;
+            case REJECTED, CANCELLED, FAILED -> closedAt = closedAt != null ? closedAt : now;
+            default -> {
+            }
+        }
+    }
     
     public enum OrderStatus {
         CREATED, CONFIRMED, PREPARING,
@@ -20,7 +20,9 @@ import java.time.LocalDateTime;
 public class OrderActivity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_activity_id")
+    @TableGenerator(name = "order_activity_id", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "order_activity", allocationSize = 50)
     private Long id;
 
     @ManyToOne
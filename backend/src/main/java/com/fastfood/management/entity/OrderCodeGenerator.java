@@ -0,0 +1,32 @@
+package com.fastfood.management.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+
+/**
+ * Sinh order code trước khi INSERT để không cần thêm một câu UPDATE sau khi có id.
+ * Chỉ hoạt động với id cấp phát trước (pooled), không dùng được với IDENTITY.
+ */
+public class OrderCodeGenerator implements BeforeExecutionGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        if (currentValue != null) {
+            return currentValue;
+        }
+        Order order = (Order) owner;
+        String datePart = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        return "ORD-" + datePart + "-" + order.getId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -0,0 +1,53 @@
+package com.fastfood.management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tổng hợp đơn theo cửa hàng + ngày tạo đơn: số đơn đang ở mỗi nhóm trạng thái và doanh thu đơn DELIVERED.
+ * Được cộng dồn khi đơn đổi trạng thái (OrderStatsListener), thống kê các ngày đã qua đọc từ đây
+ * thay vì quét lại bảng orders.
+ */
+@Entity
+@Table(
+        name = "order_daily_stats",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uq_order_daily_stats_store_day", columnNames = {"store_id", "stat_date"})
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDailyStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "store_id", nullable = false)
+    private Long storeId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    // CREATED .. OUT_FOR_DELIVERY
+    @Column(name = "processing_count", nullable = false)
+    private Long processingCount;
+
+    @Column(name = "delivered_count", nullable = false)
+    private Long deliveredCount;
+
+    // CANCELLED / REJECTED / FAILED
+    @Column(name = "cancelled_count", nullable = false)
+    private Long cancelledCount;
+
+    @Column(name = "delivered_revenue", nullable = false, precision = 14, scale = 2)
+    private BigDecimal deliveredRevenue;
+}
@@ -0,0 +1,44 @@
+package com.fastfood.management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot định kỳ của sketch món bán chạy cho một slot thời gian (store, cửa sổ, đầu slot),
+ * để khởi động lại không mất thứ hạng "đang hot".
+ */
+@Entity
+@Table(
+        name = "popular_item_snapshots",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uq_popular_item_snapshots_slot", columnNames = {"store_id", "window_name", "slot_start"})
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PopularItemSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "store_id", nullable = false)
+    private Long storeId;
+
+    @Column(name = "window_name", nullable = false, length = 16)
+    private String windowName;
+
+    @Column(name = "slot_start", nullable = false)
+    private LocalDateTime slotStart;
+
+    // "menuItemId:count:error,..."
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+}
@@ -0,0 +1,51 @@
+package com.fastfood.management.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tổng hợp đánh giá (số lượt, tổng điểm, số lượt theo từng mức 1-5) nhúng trong MenuItem/Store.
+ * Chỉ RatingAggregator ghi các cột này bằng câu UPDATE cộng dồn, nên insert/update entity bỏ qua chúng.
+ */
+@Embeddable
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingSummary {
+
+    @Column(name = "rating_count", insertable = false, updatable = false)
+    private Long count;
+
+    @Column(name = "rating_sum", insertable = false, updatable = false)
+    private Long sum;
+
+    @Column(name = "rating_1", insertable = false, updatable = false)
+    private Long star1;
+
+    @Column(name = "rating_2", insertable = false, updatable = false)
+    private Long star2;
+
+    @Column(name = "rating_3", insertable = false, updatable = false)
+    private Long star3;
+
+    @Column(name = "rating_4", insertable = false, updatable = false)
+    private Long star4;
+
+    @Column(name = "rating_5", insertable = false, updatable = false)
+    private Long star5;
+
+    // Điểm trung bình làm tròn 2 chữ số; null khi chưa có đánh giá
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Double getAverage() {
+        if (count == null || count <= 0 || sum == null) {
+            return null;
+        }
+        return Math.round(sum * 100.0 / count) / 100.0;
+    }
+}
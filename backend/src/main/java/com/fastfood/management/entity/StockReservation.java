@@ -0,0 +1,40 @@
+package com.fastfood.management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Số lượng một món đang được giữ cho một đơn (StockReservationServiceImpl). Dòng tồn tại = hàng còn đang giữ;
+ * commit/release xoá dòng nên chỉ trả/trừ kho đúng một lần, kể cả sau khi khởi động lại.
+ */
+@Entity
+@Table(
+        name = "stock_reservations",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uq_stock_reservation_order_item", columnNames = {"order_id", "menu_item_id"})
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "stock_reservations_id")
+    @TableGenerator(name = "stock_reservations_id", table = "id_generators", pkColumnName = "gen_name",
+            valueColumnName = "gen_value", pkColumnValue = "stock_reservations", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "menu_item_id", nullable = false)
+    private Long menuItemId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+}
@@ -1,5 +1,6 @@
 package com.fastfood.management.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -53,8 +54,10 @@ public class Store {
     @Column(name = "status", nullable = false)
     private StoreStatus status = StoreStatus.ACTIVE;
 
+    // Không đưa ra JSON: Store nằm trong nhiều response công khai, User có email/phone/password_hash
     @ManyToOne
     @JoinColumn(name = "manager_id")
+    @JsonIgnore
     private User manager;
 
     @CreatedDate
@@ -65,6 +68,10 @@ public class Store {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Tổng hợp đánh giá của mọi feedback thuộc đơn của cửa hàng, RatingAggregator cập nhật khi có feedback
+    @Embedded
+    private RatingSummary rating;
+
     public enum StoreStatus {
         ACTIVE, SUSPENDED
     }
@@ -0,0 +1,42 @@
+package com.fastfood.management.entity.listener;
+
+import com.fastfood.management.entity.Delivery;
+import com.fastfood.management.event.DeliveryStatusChangedEvent;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA listener trên Delivery: phát DeliveryStatusChangedEvent mỗi lần đổi trạng thái (xem OrderStatsListener).
+ */
+public class DeliveryStatsListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public DeliveryStatsListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostLoad
+    public void onLoad(Delivery delivery) {
+        delivery.setPersistedStatus(delivery.getStatus());
+    }
+
+    @PostPersist
+    public void onCreate(Delivery delivery) {
+        record(delivery, null);
+    }
+
+    @PostUpdate
+    public void onUpdate(Delivery delivery) {
+        if (delivery.getPersistedStatus() != null && delivery.getPersistedStatus() != delivery.getStatus()) {
+            record(delivery, delivery.getPersistedStatus());
+        }
+    }
+
+    private void record(Delivery delivery, Delivery.DeliveryStatus from) {
+        eventPublisher.publishEvent(new DeliveryStatusChangedEvent(delivery, from, delivery.getStatus()));
+        delivery.setPersistedStatus(delivery.getStatus());
+    }
+}
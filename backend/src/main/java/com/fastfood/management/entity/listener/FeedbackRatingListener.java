@@ -0,0 +1,81 @@
+package com.fastfood.management.entity.listener;
+
+import com.fastfood.management.entity.Feedback;
+import com.fastfood.management.event.FeedbackRatingChangedEvent;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Objects;
+
+/**
+ * JPA listener trên Feedback: mọi lần thêm/sửa/xoá đánh giá đều phát FeedbackRatingChangedEvent cho RatingAggregator
+ * (xem OrderStatsListener).
+ */
+public class FeedbackRatingListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FeedbackRatingListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostLoad
+    public void onLoad(Feedback feedback) {
+        remember(feedback);
+    }
+
+    @PostPersist
+    public void onCreate(Feedback feedback) {
+        record(menuItemIdOf(feedback), storeIdOf(feedback), feedback.getRating(), 1);
+        remember(feedback);
+    }
+
+    @PostUpdate
+    public void onUpdate(Feedback feedback) {
+        Long menuItemId = menuItemIdOf(feedback);
+        if (feedback.getPersistedRating() == null
+                || (Objects.equals(feedback.getPersistedRating(), feedback.getRating())
+                && Objects.equals(feedback.getPersistedMenuItemId(), menuItemId))) {
+            return;
+        }
+        Long storeId = storeIdOf(feedback);
+        record(feedback.getPersistedMenuItemId(), storeId, feedback.getPersistedRating(), -1);
+        record(menuItemId, storeId, feedback.getRating(), 1);
+        remember(feedback);
+    }
+
+    @PostRemove
+    public void onRemove(Feedback feedback) {
+        if (feedback.getPersistedRating() != null) {
+            record(feedback.getPersistedMenuItemId(), storeIdOf(feedback),
+                    feedback.getPersistedRating(), -1);
+        }
+    }
+
+    private void record(Long menuItemId, Long storeId, Integer rating, int sign) {
+        eventPublisher.publishEvent(new FeedbackRatingChangedEvent(menuItemId, storeId, rating, sign));
+    }
+
+    private void remember(Feedback feedback) {
+        feedback.setPersistedRating(feedback.getRating());
+        feedback.setPersistedMenuItemId(menuItemIdOf(feedback));
+    }
+
+    private static Long menuItemIdOf(Feedback feedback) {
+        return feedback.getMenuItem() != null ? feedback.getMenuItem().getId() : null;
+    }
+
+    // Cửa hàng của đơn; feedback không gắn đơn có store thì lấy theo món
+    private static Long storeIdOf(Feedback feedback) {
+        if (feedback.getOrder() != null && feedback.getOrder().getStore() != null) {
+            return feedback.getOrder().getStore().getId();
+        }
+        if (feedback.getMenuItem() != null && feedback.getMenuItem().getStore() != null) {
+            return feedback.getMenuItem().getStore().getId();
+        }
+        return null;
+    }
+}
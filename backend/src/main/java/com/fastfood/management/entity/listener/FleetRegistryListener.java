@@ -0,0 +1,41 @@
+package com.fastfood.management.entity.listener;
+
+import com.fastfood.management.entity.Drone;
+import com.fastfood.management.entity.DroneAssignment;
+import com.fastfood.management.event.DroneAssignmentSavedEvent;
+import com.fastfood.management.event.DroneRemovedEvent;
+import com.fastfood.management.event.DroneSavedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA listener trên Drone và DroneAssignment: mọi đường ghi (FleetService, simulator, tracking, controller)
+ * đều đi qua flush nên FleetRegistry nhận event ở một chỗ.
+ */
+public class FleetRegistryListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FleetRegistryListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Object entity) {
+        if (entity instanceof Drone drone) {
+            eventPublisher.publishEvent(new DroneSavedEvent(drone));
+        } else if (entity instanceof DroneAssignment assignment) {
+            eventPublisher.publishEvent(new DroneAssignmentSavedEvent(assignment));
+        }
+    }
+
+    @PostRemove
+    public void onRemoved(Object entity) {
+        if (entity instanceof Drone drone) {
+            eventPublisher.publishEvent(new DroneRemovedEvent(drone.getId()));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.fastfood.management.entity.listener;
+
+import com.fastfood.management.entity.MenuItem;
+import com.fastfood.management.event.MenuItemRemovedEvent;
+import com.fastfood.management.event.MenuItemSavedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA listener trên MenuItem: phát event sau mỗi lần thêm/sửa/xoá món để MenuSearchIndex khớp với menu_items.
+ */
+public class MenuSearchIndexListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public MenuSearchIndexListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(MenuItem item) {
+        eventPublisher.publishEvent(new MenuItemSavedEvent(item));
+    }
+
+    @PostRemove
+    public void onRemove(MenuItem item) {
+        eventPublisher.publishEvent(new MenuItemRemovedEvent(item.getId()));
+    }
+}
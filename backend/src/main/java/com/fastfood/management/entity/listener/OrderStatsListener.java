@@ -0,0 +1,45 @@
+package com.fastfood.management.entity.listener;
+
+import com.fastfood.management.entity.Order;
+import com.fastfood.management.event.OrderStatusChangedEvent;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA listener trên Order: mọi đường đổi trạng thái (service, scheduler, simulator) đều đi qua flush,
+ * nên chỉ cần phát OrderStatusChangedEvent ở một chỗ; rollup thống kê và bộ đếm dashboard nhận event đồng bộ
+ * trong cùng transaction. Listener chỉ phụ thuộc ApplicationEventPublisher nên Hibernate dựng được ngay khi tạo
+ * EntityManagerFactory, không cần biết tới tầng service.
+ */
+public class OrderStatsListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public OrderStatsListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostLoad
+    public void onLoad(Order order) {
+        order.setPersistedStatus(order.getStatus());
+    }
+
+    @PostPersist
+    public void onCreate(Order order) {
+        record(order, null);
+    }
+
+    @PostUpdate
+    public void onUpdate(Order order) {
+        if (order.getPersistedStatus() != null && order.getPersistedStatus() != order.getStatus()) {
+            record(order, order.getPersistedStatus());
+        }
+    }
+
+    private void record(Order order, Order.OrderStatus from) {
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order, from, order.getStatus()));
+        order.setPersistedStatus(order.getStatus());
+    }
+}
@@ -0,0 +1,9 @@
+package com.fastfood.management.event;
+
+import com.fastfood.management.entity.Delivery;
+
+/**
+ * Delivery vừa được ghi với trạng thái mới (from = null khi vừa tạo); phát từ DeliveryStatsListener trong lúc flush
+ */
+public record DeliveryStatusChangedEvent(Delivery delivery, Delivery.DeliveryStatus from, Delivery.DeliveryStatus to) {
+}
@@ -0,0 +1,8 @@
+package com.fastfood.management.event;
+
+/**
+ * Drone vừa hoàn tất assignment và trở về IDLE; AutoAssignScheduler nhận sau khi transaction commit
+ * để gán ngay đơn đang chờ
+ */
+public record DroneIdleEvent(Long droneId) {
+}
@@ -0,0 +1,7 @@
+package com.fastfood.management.event;
+
+/**
+ * Drone vừa bị xoá; phát từ FleetRegistryListener trong lúc flush
+ */
+public record DroneRemovedEvent(Long droneId) {
+}
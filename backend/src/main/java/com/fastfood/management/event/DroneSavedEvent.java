@@ -0,0 +1,9 @@
+package com.fastfood.management.event;
+
+import com.fastfood.management.entity.Drone;
+
+/**
+ * Drone vừa được thêm/cập nhật; phát từ FleetRegistryListener trong lúc flush
+ */
+public record DroneSavedEvent(Drone drone) {
+}
@@ -0,0 +1,7 @@
+package com.fastfood.management.event;
+
+/**
+ * Một điểm đánh giá được cộng (sign = 1) hoặc trừ (sign = -1) khỏi món/cửa hàng; phát từ FeedbackRatingListener
+ */
+public record FeedbackRatingChangedEvent(Long menuItemId, Long storeId, Integer rating, int sign) {
+}
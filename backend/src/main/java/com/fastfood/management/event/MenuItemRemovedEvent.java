@@ -0,0 +1,7 @@
+package com.fastfood.management.event;
+
+/**
+ * Món vừa bị xoá; phát từ MenuSearchIndexListener trong lúc flush
+ */
+public record MenuItemRemovedEvent(Long menuItemId) {
+}
@@ -0,0 +1,9 @@
+package com.fastfood.management.event;
+
+import com.fastfood.management.entity.MenuItem;
+
+/**
+ * Món vừa được thêm/sửa; phát từ MenuSearchIndexListener trong lúc flush
+ */
+public record MenuItemSavedEvent(MenuItem item) {
+}
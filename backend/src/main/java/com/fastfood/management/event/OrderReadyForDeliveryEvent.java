@@ -0,0 +1,8 @@
+package com.fastfood.management.event;
+
+/**
+ * Đơn vừa chuyển sang READY_FOR_DELIVERY mà chưa có drone; AutoAssignScheduler nhận sau khi transaction commit
+ * và chạy dispatch ngay thay vì chờ chu kỳ poll
+ */
+public record OrderReadyForDeliveryEvent(Long orderId, Long storeId) {
+}
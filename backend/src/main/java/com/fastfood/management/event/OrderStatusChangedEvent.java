@@ -0,0 +1,10 @@
+package com.fastfood.management.event;
+
+import com.fastfood.management.entity.Order;
+
+/**
+ * Đơn vừa được ghi với trạng thái mới (from = null khi vừa tạo); phát từ OrderStatsListener trong lúc flush,
+ * listener chạy đồng bộ trong cùng transaction (OrderStatsRollup, DashboardMetrics)
+ */
+public record OrderStatusChangedEvent(Order order, Order.OrderStatus from, Order.OrderStatus to) {
+}
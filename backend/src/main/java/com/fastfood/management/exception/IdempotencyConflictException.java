@@ -0,0 +1,10 @@
+package com.fastfood.management.exception;
+
+/**
+ * Idempotency-Key đã được dùng cho một request có nội dung khác
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -3,6 +3,7 @@ package com.fastfood.management.repository;
 import com.fastfood.management.entity.Delivery;
 import com.fastfood.management.entity.Order;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,4 +16,9 @@ public interface DeliveryRepository extends JpaRepository<Delivery, Long> {
     List<Delivery> findByDrone_IdAndStatus(Long droneId, Delivery.DeliveryStatus status);
     Optional<Delivery> findByOrderId(Long orderId);
     long countByStatus(Delivery.DeliveryStatus status);
+
+    // Dựng lại bộ đếm dashboard khi khởi động: storeId, status, số delivery
+    @Query("select d.order.store.id, d.status, count(d) from Delivery d " +
+            "where d.order.store is not null group by d.order.store.id, d.status")
+    List<Object[]> countByStoreAndStatus();
 }
\ No newline at end of file
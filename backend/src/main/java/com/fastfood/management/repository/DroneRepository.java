@@ -4,7 +4,12 @@ import com.fastfood.management.entity.Drone;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
 
 @Repository
 public interface DroneRepository extends JpaRepository<Drone, Long> {
@@ -14,4 +19,10 @@ public interface DroneRepository extends JpaRepository<Drone, Long> {
     Page<Drone> findByStatus(Drone.DroneStatus status, Pageable pageable);
     long countByStatus(Drone.DroneStatus status);
     boolean existsBySerialIgnoreCase(String serial);
+
+    // Cập nhật vị trí thuần telemetry, không tăng version nên không xung đột với các bước chuyển trạng thái
+    @Modifying
+    @Transactional
+    @Query("UPDATE Drone d SET d.currentLat = :lat, d.currentLng = :lng, d.lastSeenAt = :seenAt WHERE d.id = :droneId")
+    int updatePosition(Long droneId, Double lat, Double lng, LocalDateTime seenAt);
 }
\ No newline at end of file
@@ -3,10 +3,15 @@ package com.fastfood.management.repository;
 import com.fastfood.management.entity.Feedback;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface FeedbackRepository extends JpaRepository<Feedback, Long> {
@@ -18,4 +23,12 @@ public interface FeedbackRepository extends JpaRepository<Feedback, Long> {
     Page<Feedback> findByCustomerId(Long customerId, Pageable pageable);
     
     Page<Feedback> findByRatingGreaterThanEqual(Integer minRating, Pageable pageable);
+
+    // Dựng lại tổng hợp đánh giá: mỗi dòng (menuItemId, storeId, rating), đọc tuần tự bằng chế độ stream của
+    // Connector/J (fetch size Integer.MIN_VALUE); phải dùng trong transaction và đóng Stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("select m.id, coalesce(s.id, ms.id), f.rating from Feedback f " +
+            "left join f.order o left join o.store s " +
+            "left join f.menuItem m left join m.store ms")
+    Stream<Object[]> streamRatingsForRebuild();
 }
\ No newline at end of file
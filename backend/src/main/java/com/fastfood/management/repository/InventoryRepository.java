@@ -30,4 +30,9 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     @Modifying
     @Query("UPDATE Inventory i SET i.reserved = i.reserved - :quantity WHERE i.menuItem.id = :menuItemId AND i.reserved >= :quantity")
     int releaseReservation(Long menuItemId, int quantity);
+
+    // Ghi thay đổi ròng gom từ bộ đếm giữ hàng trong bộ nhớ (một UPDATE cho mỗi món mỗi chu kỳ flush)
+    @Modifying
+    @Query("UPDATE Inventory i SET i.reserved = GREATEST(COALESCE(i.reserved, 0) + :reservedDelta, 0), i.quantity = i.quantity - :committed WHERE i.menuItem.id = :menuItemId")
+    int applyReservationDelta(Long menuItemId, int reservedDelta, int committed);
 }
\ No newline at end of file
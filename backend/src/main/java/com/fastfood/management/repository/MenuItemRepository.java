@@ -1,17 +1,35 @@
 package com.fastfood.management.repository;
 
+import com.fastfood.management.dto.response.MenuItemResponse;
 import com.fastfood.management.entity.Category;
 import com.fastfood.management.entity.MenuItem;
 import com.fastfood.management.entity.Store;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MenuItemRepository extends JpaRepository<MenuItem, Long> {
+
+    // Projection cho API menu: một câu join category/store lấy đúng các cột MenuItemResponse cần
+    String RESPONSE_SELECT = "select new com.fastfood.management.dto.response.MenuItemResponse(" +
+            "m.id, m.name, m.description, m.price, m.imageUrl, m.available, c.id, c.name, s.id, s.name, " +
+            "m.rating.count, m.rating.sum, m.rating.star1, m.rating.star2, m.rating.star3, m.rating.star4, m.rating.star5) " +
+            "from MenuItem m left join m.category c left join m.store s ";
+
     List<MenuItem> findByCategoryAndAvailableTrue(Category category);
     Page<MenuItem> findByCategory(Category category, Pageable pageable);
     Page<MenuItem> findByAvailableTrue(Pageable pageable);
@@ -19,4 +37,69 @@ public interface MenuItemRepository extends JpaRepository<MenuItem, Long> {
     boolean existsByName(String name);
     Page<MenuItem> findByStoreAndAvailableTrue(Store store, Pageable pageable);
     Page<MenuItem> findByStoreAndNameContainingAndAvailableTrue(Store store, String name, Pageable pageable);
-}
\ No newline at end of file
+
+    // Cộng delta đánh giá gom trong bộ nhớ (RatingAggregator); delta âm khi feedback bị sửa/xoá
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE menu_items SET " +
+            "rating_count = COALESCE(rating_count, 0) + :count, rating_sum = COALESCE(rating_sum, 0) + :sum, " +
+            "rating_1 = COALESCE(rating_1, 0) + :star1, rating_2 = COALESCE(rating_2, 0) + :star2, " +
+            "rating_3 = COALESCE(rating_3, 0) + :star3, rating_4 = COALESCE(rating_4, 0) + :star4, " +
+            "rating_5 = COALESCE(rating_5, 0) + :star5 WHERE id = :id", nativeQuery = true)
+    int addRatings(@Param("id") Long id, @Param("count") long count, @Param("sum") long sum,
+                   @Param("star1") long star1, @Param("star2") long star2, @Param("star3") long star3,
+                   @Param("star4") long star4, @Param("star5") long star5);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE menu_items SET rating_count = 0, rating_sum = 0, " +
+            "rating_1 = 0, rating_2 = 0, rating_3 = 0, rating_4 = 0, rating_5 = 0", nativeQuery = true)
+    int resetRatings();
+
+    boolean existsByRating_CountGreaterThan(Long count);
+
+    @Query(RESPONSE_SELECT + "where m.available = true order by m.id")
+    List<MenuItemResponse> findAvailableResponses(Pageable pageable);
+
+    @Query(RESPONSE_SELECT + "where s.id = :storeId and m.available = true order by m.id")
+    List<MenuItemResponse> findAvailableResponsesByStore(@Param("storeId") Long storeId, Pageable pageable);
+
+    // Toàn bộ menu đang bán của cửa hàng theo thứ tự hiển thị (category.sortOrder) cho MenuSnapshotStore
+    @Query(RESPONSE_SELECT + "where s.id = :storeId and m.available = true order by c.sortOrder, c.id, m.id")
+    List<MenuItemResponse> findMenuResponsesByStore(@Param("storeId") Long storeId);
+
+    @Query(RESPONSE_SELECT + "where c.id = :categoryId order by m.id")
+    List<MenuItemResponse> findResponsesByCategory(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query(RESPONSE_SELECT + "where m.available = true and m.name like concat('%', :name, '%') " +
+            "and (:storeId is null or s.id = :storeId) and (:categoryId is null or c.id = :categoryId) order by m.id")
+    List<MenuItemResponse> searchAvailableResponses(@Param("name") String name,
+                                                    @Param("storeId") Long storeId,
+                                                    @Param("categoryId") Long categoryId,
+                                                    Pageable pageable);
+
+    @Query(RESPONSE_SELECT + "order by m.id")
+    List<MenuItemResponse> findAllResponses(Pageable pageable);
+
+    @Query(RESPONSE_SELECT + "where m.id in :ids")
+    List<MenuItemResponse> findResponsesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(RESPONSE_SELECT + "where m.id = :id")
+    Optional<MenuItemResponse> findResponseById(@Param("id") Long id);
+
+    // Nạp MenuSearchIndex: (id, storeId, categoryId, available, name, description), đọc tuần tự bằng chế độ stream
+    // của Connector/J; phải dùng trong transaction và đóng Stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("select m.id, s.id, c.id, m.available, m.name, m.description from MenuItem m " +
+            "left join m.store s left join m.category c")
+    Stream<Object[]> streamForSearchIndex();
+
+    // Xuất menu hàng loạt (MenuBulkService), đọc stream như streamForSearchIndex
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query(RESPONSE_SELECT + "where (:storeId is null or s.id = :storeId) order by m.id")
+    Stream<MenuItemResponse> streamResponsesForExport(@Param("storeId") Long storeId);
+
+    // Khoá của các món đã có (id, storeId, name, categoryId) để import quyết định thêm mới hay cập nhật
+    @Query("select m.id, s.id, m.name, c.id from MenuItem m left join m.store s left join m.category c")
+    List<Object[]> findImportKeys();
+}
@@ -0,0 +1,59 @@
+package com.fastfood.management.repository;
+
+import com.fastfood.management.entity.OrderDailyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface OrderDailyStatsRepository extends JpaRepository<OrderDailyStats, Long> {
+
+    // Một dòng: revenue, processing, delivered, cancelled cho các ngày [fromDay, toDay]
+    @Query("select coalesce(sum(s.deliveredRevenue), 0), coalesce(sum(s.processingCount), 0), " +
+            "coalesce(sum(s.deliveredCount), 0), coalesce(sum(s.cancelledCount), 0) " +
+            "from OrderDailyStats s " +
+            "where (:storeId is null or s.storeId = :storeId) " +
+            "and (:fromDay is null or s.statDate >= :fromDay) " +
+            "and s.statDate <= :toDay")
+    List<Object[]> sumRange(@Param("storeId") Long storeId,
+                            @Param("fromDay") LocalDate fromDay,
+                            @Param("toDay") LocalDate toDay);
+
+    // Cộng delta gom trong bộ nhớ vào ô (store, ngày); tạo dòng nếu chưa có
+    @Modifying
+    @Query(value = "INSERT INTO order_daily_stats " +
+            "(store_id, stat_date, processing_count, delivered_count, cancelled_count, delivered_revenue) " +
+            "VALUES (:storeId, :statDate, :processing, :delivered, :cancelled, :revenue) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "processing_count = processing_count + VALUES(processing_count), " +
+            "delivered_count = delivered_count + VALUES(delivered_count), " +
+            "cancelled_count = cancelled_count + VALUES(cancelled_count), " +
+            "delivered_revenue = delivered_revenue + VALUES(delivered_revenue)",
+            nativeQuery = true)
+    int applyDelta(@Param("storeId") Long storeId,
+                   @Param("statDate") LocalDate statDate,
+                   @Param("processing") long processing,
+                   @Param("delivered") long delivered,
+                   @Param("cancelled") long cancelled,
+                   @Param("revenue") BigDecimal revenue);
+
+    // Dựng lại toàn bộ từ bảng orders (bảng rollup vừa được tạo, chưa có dữ liệu)
+    @Modifying
+    @Query(value = "INSERT INTO order_daily_stats " +
+            "(store_id, stat_date, processing_count, delivered_count, cancelled_count, delivered_revenue) " +
+            "SELECT store_id, DATE(created_at), " +
+            "SUM(CASE WHEN status IN ('CREATED','CONFIRMED','PREPARING','READY_FOR_DELIVERY','ASSIGNED','OUT_FOR_DELIVERY') THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN status = 'DELIVERED' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN status IN ('CANCELLED','REJECTED','FAILED') THEN 1 ELSE 0 END), " +
+            "COALESCE(SUM(CASE WHEN status = 'DELIVERED' THEN total_amount ELSE 0 END), 0) " +
+            "FROM orders WHERE store_id IS NOT NULL " +
+            "GROUP BY store_id, DATE(created_at)",
+            nativeQuery = true)
+    int backfillFromOrders();
+}
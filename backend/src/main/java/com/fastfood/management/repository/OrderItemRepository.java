@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,6 +21,19 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     @Query("SELECT oi FROM OrderItem oi WHERE oi.order.id = :orderId")
     List<OrderItem> findByOrderId(@Param("orderId") Long orderId);
     
+    // Dòng item rút gọn cho OrderCompactResponse: [orderId, id, name, quantity, price, image]
+    @Query("SELECT oi.order.id, oi.id, COALESCE(oi.nameSnapshot, m.name), oi.quantity, " +
+            "COALESCE(oi.unitPrice, m.price), COALESCE(oi.imageSnapshot, m.imageUrl) " +
+            "FROM OrderItem oi LEFT JOIN oi.menuItem m WHERE oi.order.id IN :orderIds ORDER BY oi.id")
+    List<Object[]> findCompactRowsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+    
     @Query("SELECT SUM(oi.quantity) FROM OrderItem oi WHERE oi.menuItem.id = :menuItemId")
     Long getTotalQuantityByMenuItem(@Param("menuItemId") Long menuItemId);
-}
\ No newline at end of file
+
+    // Khởi tạo sketch món bán chạy khi chưa có snapshot: [storeId, menuItemId, giờ tạo đơn 'yyyy-MM-dd HH', tổng số lượng]
+    @Query(value = "SELECT o.store_id, oi.menu_item_id, DATE_FORMAT(o.created_at, '%Y-%m-%d %H') AS hour_bucket, SUM(oi.quantity) " +
+            "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+            "WHERE o.created_at >= :since AND o.store_id IS NOT NULL AND oi.menu_item_id IS NOT NULL " +
+            "GROUP BY o.store_id, oi.menu_item_id, hour_bucket", nativeQuery = true)
+    List<Object[]> sumQuantityByStoreItemAndHourSince(@Param("since") java.time.LocalDateTime since);
+}
@@ -3,45 +3,139 @@ package com.fastfood.management.repository;
 import com.fastfood.management.entity.Order;
 import com.fastfood.management.entity.User;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import com.fastfood.management.dto.response.OrderSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.math.BigDecimal;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Page<Order> findByCustomer(User customer, Pageable pageable);
     Page<Order> findByStatus(Order.OrderStatus status, Pageable pageable);
     Page<Order> findByStoreIdAndStatus(Long storeId, Order.OrderStatus status, Pageable pageable);
+
+    // Danh sách admin/bếp: projection chỉ lấy cột cần hiển thị, dùng index (store_id, status, created_at)
+    String SUMMARY_SELECT = "select new com.fastfood.management.dto.response.OrderSummary(" +
+            "o.id, o.orderCode, o.status, o.totalAmount, o.paymentMethod, o.paymentStatus, o.createdAt) from Order o ";
+
+    @Query(value = SUMMARY_SELECT + "where o.status = :status",
+            countQuery = "select count(o) from Order o where o.status = :status")
+    Page<OrderSummary> findSummariesByStatus(@Param("status") Order.OrderStatus status, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + "where o.store.id = :storeId and o.status = :status",
+            countQuery = "select count(o) from Order o where o.store.id = :storeId and o.status = :status")
+    Page<OrderSummary> findSummariesByStoreIdAndStatus(@Param("storeId") Long storeId,
+                                                       @Param("status") Order.OrderStatus status,
+                                                       Pageable pageable);
+
+    // Slice: không chạy count(*), chỉ đọc thêm một dòng để biết còn trang sau (bảng bếp poll liên tục)
+    @Query(SUMMARY_SELECT + "where o.status = :status")
+    Slice<OrderSummary> sliceSummariesByStatus(@Param("status") Order.OrderStatus status, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "where o.store.id = :storeId and o.status = :status")
+    Slice<OrderSummary> sliceSummariesByStoreIdAndStatus(@Param("storeId") Long storeId,
+                                                         @Param("status") Order.OrderStatus status,
+                                                         Pageable pageable);
+
     List<Order> findByStatusAndCreatedAtBefore(Order.OrderStatus status, LocalDateTime time);
     List<Order> findByCustomerAndCreatedAtBetween(User customer, LocalDateTime start, LocalDateTime end);
-    List<Order> findByCustomerOrderByCreatedAtDesc(User customer);
     java.util.Optional<Order> findByOrderCode(String orderCode);
 
-    @Query("select coalesce(sum(o.totalAmount), 0) from Order o " +
+    // Lịch sử đơn của khách: keyset theo (createdAt, id) giảm dần, dùng index (customer_id, created_at, id)
+    @Query("select o.id from Order o where o.customer.id = :customerId " +
+            "and (:beforeCreatedAt is null or o.createdAt < :beforeCreatedAt " +
+            "or (o.createdAt = :beforeCreatedAt and o.id < :beforeId)) " +
+            "order by o.createdAt desc, o.id desc")
+    List<Long> findIdsByCustomerBefore(
+            @Param("customerId") Long customerId,
+            @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+            @Param("beforeId") Long beforeId,
+            Pageable limit);
+
+    // Nạp cả trang đơn cùng items/store/address/delivery trong một truy vấn (tránh N+1)
+    @Query("select distinct o from Order o " +
+            "left join fetch o.orderItems oi left join fetch oi.menuItem " +
+            "left join fetch o.store left join fetch o.address " +
+            "left join fetch o.delivery d left join fetch d.drone " +
+            "where o.id in :ids")
+    List<Order> findWithItemsByIdIn(@Param("ids") java.util.Collection<Long> ids);
+
+    @Query("select new com.fastfood.management.dto.response.OrderCompactResponse(o.id, o.orderCode, o.status, o.totalAmount, o.createdAt) " +
+            "from Order o where o.customer.id = :customerId " +
+            "and (:beforeCreatedAt is null or o.createdAt < :beforeCreatedAt " +
+            "or (o.createdAt = :beforeCreatedAt and o.id < :beforeId)) " +
+            "order by o.createdAt desc, o.id desc")
+    List<com.fastfood.management.dto.response.OrderCompactResponse> findCompactByCustomerBefore(
+            @Param("customerId") Long customerId,
+            @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+            @Param("beforeId") Long beforeId,
+            Pageable limit);
+    java.util.Optional<Order> findByCustomerIdAndIdempotencyKey(Long customerId, String idempotencyKey);
+
+    // Thống kê một lượt quét (conditional aggregation): revenue, processing, delivered, cancelled.
+    // [start, before) và <= end; chỉ dùng cho phần chưa có trong order_daily_stats (hôm nay, mép ngày lẻ)
+    @Query("select coalesce(sum(case when o.status = :delivered then o.totalAmount else 0 end), 0), " +
+            "coalesce(sum(case when o.status in :processing then 1 else 0 end), 0), " +
+            "coalesce(sum(case when o.status = :delivered then 1 else 0 end), 0), " +
+            "coalesce(sum(case when o.status in :cancelled then 1 else 0 end), 0) " +
+            "from Order o " +
             "where (:storeId is null or o.store.id = :storeId) " +
-            "and o.status in :statuses " +
             "and (:start is null or o.createdAt >= :start) " +
+            "and (:before is null or o.createdAt < :before) " +
             "and (:end is null or o.createdAt <= :end)")
-    BigDecimal sumTotalAmountByStatusAndStore(
+    List<Object[]> aggregateStats(
             @Param("storeId") Long storeId,
-            @Param("statuses") List<Order.OrderStatus> statuses,
+            @Param("processing") List<Order.OrderStatus> processing,
+            @Param("delivered") Order.OrderStatus delivered,
+            @Param("cancelled") List<Order.OrderStatus> cancelled,
             @Param("start") LocalDateTime start,
+            @Param("before") LocalDateTime before,
             @Param("end") LocalDateTime end);
 
-    @Query("select count(o) from Order o " +
-            "where (:storeId is null or o.store.id = :storeId) " +
-            "and o.status in :statuses " +
+    // Dựng lại bộ đếm dashboard khi khởi động: storeId, status, số đơn, tổng tiền
+    @Query("select o.store.id, o.status, count(o), coalesce(sum(o.totalAmount), 0) from Order o " +
+            "where o.store is not null group by o.store.id, o.status")
+    List<Object[]> countAndSumByStoreAndStatus();
+
+    // Chuỗi thời gian doanh thu: bucket (DATE_FORMAT theo giờ/ngày), số đơn, số đơn DELIVERED, doanh thu DELIVERED.
+    // Gom nhóm trong SQL, chỉ trả về một dòng cho mỗi bucket
+    String SERIES_COLUMNS = "COUNT(*), " +
+            "SUM(CASE WHEN o.status = 'DELIVERED' THEN 1 ELSE 0 END), " +
+            "COALESCE(SUM(CASE WHEN o.status = 'DELIVERED' THEN o.total_amount ELSE 0 END), 0) " +
+            "FROM orders o " +
+            "WHERE (:storeId IS NULL OR o.store_id = :storeId) " +
+            "AND o.created_at >= :start AND o.created_at <= :end ";
+
+    @Query(value = "SELECT DATE_FORMAT(o.created_at, '%Y-%m-%d %H') AS bucket, " + SERIES_COLUMNS +
+            "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> revenueSeriesByHour(@Param("storeId") Long storeId,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT DATE_FORMAT(o.created_at, '%Y-%m-%d') AS bucket, " + SERIES_COLUMNS +
+            "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> revenueSeriesByDay(@Param("storeId") Long storeId,
+                                      @Param("start") LocalDateTime start,
+                                      @Param("end") LocalDateTime end);
+
+    // Xuất CSV: đọc tuần tự theo (createdAt, id). Fetch size Integer.MIN_VALUE bật chế độ stream từng dòng
+    // của MySQL Connector/J nên bộ nhớ không phụ thuộc độ dài khoảng thời gian; phải dùng trong transaction và đóng Stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query(SUMMARY_SELECT + "where (:storeId is null or o.store.id = :storeId) " +
             "and (:start is null or o.createdAt >= :start) " +
-            "and (:end is null or o.createdAt <= :end)")
-    long countByStatusAndStore(
-            @Param("storeId") Long storeId,
-            @Param("statuses") List<Order.OrderStatus> statuses,
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end);
-}
\ No newline at end of file
+            "and (:end is null or o.createdAt <= :end) " +
+            "order by o.createdAt, o.id")
+    Stream<OrderSummary> streamSummariesForExport(@Param("storeId") Long storeId,
+                                                  @Param("start") LocalDateTime start,
+                                                  @Param("end") LocalDateTime end);
+}
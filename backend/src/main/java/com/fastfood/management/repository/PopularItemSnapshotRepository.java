@@ -0,0 +1,34 @@
+package com.fastfood.management.repository;
+
+import com.fastfood.management.entity.PopularItemSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PopularItemSnapshotRepository extends JpaRepository<PopularItemSnapshot, Long> {
+
+    List<PopularItemSnapshot> findBySlotStartGreaterThanEqual(LocalDateTime since);
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO popular_item_snapshots (store_id, window_name, slot_start, payload) " +
+            "VALUES (:storeId, :windowName, :slotStart, :payload) " +
+            "ON DUPLICATE KEY UPDATE payload = VALUES(payload)",
+            nativeQuery = true)
+    int upsert(@Param("storeId") Long storeId,
+               @Param("windowName") String windowName,
+               @Param("slotStart") LocalDateTime slotStart,
+               @Param("payload") String payload);
+
+    @Modifying
+    @Transactional
+    @Query("delete from PopularItemSnapshot s where s.slotStart < :before")
+    int deleteBySlotStartBefore(@Param("before") LocalDateTime before);
+}
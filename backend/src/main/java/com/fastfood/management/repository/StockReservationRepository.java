@@ -0,0 +1,17 @@
+package com.fastfood.management.repository;
+
+import com.fastfood.management.entity.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // Khoá các dòng giữ hàng của đơn: commit/release đồng thời cho cùng đơn phải chờ nhau, lượt sau đọc ra rỗng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StockReservation> findByOrderId(Long orderId);
+}
@@ -3,7 +3,11 @@ package com.fastfood.management.repository;
 import com.fastfood.management.entity.Store;
 import com.fastfood.management.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -11,4 +15,27 @@ import java.util.List;
 public interface StoreRepository extends JpaRepository<Store, Long> {
     List<Store> findByStatus(Store.StoreStatus status);
     List<Store> findByManager(User manager);
+
+    @Query("select s.id from Store s where s.status = :status")
+    List<Long> findIdsByStatus(@Param("status") Store.StoreStatus status);
+
+    // Cộng delta đánh giá gom trong bộ nhớ (RatingAggregator); delta âm khi feedback bị sửa/xoá
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE stores SET " +
+            "rating_count = COALESCE(rating_count, 0) + :count, rating_sum = COALESCE(rating_sum, 0) + :sum, " +
+            "rating_1 = COALESCE(rating_1, 0) + :star1, rating_2 = COALESCE(rating_2, 0) + :star2, " +
+            "rating_3 = COALESCE(rating_3, 0) + :star3, rating_4 = COALESCE(rating_4, 0) + :star4, " +
+            "rating_5 = COALESCE(rating_5, 0) + :star5 WHERE id = :id", nativeQuery = true)
+    int addRatings(@Param("id") Long id, @Param("count") long count, @Param("sum") long sum,
+                   @Param("star1") long star1, @Param("star2") long star2, @Param("star3") long star3,
+                   @Param("star4") long star4, @Param("star5") long star5);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE stores SET rating_count = 0, rating_sum = 0, " +
+            "rating_1 = 0, rating_2 = 0, rating_3 = 0, rating_4 = 0, rating_5 = 0", nativeQuery = true)
+    int resetRatings();
+
+    boolean existsByRating_CountGreaterThan(Long count);
 }
\ No newline at end of file
@@ -16,6 +16,25 @@ public interface FleetService {
      */
     Optional<DroneAssignment> autoAssignDrone(Order order);
     
+    /**
+     * Đọc lại đơn, auto-assign drone và chuyển luôn sang giao hàng trong một transaction:
+     * order OUT_FOR_DELIVERY, delivery IN_PROGRESS (W0_W1), drone EN_ROUTE_TO_STORE.
+     * Gọi qua OptimisticRetry để tự chạy lại khi xung đột version với luồng khác.
+     * @param orderId ID đơn hàng READY_FOR_DELIVERY
+     * @return DroneAssignment nếu gán được, rỗng nếu không có drone rảnh
+     * @throws IllegalStateException nếu đơn không còn ở READY_FOR_DELIVERY
+     */
+    Optional<DroneAssignment> dispatchReadyOrder(Long orderId);
+
+    /**
+     * Gán theo lô: ghép cùng lúc các đơn chờ giao với drone IDLE trong bán kính sao cho tổng chi phí
+     * (ETA drone -> cửa hàng -> khách, trừ điểm ưu tiên theo thời gian đơn đã chờ) nhỏ nhất, rồi chuyển mọi cặp
+     * sang giao hàng như dispatchReadyOrder trong cùng một transaction. Gọi qua OptimisticRetry.
+     * @param orderIds ID các đơn READY_FOR_DELIVERY; đơn đã đổi trạng thái, chưa thanh toán hoặc thiếu toạ độ bị bỏ qua
+     * @return Các assignment đã tạo (rỗng nếu không ghép được cặp nào)
+     */
+    List<DroneAssignment> dispatchReadyOrders(List<Long> orderIds);
+
     /**
      * Gán drone thủ công cho đơn hàng
      * @param order Đơn hàng cần gán
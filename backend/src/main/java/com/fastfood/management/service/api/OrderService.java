@@ -1,25 +1,54 @@
 package com.fastfood.management.service.api;
 
 import com.fastfood.management.dto.request.OrderRequest;
+import com.fastfood.management.dto.response.OrderCompactResponse;
+import com.fastfood.management.dto.response.OrderCursor;
 import com.fastfood.management.dto.response.OrderResponse;
 import com.fastfood.management.dto.response.OrderStatsResponse;
+import com.fastfood.management.dto.response.OrderTimelineResponse;
+import com.fastfood.management.dto.response.RevenueSeriesResponse;
 import com.fastfood.management.entity.Order;
 import com.fastfood.management.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.time.LocalDateTime;
 
 public interface OrderService {
     Order createOrder(OrderRequest orderRequest, User currentUser);
+    Order createOrder(OrderRequest orderRequest, User currentUser, String idempotencyKey);
     Order getOrderById(Long id, User currentUser);
-    List<Order> listMyOrders(User currentUser);
+    /**
+     * Lịch sử đơn của khách theo keyset (createdAt, id) giảm dần
+     * @param before con trỏ của phần tử cuối trang trước, null cho trang đầu
+     * @param limit số đơn tối đa của trang
+     */
+    List<Order> listMyOrders(User currentUser, OrderCursor before, int limit);
+    List<OrderCompactResponse> listMyOrdersCompact(User currentUser, OrderCursor before, int limit);
     Page<OrderResponse> getOrdersByStatus(Order.OrderStatus status, Pageable pageable);
     Page<OrderResponse> getOrdersByStatus(Order.OrderStatus status, Pageable pageable, String code);
     Page<OrderResponse> getOrdersByStatus(Order.OrderStatus status, Pageable pageable, String code, Long storeId);
+    Slice<OrderResponse> sliceOrdersByStatus(Order.OrderStatus status, Pageable pageable, Long storeId);
     Order updateOrderStatus(Long id, Order.OrderStatus status, User currentUser);
     void cancelOrder(Long id, String reason, User currentUser);
+    List<Order.OrderStatus> getAllowedNextStatuses(Long id, User currentUser);
+    OrderTimelineResponse getOrderTimeline(Long id, User currentUser);
 
     OrderStatsResponse getOrderStats(Long storeId, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Số đơn và doanh thu theo từng giờ/ngày trong [start, end] (gom nhóm trong SQL)
+     * @throws IllegalArgumentException nếu khoảng thời gian quá dài so với bucket
+     */
+    RevenueSeriesResponse getRevenueSeries(Long storeId, LocalDateTime start, LocalDateTime end,
+                                           RevenueSeriesResponse.Bucket bucket);
+
+    /**
+     * Ghi CSV các đơn trong [start, end] ra out theo kiểu stream (bộ nhớ cố định, không nạp hết vào list)
+     */
+    void exportOrdersCsv(Long storeId, LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.fastfood.management.service.api;
+
+import java.util.Map;
+
+public interface StockReservationService {
+
+    /**
+     * Giữ hàng cho đơn mới (all-or-nothing). Món chưa có bản ghi inventory được coi là không giới hạn.
+     * @param orderId ID đơn hàng
+     * @param quantities menuItemId -> số lượng
+     * @throws IllegalStateException nếu có món không đủ hàng
+     */
+    void reserve(Long orderId, Map<Long, Integer> quantities);
+
+    /**
+     * Trừ kho thật khi đơn DELIVERED (reserved -> quantity)
+     * @param orderId ID đơn hàng
+     */
+    void commit(Long orderId);
+
+    /**
+     * Trả lại hàng đã giữ khi đơn CANCELLED/REJECTED
+     * @param orderId ID đơn hàng
+     */
+    void release(Long orderId);
+
+    /**
+     * Đồng bộ bộ đếm trong bộ nhớ khi merchant chỉnh số lượng tồn kho
+     * @param menuItemId ID món
+     * @param quantityDelta chênh lệch quantity mới - cũ
+     */
+    void adjustAvailable(Long menuItemId, int quantityDelta);
+
+    /**
+     * Ghi các thay đổi ròng (reserved/committed) xuống bảng inventory theo lô
+     */
+    void flush();
+}
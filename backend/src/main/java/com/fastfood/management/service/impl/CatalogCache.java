@@ -0,0 +1,154 @@
+package com.fastfood.management.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache đọc cho các endpoint danh mục (menu, cửa hàng): lưu sẵn JSON đã serialize kèm ETag mạnh (SHA-256 của body).
+ * - Khoá gồm phạm vi (một cửa hàng hoặc toàn hệ thống) và version của phạm vi đó; thay đổi menu/category/store
+ *   gọi invalidateStore để tăng version, entry cũ không còn được đọc và tự hết hạn/bị đẩy ra.
+ * - Truy vấn nhiều cửa hàng (không lọc storeId, theo category, danh sách store) dùng version toàn cục,
+ *   tăng theo mọi thay đổi.
+ * - Version chỉ nằm trong bộ nhớ của từng instance; TTL (catalog.cache.ttlSeconds) giới hạn độ trễ khi chạy nhiều instance.
+ * - Mỗi lần invalidate cũng đánh dấu snapshot menu của cửa hàng (MenuSnapshotStore) để dựng lại.
+ */
+@Component
+public class CatalogCache {
+
+    public static final String CACHE_NAME = "catalog";
+
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    private final ObjectMapper objectMapper;
+    private final MenuSnapshotStore menuSnapshotStore;
+    private final Cache<Key, CachedBody> cache;
+
+    private final Map<Long, AtomicLong> storeVersions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+    // Tăng khi xoá toàn bộ, để cả các cửa hàng chưa từng đổi version cũng sang khoá mới
+    private final AtomicLong epoch = new AtomicLong();
+
+    public record CachedBody(byte[] json, String etag) {
+    }
+
+    // storeId null = phạm vi toàn hệ thống
+    private record Key(Long storeId, long epoch, long version, String query) {
+    }
+
+    public CatalogCache(ObjectMapper objectMapper,
+                        MenuSnapshotStore menuSnapshotStore,
+                        MeterRegistry meterRegistry,
+                        @Value("${catalog.cache.maxEntries:5000}") long maxEntries,
+                        @Value("${catalog.cache.ttlSeconds:600}") long ttlSeconds) {
+        this.objectMapper = objectMapper;
+        this.menuSnapshotStore = menuSnapshotStore;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Trả body đã cache (hoặc tính bằng loader rồi cache) kèm ETag; Spring MVC tự trả 304 khi If-None-Match khớp.
+     * Loader trả byte[] được coi là JSON đã serialize sẵn (vd. MenuItemJsonCache), kiểu khác thì serialize bằng Jackson.
+     * Loader trả null nghĩa là không cache (vd. không tìm thấy), khi đó trả về null để controller tự xử lý.
+     */
+    public ResponseEntity<byte[]> respond(Long storeId, String query, Supplier<Object> loader) {
+        Key key = new Key(storeId, epoch.get(), versionOf(storeId), query);
+        CachedBody body = cache.get(key, k -> {
+            Object value = loader.get();
+            return value == null ? null : toBody(value);
+        });
+        if (body == null) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(REVALIDATE)
+                .eTag(body.etag())
+                .body(body.json());
+    }
+
+    /**
+     * Dữ liệu của cửa hàng đổi (storeId null = không rõ cửa hàng): bỏ các entry của cửa hàng đó và mọi entry toàn hệ thống.
+     * Trong transaction thì chờ commit, để request đọc ngay sau đó không cache lại dữ liệu cũ.
+     */
+    public void invalidateStore(Long storeId) {
+        afterCommit(() -> {
+            if (storeId != null) {
+                storeVersions.computeIfAbsent(storeId, id -> new AtomicLong()).incrementAndGet();
+            }
+            globalVersion.incrementAndGet();
+            menuSnapshotStore.markDirty(storeId);
+        });
+    }
+
+    public void invalidateAll() {
+        afterCommit(() -> {
+            epoch.incrementAndGet();
+            cache.invalidateAll();
+            menuSnapshotStore.markAllDirty();
+        });
+    }
+
+    private long versionOf(Long storeId) {
+        if (storeId == null) {
+            return globalVersion.get();
+        }
+        AtomicLong version = storeVersions.get(storeId);
+        return version != null ? version.get() : 0L;
+    }
+
+    private CachedBody toBody(Object value) {
+        try {
+            byte[] json = value instanceof byte[] raw ? raw : objectMapper.writeValueAsBytes(value);
+            return new CachedBody(json, etagOf(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize catalog response", e);
+        }
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private static String etagOf(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.dto.response.DashboardSnapshot;
+import com.fastfood.management.entity.Delivery;
+import com.fastfood.management.entity.Delivery.DeliveryStatus;
+import com.fastfood.management.entity.Order;
+import com.fastfood.management.entity.Order.OrderStatus;
+import com.fastfood.management.repository.DeliveryRepository;
+import com.fastfood.management.repository.OrderRepository;
+import com.fastfood.management.event.DeliveryStatusChangedEvent;
+import com.fastfood.management.event.OrderStatusChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Bộ đếm dashboard admin trong bộ nhớ: số đơn/delivery đang ở mỗi trạng thái và doanh thu DELIVERED, theo cửa hàng.
+ * - OrderStatsListener/DeliveryStatsListener báo mỗi lần chuyển trạng thái; bộ đếm chỉ đổi khi transaction commit.
+ * - push() chạy theo chu kỳ dashboard.push.intervalMs và chỉ gửi khi có thay đổi, nên dù bao nhiêu
+ *   transition trong một chu kỳ thì /topic/admin/dashboard cũng chỉ nhận một snapshot.
+ * - Khi khởi động và định kỳ (dashboard.reconcile.intervalMs) đếm lại từ DB (vài câu GROUP BY) rồi thay toàn bộ
+ *   bộ đếm. Delta commit trong lúc đang đếm vẫn cộng vào bộ đếm cũ và được ghi lại, rồi áp lên bản mới ngay lúc
+ *   thay (dưới write lock) nên không mất; lệch còn lại (delta commit ngay trước khi câu đếm chụp snapshot) được
+ *   lần đếm lại sau sửa và ghi log.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardMetrics {
+
+    private static final OrderStatus[] ORDER_STATUSES = OrderStatus.values();
+    private static final DeliveryStatus[] DELIVERY_STATUSES = DeliveryStatus.values();
+
+    private final OrderRepository orderRepository;
+    private final DeliveryRepository deliveryRepository;
+    private final WebSocketService webSocketService;
+
+    private volatile Map<Long, StoreCounters> stores = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile boolean ready;
+    // Read lock: áp một delta (chỉ thao tác bộ nhớ); write lock: thay bộ đếm sau khi đếm lại
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    // Delta đã áp trong lúc rebuild đang đọc DB, để áp lại lên bộ đếm mới; null khi không rebuild
+    private Queue<Consumer<Map<Long, StoreCounters>>> replay;
+
+    private static final class StoreCounters {
+        final LongAdder[] orders = adders(ORDER_STATUSES.length);
+        final LongAdder[] deliveries = adders(DELIVERY_STATUSES.length);
+        // Doanh thu đơn DELIVERED, đơn vị 1/100 để cộng bằng LongAdder
+        final LongAdder revenueCents = new LongAdder();
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        Order order = event.order();
+        if (order.getStore() != null) {
+            onOrderTransition(order.getStore().getId(), event.from(), event.to(), order.getTotalAmount());
+        }
+    }
+
+    @EventListener
+    public void onDeliveryStatusChanged(DeliveryStatusChangedEvent event) {
+        Delivery delivery = event.delivery();
+        if (delivery.getOrder() != null && delivery.getOrder().getStore() != null) {
+            onDeliveryTransition(delivery.getOrder().getStore().getId(), event.from(), event.to());
+        }
+    }
+
+    public void onOrderTransition(Long storeId, OrderStatus from, OrderStatus to, BigDecimal amount) {
+        if (storeId == null || from == to) {
+            return;
+        }
+        long cents = toCents(amount);
+        afterCommit(counters -> {
+            StoreCounters c = countersOf(counters, storeId);
+            if (from != null) {
+                c.orders[from.ordinal()].decrement();
+                if (from == OrderStatus.DELIVERED) {
+                    c.revenueCents.add(-cents);
+                }
+            }
+            if (to != null) {
+                c.orders[to.ordinal()].increment();
+                if (to == OrderStatus.DELIVERED) {
+                    c.revenueCents.add(cents);
+                }
+            }
+        });
+    }
+
+    public void onDeliveryTransition(Long storeId, DeliveryStatus from, DeliveryStatus to) {
+        if (storeId == null || from == to) {
+            return;
+        }
+        afterCommit(counters -> {
+            StoreCounters c = countersOf(counters, storeId);
+            if (from != null) {
+                c.deliveries[from.ordinal()].decrement();
+            }
+            if (to != null) {
+                c.deliveries[to.ordinal()].increment();
+            }
+        });
+    }
+
+    public DashboardSnapshot snapshot() {
+        Map<OrderStatus, Long> orders = new EnumMap<>(OrderStatus.class);
+        Map<DeliveryStatus, Long> deliveries = new EnumMap<>(DeliveryStatus.class);
+        long revenueCents = 0;
+        List<DashboardSnapshot.StoreDashboard> perStore = new ArrayList<>();
+        for (Map.Entry<Long, StoreCounters> e : stores.entrySet()) {
+            StoreCounters c = e.getValue();
+            Map<OrderStatus, Long> storeOrders = new EnumMap<>(OrderStatus.class);
+            for (OrderStatus s : ORDER_STATUSES) {
+                long n = c.orders[s.ordinal()].sum();
+                storeOrders.put(s, n);
+                orders.merge(s, n, Long::sum);
+            }
+            Map<DeliveryStatus, Long> storeDeliveries = new EnumMap<>(DeliveryStatus.class);
+            for (DeliveryStatus s : DELIVERY_STATUSES) {
+                long n = c.deliveries[s.ordinal()].sum();
+                storeDeliveries.put(s, n);
+                deliveries.merge(s, n, Long::sum);
+            }
+            long cents = c.revenueCents.sum();
+            revenueCents += cents;
+            perStore.add(DashboardSnapshot.StoreDashboard.builder()
+                    .storeId(e.getKey())
+                    .ordersByStatus(storeOrders)
+                    .deliveriesByStatus(storeDeliveries)
+                    .deliveredRevenue(fromCents(cents))
+                    .build());
+        }
+        return DashboardSnapshot.builder()
+                .generatedAt(LocalDateTime.now())
+                .ordersByStatus(orders)
+                .deliveriesByStatus(deliveries)
+                .deliveredRevenue(fromCents(revenueCents))
+                .stores(perStore)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.push.intervalMs:500}")
+    public void push() {
+        if (!ready || !dirty.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            webSocketService.sendAdminDashboardUpdate(snapshot());
+        } catch (Exception e) {
+            log.warn("Failed to push admin dashboard snapshot: {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Queue<Consumer<Map<Long, StoreCounters>>> buffered = new ConcurrentLinkedQueue<>();
+        swapLock.writeLock().lock();
+        try {
+            replay = buffered;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        Map<Long, StoreCounters> fresh;
+        try {
+            fresh = load();
+        } catch (RuntimeException e) {
+            swapLock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            throw e;
+        }
+        long drift;
+        swapLock.writeLock().lock();
+        try {
+            buffered.forEach(delta -> delta.accept(fresh));
+            drift = ready ? drift(stores, fresh) : 0;
+            stores = fresh;
+            replay = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        boolean first = !ready;
+        ready = true;
+        dirty.set(true);
+        if (first) {
+            log.info("Admin dashboard counters rebuilt for {} stores", fresh.size());
+        } else if (drift != 0) {
+            log.warn("Admin dashboard counters reconciled with database (total drift {})", drift);
+        }
+    }
+
+    /**
+     * Lưới an toàn: định kỳ đếm lại từ DB như lúc khởi động để sửa lệch tích luỹ
+     */
+    @Scheduled(fixedDelayString = "${dashboard.reconcile.intervalMs:300000}",
+            initialDelayString = "${dashboard.reconcile.intervalMs:300000}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        if (ready) {
+            rebuild();
+        }
+    }
+
+    private Map<Long, StoreCounters> load() {
+        Map<Long, StoreCounters> fresh = new ConcurrentHashMap<>();
+        for (Object[] row : orderRepository.countAndSumByStoreAndStatus()) {
+            StoreCounters c = fresh.computeIfAbsent((Long) row[0], id -> new StoreCounters());
+            OrderStatus status = (OrderStatus) row[1];
+            c.orders[status.ordinal()].add(((Number) row[2]).longValue());
+            if (status == OrderStatus.DELIVERED) {
+                c.revenueCents.add(toCents(toBigDecimal(row[3])));
+            }
+        }
+        for (Object[] row : deliveryRepository.countByStoreAndStatus()) {
+            StoreCounters c = fresh.computeIfAbsent((Long) row[0], id -> new StoreCounters());
+            c.deliveries[((DeliveryStatus) row[1]).ordinal()].add(((Number) row[2]).longValue());
+        }
+        return fresh;
+    }
+
+    // Tổng chênh lệch tuyệt đối giữa bộ đếm đang dùng và bộ đếm vừa dựng lại (chỉ để ghi log)
+    private static long drift(Map<Long, StoreCounters> current, Map<Long, StoreCounters> fresh) {
+        long total = 0;
+        Set<Long> storeIds = new HashSet<>(current.keySet());
+        storeIds.addAll(fresh.keySet());
+        StoreCounters empty = new StoreCounters();
+        for (Long storeId : storeIds) {
+            StoreCounters a = current.getOrDefault(storeId, empty);
+            StoreCounters b = fresh.getOrDefault(storeId, empty);
+            for (int i = 0; i < a.orders.length; i++) {
+                total += Math.abs(a.orders[i].sum() - b.orders[i].sum());
+            }
+            for (int i = 0; i < a.deliveries.length; i++) {
+                total += Math.abs(a.deliveries[i].sum() - b.deliveries[i].sum());
+            }
+        }
+        return total;
+    }
+
+    private static StoreCounters countersOf(Map<Long, StoreCounters> counters, Long storeId) {
+        return counters.computeIfAbsent(storeId, id -> new StoreCounters());
+    }
+
+    private void afterCommit(Consumer<Map<Long, StoreCounters>> update) {
+        Runnable apply = () -> {
+            swapLock.readLock().lock();
+            try {
+                update.accept(stores);
+                if (replay != null) {
+                    replay.add(update);
+                }
+            } finally {
+                swapLock.readLock().unlock();
+            }
+            dirty.set(true);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0L : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal bd ? bd : new BigDecimal(value.toString());
+    }
+}
@@ -0,0 +1,128 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.entity.DeliveryEvent;
+import com.fastfood.management.repository.DeliveryEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Gom các GPS event do DroneSimulatorImpl.tick sinh ra và ghi xuống DB theo lô.
+ * Mỗi lần flush là một saveAll -> Hibernate gom thành JDBC batch (hibernate.jdbc.batch_size),
+ * thay vì một round trip cho mỗi tick của mỗi drone.
+ * Lô ghi lỗi được giữ lại và thử lại ở các lần flush sau (tối đa drone.gpsEvents.maxAttempts lần); lần cuối ghi
+ * từng event một để chỉ bỏ đúng event hỏng, số event bị bỏ đếm ở metric drone.gps.events.dropped.
+ */
+@Component
+@Slf4j
+public class DeliveryEventBuffer {
+
+    private static final int MAX_BATCH = 500;
+
+    private final DeliveryEventRepository eventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter droppedEvents;
+    private final int maxAttempts;
+
+    private final Queue<DeliveryEvent> pending = new ConcurrentLinkedQueue<>();
+    // Lô đã lấy khỏi pending nhưng ghi lỗi, chờ thử lại (trước event mới)
+    private final Deque<FailedBatch> retries = new ConcurrentLinkedDeque<>();
+
+    private record FailedBatch(List<DeliveryEvent> events, int attempts) {
+    }
+
+    public DeliveryEventBuffer(DeliveryEventRepository eventRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${drone.gpsEvents.maxAttempts:5}") int maxAttempts) {
+        this.eventRepository = eventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.droppedEvents = Counter.builder("drone.gps.events.dropped")
+                .description("GPS delivery events discarded after repeated write failures")
+                .register(meterRegistry);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public void enqueue(DeliveryEvent event) {
+        pending.add(event);
+    }
+
+    @Scheduled(fixedDelayString = "${drone.gpsEvents.flushDelayMs:1000}")
+    public void flush() {
+        FailedBatch retry = retries.poll();
+        if (retry != null) {
+            write(retry.events(), retry.attempts());
+            return;
+        }
+        List<DeliveryEvent> batch = new ArrayList<>(Math.min(MAX_BATCH, pending.size()));
+        DeliveryEvent next;
+        while (batch.size() < MAX_BATCH && (next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (!batch.isEmpty()) {
+            write(batch, 0);
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        while (!pending.isEmpty() || !retries.isEmpty()) {
+            flush();
+        }
+    }
+
+    private void write(List<DeliveryEvent> batch, int previousAttempts) {
+        int attempts = previousAttempts + 1;
+        try {
+            // Commit nằm trong try: lỗi insert của Hibernate chỉ lộ ra lúc flush/commit
+            transactionTemplate.executeWithoutResult(status -> eventRepository.saveAll(batch));
+            log.debug("Flushed {} delivery events", batch.size());
+        } catch (Exception e) {
+            resetIds(batch);
+            if (attempts < maxAttempts) {
+                retries.addFirst(new FailedBatch(batch, attempts));
+                log.warn("Failed to flush {} delivery events (attempt {}/{}), will retry: {}",
+                        batch.size(), attempts, maxAttempts, e.getMessage());
+            } else {
+                writeOneByOne(batch, e);
+            }
+        }
+    }
+
+    // Lần thử cuối: ghi từng event trong transaction riêng, chỉ bỏ những event vẫn lỗi
+    private void writeOneByOne(List<DeliveryEvent> batch, Exception batchError) {
+        int dropped = 0;
+        for (DeliveryEvent event : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> eventRepository.save(event));
+            } catch (Exception e) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            droppedEvents.increment(dropped);
+            log.error("Dropped {} of {} delivery events after {} attempts: {}",
+                    dropped, batch.size(), maxAttempts, batchError.getMessage());
+        }
+    }
+
+    // Id đã cấp trong transaction rollback coi như chưa ghi; để null để lần sau persist lại thay vì merge
+    private static void resetIds(List<DeliveryEvent> batch) {
+        for (DeliveryEvent event : batch) {
+            event.setId(null);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import com.fastfood.management.repository.OrderRepository;
 import com.fastfood.management.repository.DroneRepository;
 import com.fastfood.management.service.api.DeliveryService;
 import com.fastfood.management.service.api.FleetService;
+import com.fastfood.management.service.api.StockReservationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,6 +33,7 @@ public class DeliveryServiceImpl implements DeliveryService {
     private final DroneRepository droneRepository;
     private final WebSocketService webSocketService;
     private final FleetService fleetService;
+    private final StockReservationService stockReservationService;
 
     // Hàm tiện ích: chuyển từ entity Delivery sang DTO DeliveryResponse (đơn giản hoá)
     private DeliveryResponse toResponse(Delivery delivery) {
@@ -160,6 +162,7 @@ public class DeliveryServiceImpl implements DeliveryService {
             order.setStatus(Order.OrderStatus.DELIVERED);
             order.setUpdatedAt(LocalDateTime.now());
             orderRepository.save(order);
+            stockReservationService.commit(order.getId());
         }
 
         // Đưa drone về trạng thái IDLE qua FleetService (và broadcast state change)
@@ -0,0 +1,162 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.config.DroneConfig;
+import com.fastfood.management.entity.Delivery;
+import com.fastfood.management.entity.Drone;
+import com.fastfood.management.entity.Order;
+import com.fastfood.management.entity.OrderItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tính ETA theo từng drone cho dispatch, Delivery.etaSeconds và thời lượng các leg trong DroneSimulatorImpl,
+ * để ba nơi cùng một con số. ETA tới tay khách = cất cánh + bay drone -> cửa hàng + chờ lấy hàng + bay cửa hàng -> khách
+ * + dwell tại khách (drone.poc.*).
+ * - Thời gian bay = haversine x pathFactor / tốc độ hiệu dụng; tốc độ theo model (modelSpeedKmh, mặc định
+ *   cruiseSpeedKmh) cộng thành phần gió dọc hướng bay, kẹp trong [minSpeedKmh, maxSpeedKmh].
+ * - Tầm bay: quãng đường thẳng còn bay được = maxRangeKm x pin x (1 - rangeReservePct) / pathFactor, so với cả chuyến
+ *   W0 -> W1 -> W2 -> W3; drone không khai báo maxRangeKm/maxPayloadKg coi như không giới hạn.
+ * - Một leg chỉ tốn vài trăm ns nên tính trực tiếp, không cache: cache theo ô lưới không nhanh hơn khi trúng,
+ *   chậm hơn nhiều khi trượt và thêm sai số làm tròn về tâm ô.
+ */
+@Component
+@RequiredArgsConstructor
+public class DroneEtaEngine {
+
+    private final DroneConfig config;
+
+    /**
+     * ETA (s) tới tay khách nếu giao bằng drone model đang ở (droneLat, droneLng)
+     */
+    public int deliverySec(String model, double droneLat, double droneLng,
+                           double storeLat, double storeLng, double customerLat, double customerLng) {
+        return toStoreSec(model, droneLat, droneLng, storeLat, storeLng)
+                + flightSec(model, storeLat, storeLng, customerLat, customerLng)
+                + config.getDwellSecCustomer();
+    }
+
+    /**
+     * ETA (s) theo các waypoint đã chốt của delivery: W0_W1 + W1_W2 + dwell
+     */
+    public int deliverySec(Delivery delivery) {
+        return segmentSec(delivery, "W0_W1") + segmentSec(delivery, "W1_W2") + config.getDwellSecCustomer();
+    }
+
+    /**
+     * Thời lượng (s) một segment của delivery. W0_W1 gồm cả cất cánh và chờ lấy hàng tại cửa hàng; thiếu toạ độ
+     * thì dùng legDurationSec cấu hình sẵn
+     */
+    public int segmentSec(Delivery delivery, String segment) {
+        String model = delivery.getDrone() != null ? delivery.getDrone().getModel() : null;
+        switch (segment) {
+            case "W0_W1":
+                if (known(delivery.getW0Lat(), delivery.getW0Lng(), delivery.getW1Lat(), delivery.getW1Lng())) {
+                    return toStoreSec(model, delivery.getW0Lat(), delivery.getW0Lng(),
+                            delivery.getW1Lat(), delivery.getW1Lng());
+                }
+                break;
+            case "W1_W2":
+                if (known(delivery.getW1Lat(), delivery.getW1Lng(), delivery.getW2Lat(), delivery.getW2Lng())) {
+                    return flightSec(model, delivery.getW1Lat(), delivery.getW1Lng(),
+                            delivery.getW2Lat(), delivery.getW2Lng());
+                }
+                break;
+            case "W2_W3":
+                if (known(delivery.getW2Lat(), delivery.getW2Lng(), delivery.getW3Lat(), delivery.getW3Lng())) {
+                    return flightSec(model, delivery.getW2Lat(), delivery.getW2Lng(),
+                            delivery.getW3Lat(), delivery.getW3Lng());
+                }
+                break;
+            case "DWELL":
+                return config.getDwellSecCustomer();
+            default:
+                break;
+        }
+        return config.getLegDuration(segment);
+    }
+
+    /**
+     * Thời gian bay (s) giữa hai điểm, chưa gồm cất cánh/chờ
+     */
+    public int flightSec(String model, double lat1, double lng1, double lat2, double lng2) {
+        double km = DroneSpatialIndex.haversineKm(lat1, lng1, lat2, lng2) * config.getPathFactor();
+        if (km <= 0) {
+            return 0;
+        }
+        return (int) Math.round(km / speedKmh(model, bearingDeg(lat1, lng1, lat2, lng2)) * 3600.0);
+    }
+
+    /**
+     * Quãng đường thẳng (km) drone còn bay được với pin hiện tại (pin chưa biết coi như đầy)
+     */
+    public double reachKm(Double maxRangeKm, Double batteryPct) {
+        if (maxRangeKm == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double battery = batteryPct != null ? Math.max(0, Math.min(100, batteryPct)) : 100.0;
+        return maxRangeKm * battery / 100.0 * (1 - config.getRangeReservePct() / 100.0) / config.getPathFactor();
+    }
+
+    public static double maxPayloadKg(Double maxPayloadKg) {
+        return maxPayloadKg != null ? maxPayloadKg : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Tải ước tính của đơn: số món x itemWeightKg
+     */
+    public double payloadKg(Order order) {
+        int items = 0;
+        for (OrderItem item : order.getOrderItems()) {
+            items += item.getQuantity() != null ? item.getQuantity() : 0;
+        }
+        return items * config.getItemWeightKg();
+    }
+
+    /**
+     * Drone chở được đơn và đủ tầm cho cả chuyến drone -> cửa hàng -> khách -> trạm (không có trạm thì tới khách).
+     * Thiếu toạ độ drone thì chỉ xét tải
+     */
+    public boolean feasible(Drone drone, double payloadKg,
+                            double storeLat, double storeLng, double customerLat, double customerLng) {
+        if (maxPayloadKg(drone.getMaxPayloadKg()) < payloadKg) {
+            return false;
+        }
+        if (drone.getCurrentLat() == null || drone.getCurrentLng() == null) {
+            return true;
+        }
+        double tripKm = DroneSpatialIndex.haversineKm(drone.getCurrentLat(), drone.getCurrentLng(), storeLat, storeLng)
+                + DroneSpatialIndex.haversineKm(storeLat, storeLng, customerLat, customerLng);
+        if (drone.getHomeLat() != null && drone.getHomeLng() != null) {
+            tripKm += DroneSpatialIndex.haversineKm(customerLat, customerLng, drone.getHomeLat(), drone.getHomeLng());
+        }
+        return tripKm <= reachKm(drone.getMaxRangeKm(), drone.getBatteryPct());
+    }
+
+    // Cất cánh + bay tới cửa hàng + chờ lấy hàng
+    private int toStoreSec(String model, double droneLat, double droneLng, double storeLat, double storeLng) {
+        return config.getTakeoffSec() + flightSec(model, droneLat, droneLng, storeLat, storeLng)
+                + config.getStoreQueueSec();
+    }
+
+    // wind_along = wind_speed * cos(góc giữa hướng bay và hướng gió thổi tới)
+    private double speedKmh(String model, double headingDeg) {
+        double air = model != null
+                ? config.getModelSpeedKmh().getOrDefault(model, config.getCruiseSpeedKmh())
+                : config.getCruiseSpeedKmh();
+        double windAlong = config.getWindSpeedKmh() * Math.cos(Math.toRadians(headingDeg - config.getWindToDeg()));
+        return Math.max(config.getMinSpeedKmh(), Math.min(config.getMaxSpeedKmh(), air + windAlong));
+    }
+
+    private static double bearingDeg(double lat1, double lng1, double lat2, double lng2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double y = Math.sin(dLng) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLng);
+        return Math.toDegrees(Math.atan2(y, x));
+    }
+
+    private static boolean known(Double lat1, Double lng1, Double lat2, Double lng2) {
+        return lat1 != null && lng1 != null && lat2 != null && lng2 != null;
+    }
+}
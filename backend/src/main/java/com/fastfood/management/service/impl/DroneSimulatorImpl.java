@@ -5,19 +5,22 @@ import com.fastfood.management.entity.Delivery;
 import com.fastfood.management.entity.DeliveryEvent;
 import com.fastfood.management.entity.Drone;
 import com.fastfood.management.entity.Order;
-import com.fastfood.management.repository.DeliveryEventRepository;
 import com.fastfood.management.repository.DeliveryRepository;
 import com.fastfood.management.repository.DroneRepository;
 import com.fastfood.management.repository.OrderRepository;
 import com.fastfood.management.service.api.DroneSimulator;
 import com.fastfood.management.service.api.DroneTrackingService;
 import com.fastfood.management.service.api.FleetService;
+import com.fastfood.management.service.api.StockReservationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -27,7 +30,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
@@ -38,10 +40,14 @@ public class DroneSimulatorImpl implements DroneSimulator {
     private final DeliveryRepository deliveryRepository;
     private final DroneRepository droneRepository;
     private final OrderRepository orderRepository;
-    private final DeliveryEventRepository eventRepository;
+    private final DeliveryEventBuffer eventBuffer;
     private final SimpMessagingTemplate messagingTemplate;
     private final DroneTrackingService droneTrackingService;
     private final FleetService fleetService;
+    private final StockReservationService stockReservationService;
+    private final OptimisticRetry optimisticRetry;
+    private final FleetRegistry fleetRegistry;
+    private final DroneEtaEngine etaEngine;
     
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(10);
     private final Map<Long, ScheduledFuture<?>> activeSimulations = new ConcurrentHashMap<>();
@@ -60,12 +66,15 @@ public class DroneSimulatorImpl implements DroneSimulator {
         ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(
             () -> {
                 try {
-                    Delivery delivery = deliveryRepository.findById(deliveryId).orElse(null);
-                    if (delivery != null && delivery.getStatus() == Delivery.DeliveryStatus.IN_PROGRESS) {
-                        tick(delivery);
-                    } else {
-                        stopSimulation(deliveryId);
-                    }
+                    // Mỗi tick là một transaction: đọc lại delivery/drone/order, xung đột version thì chạy lại
+                    optimisticRetry.run("simulation tick for delivery " + deliveryId, () -> {
+                        Delivery delivery = deliveryRepository.findById(deliveryId).orElse(null);
+                        if (delivery != null && delivery.getStatus() == Delivery.DeliveryStatus.IN_PROGRESS) {
+                            tick(delivery);
+                        } else {
+                            stopSimulation(deliveryId);
+                        }
+                    });
                 } catch (Exception e) {
                     log.error("Error in simulation tick for delivery {}: {}", deliveryId, e.getMessage());
                 }
@@ -110,7 +119,7 @@ public class DroneSimulatorImpl implements DroneSimulator {
             delivery.setEtaSeconds(remainingETA);
             deliveryRepository.save(delivery);
             
-            // Tạo GPS event
+            // Tạo GPS event (ghi xuống DB theo lô qua DeliveryEventBuffer)
             DeliveryEvent gpsEvent = DeliveryEvent.builder()
                     .delivery(delivery)
                     .eventType(DeliveryEvent.EventType.GPS_UPDATE)
@@ -118,7 +127,7 @@ public class DroneSimulatorImpl implements DroneSimulator {
                     .lng(currentLng)
                     .ts(LocalDateTime.now())
                     .build();
-            eventRepository.save(gpsEvent);
+            eventBuffer.enqueue(gpsEvent);
             
             // Gửi WebSocket update
             sendGPSUpdate(delivery, currentLat, currentLng, remainingETA);
@@ -131,6 +140,8 @@ public class DroneSimulatorImpl implements DroneSimulator {
                 }
             }
             
+        } catch (OptimisticLockingFailureException e) {
+            throw e; // để OptimisticRetry chạy lại cả tick
         } catch (Exception e) {
             log.error("Error in tick for delivery {}: {}", delivery.getId(), e.getMessage());
         }
@@ -150,7 +161,7 @@ public class DroneSimulatorImpl implements DroneSimulator {
                 // Không chặn mô phỏng nếu save thất bại
             }
         }
-        int segmentDuration = Math.max(1, droneConfig.getLegDuration(segment));
+        int segmentDuration = Math.max(1, etaEngine.segmentSec(delivery, segment));
         
         // Tính elapsed time từ khi bắt đầu segment (seconds)
         long elapsedSeconds = Math.max(0, ChronoUnit.SECONDS.between(segmentStart, LocalDateTime.now()));
@@ -173,7 +184,7 @@ public class DroneSimulatorImpl implements DroneSimulator {
     public int calculateRemainingETA(Delivery delivery) {
         String segment = delivery.getCurrentSegment() != null ? delivery.getCurrentSegment() : "W0_W1";
         LocalDateTime segmentStart = delivery.getSegmentStartTime();
-        int segmentDuration = Math.max(1, droneConfig.getLegDuration(segment));
+        int segmentDuration = Math.max(1, etaEngine.segmentSec(delivery, segment));
         
         // Thời gian còn lại của segment hiện tại (nếu thiếu segmentStart -> giả định full duration)
         long elapsedSeconds = segmentStart != null
@@ -187,7 +198,7 @@ public class DroneSimulatorImpl implements DroneSimulator {
         int remainingSegments = 0;
         switch (segment) {
             case "W0_W1":
-                remainingSegments = droneConfig.getLegDuration("W1_W2") + droneConfig.getDwellSecCustomer();
+                remainingSegments = etaEngine.segmentSec(delivery, "W1_W2") + droneConfig.getDwellSecCustomer();
                 break;
             case "W1_W2":
                 remainingSegments = droneConfig.getDwellSecCustomer();
@@ -261,7 +272,7 @@ public class DroneSimulatorImpl implements DroneSimulator {
             } catch (Exception ignore) {}
             return true;
         }
-        int segmentDuration = Math.max(1, droneConfig.getLegDuration(segment));
+        int segmentDuration = Math.max(1, etaEngine.segmentSec(delivery, segment));
         long elapsedSeconds = Math.max(0, ChronoUnit.SECONDS.between(segmentStart, LocalDateTime.now()));
         
         return elapsedSeconds >= segmentDuration;
@@ -321,8 +332,12 @@ public class DroneSimulatorImpl implements DroneSimulator {
 
         // Cập nhật order
         Order order = delivery.getOrder();
+        boolean alreadyDelivered = order.getStatus() == Order.OrderStatus.DELIVERED;
         order.setStatus(Order.OrderStatus.DELIVERED);
         orderRepository.save(order);
+        if (!alreadyDelivered) {
+            stockReservationService.commit(order.getId());
+        }
 
         // Hoàn tất assignment và đưa drone về IDLE qua FleetService
         Drone drone = delivery.getDrone();
@@ -338,36 +353,22 @@ public class DroneSimulatorImpl implements DroneSimulator {
 
         log.info("Delivery {} completed successfully", delivery.getId());
 
-        AtomicBoolean startedNextSimulation = new AtomicBoolean(false);
-        // Tự động gán đơn READY_FOR_DELIVERY nếu chế độ AUTO và có đơn trong cùng cửa hàng
-        try {
-            if ("AUTO".equalsIgnoreCase(droneConfig.getAssignMode()) && order.getStore() != null && order.getStore().getId() != null) {
-                org.springframework.data.domain.Page<Order> readyPage =
-                        orderRepository.findByStoreIdAndStatus(order.getStore().getId(), Order.OrderStatus.READY_FOR_DELIVERY,
-                                org.springframework.data.domain.PageRequest.of(0, 1));
-                if (!readyPage.isEmpty()) {
-                    Order nextOrder = readyPage.getContent().get(0);
-                    fleetService.autoAssignDrone(nextOrder).ifPresent(da -> {
-                        Delivery nextDelivery = da.getDelivery();
-                        if (nextDelivery != null) {
-                            nextDelivery.setStatus(Delivery.DeliveryStatus.IN_PROGRESS);
-                            nextDelivery.setSegmentStartTime(LocalDateTime.now());
-                            deliveryRepository.save(nextDelivery);
-                            startSimulation(nextDelivery.getId());
-                            log.info("Auto-assigned and started simulation for next order {} with delivery {}", nextOrder.getId(), nextDelivery.getId());
-                            // Có đơn mới, bỏ qua mô phỏng quay về trạm
-                            startedNextSimulation.set(true);
-                        }
-                    });
-                }
-            }
-        } catch (Exception ex) {
-            log.warn("Auto-assign after completion failed: {}", ex.getMessage());
-        }
+        // Đơn kế tiếp do dispatcher (AutoAssignScheduler) gán qua DroneIdleEvent của completeAssignment; ở đây chỉ
+        // chạy mô phỏng đường bay quay về trạm sau commit, tự dừng khi drone nhận đơn mới
+        runAfterCommit(() -> startReturnToBaseVisualization(delivery));
+    }
 
-        // Không có đơn mới thì chạy mô phỏng đường bay quay về trạm (chỉ hiển thị)
-        if (!startedNextSimulation.get()) {
-            startReturnToBaseVisualization(delivery);
+    private void runAfterCommit(Runnable action) {
+        // Chạy trên executor của simulator để có transaction mới, không dính transaction vừa commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scheduler.execute(action);
+                }
+            });
+        } else {
+            scheduler.execute(action);
         }
     }
     
@@ -434,23 +435,28 @@ public class DroneSimulatorImpl implements DroneSimulator {
         stopReturnVisualization(deliveryId);
 
         final LocalDateTime startTime = LocalDateTime.now();
-        final int durationSec = droneConfig.getLegDuration("W2_W3");
+        final int durationSec = Math.max(1, etaEngine.segmentSec(delivery, "W2_W3"));
         final double[] startPos = getSegmentStartPosition(delivery, "W2_W3");
         final double[] endPos = getSegmentEndPosition(delivery, "W2_W3");
 
         ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
             try {
+                FleetRegistry.DroneState state = fleetRegistry.get(delivery.getDrone().getId());
+                if (state != null && state.status() != Drone.DroneStatus.IDLE) {
+                    // Drone đã được gán chuyến mới: mô phỏng của chuyến đó điều khiển vị trí
+                    stopReturnVisualization(deliveryId);
+                    return;
+                }
                 long elapsed = ChronoUnit.SECONDS.between(startTime, LocalDateTime.now());
                 double u = Math.min(1.0, (double) elapsed / durationSec);
                 double lat = (1 - u) * startPos[0] + u * endPos[0];
                 double lng = (1 - u) * startPos[1] + u * endPos[1];
 
                 // Cập nhật vị trí drone nhưng KHÔNG thay đổi trạng thái đơn/assignment
-                Drone drone = delivery.getDrone();
-                drone.setCurrentLat(lat);
-                drone.setCurrentLng(lng);
-                drone.setLastSeenAt(LocalDateTime.now());
-                droneRepository.save(drone);
+                // Chỉ ghi vị trí (không đụng status/version): drone lúc này đã IDLE và có thể được gán đơn mới
+                LocalDateTime seenAt = LocalDateTime.now();
+                droneRepository.updatePosition(delivery.getDrone().getId(), lat, lng, seenAt);
+                fleetRegistry.updateTelemetry(delivery.getDrone().getId(), lat, lng, null, seenAt);
 
                 // Gửi GPS update để hiển thị đường bay, ETA=0, segment vẫn là segment cuối
                 sendGPSUpdate(delivery, lat, lng, 0);
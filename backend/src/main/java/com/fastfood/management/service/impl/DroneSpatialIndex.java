@@ -0,0 +1,153 @@
+package com.fastfood.management.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lưới ô vuông cố định theo độ (như geohash một cấp) chứa vị trí các drone, dùng cho FleetRegistry.
+ * Tìm k drone gần nhất trong bán kính bằng cách duyệt các vòng ô quanh điểm cần tìm, từ trong ra ngoài,
+ * dừng khi vòng tiếp theo chắc chắn xa hơn drone thứ k đã có hoặc vượt bán kính; không phải quét cả đội.
+ * Mỗi drone mang theo "bao tầm" tính sẵn lúc cập nhật (quãng đường thẳng còn bay được, tải tối đa) để truy vấn loại
+ * drone không đủ tầm/tải ngay khi quét ô, không để chúng chiếm chỗ trong k kết quả.
+ * Cập nhật của một drone phải được gọi tuần tự (FleetRegistry gọi trong compute của map drones).
+ */
+final class DroneSpatialIndex {
+
+    static final double KM_PER_DEG_LAT = 111.32;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final Comparator<Neighbor> FARTHEST_FIRST =
+            Comparator.comparingDouble(Neighbor::distanceKm).reversed();
+
+    private final double cellDeg;
+    private final double cellKm;
+    // ô -> (droneId -> vị trí)
+    private final Map<Long, Map<Long, Point>> cells = new ConcurrentHashMap<>();
+    private final Map<Long, Long> cellOf = new ConcurrentHashMap<>();
+
+    private record Point(double lat, double lng, double reachKm, double maxPayloadKg) {
+    }
+
+    record Neighbor(Long droneId, double distanceKm) {
+    }
+
+    DroneSpatialIndex(double cellKm) {
+        this.cellKm = cellKm;
+        this.cellDeg = cellKm / KM_PER_DEG_LAT;
+    }
+
+    /**
+     * reachKm: quãng đường thẳng còn bay được; maxPayloadKg: tải tối đa (Double.POSITIVE_INFINITY = không giới hạn)
+     */
+    void put(Long droneId, double lat, double lng, double reachKm, double maxPayloadKg) {
+        long cell = cellKey(row(lat), col(lng));
+        Long previous = cellOf.put(droneId, cell);
+        if (previous != null && previous != cell) {
+            removeFromCell(previous, droneId);
+        }
+        Point point = new Point(lat, lng, reachKm, maxPayloadKg);
+        cells.compute(cell, (key, members) -> {
+            Map<Long, Point> target = members != null ? members : new ConcurrentHashMap<>();
+            target.put(droneId, point);
+            return target;
+        });
+    }
+
+    void remove(Long droneId) {
+        Long previous = cellOf.remove(droneId);
+        if (previous != null) {
+            removeFromCell(previous, droneId);
+        }
+    }
+
+    int size() {
+        return cellOf.size();
+    }
+
+    /**
+     * Tối đa k drone cách (lat, lng) không quá radiusKm (haversine), gần nhất trước, chỉ gồm drone bay tới điểm đó
+     * rồi thêm được ít nhất extraKm (khoảng cách d + extraKm <= reachKm) và chở được payloadKg
+     */
+    List<Neighbor> nearest(double lat, double lng, double radiusKm, int k, double extraKm, double payloadKg) {
+        if (k <= 0 || cellOf.isEmpty()) {
+            return List.of();
+        }
+        int row0 = row(lat);
+        int col0 = col(lng);
+        // Ô theo kinh độ hẹp lại theo cos(vĩ độ); cạnh ngắn nhất quyết định khoảng cách tối thiểu tới vòng ngoài
+        double minCellKm = cellKm * Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+        int maxRing = (int) Math.ceil(radiusKm / minCellKm) + 1;
+        PriorityQueue<Neighbor> best = new PriorityQueue<>(k + 1, FARTHEST_FIRST);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int dr = -ring; dr <= ring; dr++) {
+                boolean edgeRow = dr == -ring || dr == ring;
+                for (int dc = -ring; dc <= ring; dc += edgeRow ? 1 : 2 * ring) {
+                    Map<Long, Point> members = cells.get(cellKey(row0 + dr, col0 + dc));
+                    if (members != null) {
+                        collect(members, lat, lng, radiusKm, k, extraKm, payloadKg, best);
+                    }
+                }
+            }
+            // Mọi drone chưa xét nằm ở vòng >= ring + 1, tức cách ít nhất ring * minCellKm
+            double unseenKm = ring * minCellKm;
+            if (unseenKm > radiusKm || (best.size() == k && best.peek().distanceKm() <= unseenKm)) {
+                break;
+            }
+        }
+        List<Neighbor> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Neighbor::distanceKm));
+        return result;
+    }
+
+    private static void collect(Map<Long, Point> members, double lat, double lng, double radiusKm, int k,
+                                double extraKm, double payloadKg, PriorityQueue<Neighbor> best) {
+        for (Map.Entry<Long, Point> entry : members.entrySet()) {
+            Point p = entry.getValue();
+            // So bao tầm trước: hai phép so sánh, bỏ qua haversine cho drone không thể nhận đơn
+            if (p.maxPayloadKg() < payloadKg || p.reachKm() < extraKm) {
+                continue;
+            }
+            double d = haversineKm(lat, lng, p.lat(), p.lng());
+            if (d > radiusKm || d + extraKm > p.reachKm()) {
+                continue;
+            }
+            if (best.size() < k) {
+                best.add(new Neighbor(entry.getKey(), d));
+            } else if (d < best.peek().distanceKm()) {
+                best.poll();
+                best.add(new Neighbor(entry.getKey(), d));
+            }
+        }
+    }
+
+    private void removeFromCell(long cell, Long droneId) {
+        cells.computeIfPresent(cell, (key, members) -> {
+            members.remove(droneId);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellDeg);
+    }
+
+    private int col(double lng) {
+        return (int) Math.floor(lng / cellDeg);
+    }
+
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
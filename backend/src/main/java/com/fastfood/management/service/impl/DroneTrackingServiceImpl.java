@@ -26,6 +26,7 @@ public class DroneTrackingServiceImpl implements DroneTrackingService {
     private final DeliveryRepository deliveryRepository;
     private final DroneAssignmentRepository assignmentRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final FleetRegistry fleetRegistry;
     
     // Cache để lưu trữ real-time data
     private final Map<Long, DroneGpsData> droneGpsCache = new ConcurrentHashMap<>();
@@ -56,11 +57,14 @@ public class DroneTrackingServiceImpl implements DroneTrackingService {
                 Drone drone = droneOpt.get();
                 drone.setCurrentLat(lat);
                 drone.setCurrentLng(lng);
+                // Ghi cả pin: DroneEtaEngine.feasible và lưới tầm bay của FleetRegistry cùng đọc giá trị này
+                drone.setBatteryPct(battery);
                 droneRepository.save(drone);
 
                 // Cập nhật cache
                 DroneGpsData gpsData = new DroneGpsData(droneId, lat, lng, battery, LocalDateTime.now());
                 droneGpsCache.put(droneId, gpsData);
+                fleetRegistry.updateTelemetry(droneId, lat, lng, battery, gpsData.timestamp);
 
                 // Broadcast qua WebSocket
                 Map<String, Object> update = Map.of(
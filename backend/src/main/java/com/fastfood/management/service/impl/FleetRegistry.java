@@ -0,0 +1,308 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.entity.Drone;
+import com.fastfood.management.entity.Drone.DroneStatus;
+import com.fastfood.management.entity.DroneAssignment;
+import com.fastfood.management.repository.DroneAssignmentRepository;
+import com.fastfood.management.repository.DroneRepository;
+import com.fastfood.management.event.DroneAssignmentSavedEvent;
+import com.fastfood.management.event.DroneRemovedEvent;
+import com.fastfood.management.event.DroneSavedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trạng thái hiện tại của toàn bộ đội drone trong bộ nhớ (status, vị trí, pin, assignment đang chạy),
+ * để màn quản lý fleet đếm/lọc/phân trang mà không quét bảng drones mỗi request.
+ * - FleetRegistryListener đẩy mọi thay đổi Drone/DroneAssignment vào đây sau khi commit.
+ * - Telemetry không đi qua entity (updatePosition của simulator) được báo trực tiếp qua updateTelemetry; GPS từ thiết bị
+ *   ghi cả pin xuống drones nên registry và kiểm tra tầm trên entity dùng cùng một mức pin.
+ * - reconcile() định kỳ so với DB để sửa lệch (cập nhật bằng query bulk, ghi tay vào DB...).
+ * - Drone IDLE có toạ độ được giữ thêm trong lưới không gian (DroneSpatialIndex) để dispatch tìm drone gần cửa hàng
+ *   mà không đọc bảng drones; mọi thay đổi trạng thái/vị trí đi qua store()/drop() để lưới luôn khớp với map.
+ *   Kèm theo là bao tầm (tầm bay còn lại theo pin, tải tối đa) tính lại mỗi lần cập nhật để dispatch loại drone
+ *   không đủ tầm/tải ngay trong lưới.
+ */
+@Component
+@Slf4j
+public class FleetRegistry {
+
+    private static final Comparator<DroneState> NEWEST_FIRST = Comparator.comparing(DroneState::id).reversed();
+
+    private final DroneRepository droneRepository;
+    private final DroneAssignmentRepository assignmentRepository;
+    private final DroneEtaEngine etaEngine;
+
+    private final Map<Long, DroneState> drones = new ConcurrentHashMap<>();
+    private final DroneSpatialIndex idleIndex;
+    // droneId -> assignment đang chạy
+    private final Map<Long, ActiveAssignment> assignments = new ConcurrentHashMap<>();
+
+    public record DroneState(Long id, String serial, String model, DroneStatus status, Double batteryPct,
+                             Double currentLat, Double currentLng, Double homeLat, Double homeLng,
+                             Double maxPayloadKg, Double maxRangeKm, LocalDateTime lastAssignedAt,
+                             LocalDateTime lastSeenAt, Long version) {
+
+        public static DroneState of(Drone d) {
+            return new DroneState(d.getId(), d.getSerial(), d.getModel(), d.getStatus(), d.getBatteryPct(),
+                    d.getCurrentLat(), d.getCurrentLng(), d.getHomeLat(), d.getHomeLng(),
+                    d.getMaxPayloadKg(), d.getMaxRangeKm(), d.getLastAssignedAt(), d.getLastSeenAt(),
+                    d.getVersion() != null ? d.getVersion() : 0L);
+        }
+
+        DroneState withTelemetry(Double lat, Double lng, Double battery, LocalDateTime seenAt) {
+            return new DroneState(id, serial, model, status, battery != null ? battery : batteryPct,
+                    lat, lng, homeLat, homeLng, maxPayloadKg, maxRangeKm, lastAssignedAt, seenAt, version);
+        }
+    }
+
+    public record ActiveAssignment(Long assignmentId, Long orderId, Long deliveryId) {
+    }
+
+    public record Nearby(DroneState drone, double distanceKm) {
+    }
+
+    public FleetRegistry(DroneRepository droneRepository,
+                         DroneAssignmentRepository assignmentRepository,
+                         DroneEtaEngine etaEngine,
+                         @Value("${drone.dispatch.indexCellKm:1.0}") double indexCellKm) {
+        this.droneRepository = droneRepository;
+        this.assignmentRepository = assignmentRepository;
+        this.etaEngine = etaEngine;
+        this.idleIndex = new DroneSpatialIndex(indexCellKm);
+    }
+
+    // ---- cập nhật ----
+
+    @EventListener
+    public void onDroneSavedEvent(DroneSavedEvent event) {
+        onDroneSaved(event.drone());
+    }
+
+    @EventListener
+    public void onDroneRemovedEvent(DroneRemovedEvent event) {
+        onDroneRemoved(event.droneId());
+    }
+
+    @EventListener
+    public void onAssignmentSavedEvent(DroneAssignmentSavedEvent event) {
+        onAssignmentSaved(event.assignment());
+    }
+
+    public void onDroneSaved(Drone drone) {
+        DroneState state = DroneState.of(drone);
+        afterCommit(() -> drones.compute(state.id(), (id, old) ->
+                indexed(old == null || state.version() >= old.version() ? state : old)));
+    }
+
+    public void onDroneRemoved(Long droneId) {
+        afterCommit(() -> {
+            drop(droneId);
+            assignments.remove(droneId);
+        });
+    }
+
+    public void onAssignmentSaved(DroneAssignment assignment) {
+        if (assignment.getDrone() == null) {
+            return;
+        }
+        Long droneId = assignment.getDrone().getId();
+        Long assignmentId = assignment.getId();
+        if (assignment.getCompletedAt() != null) {
+            afterCommit(() -> assignments.computeIfPresent(droneId,
+                    (id, current) -> Objects.equals(current.assignmentId(), assignmentId) ? null : current));
+            return;
+        }
+        ActiveAssignment active = new ActiveAssignment(assignmentId,
+                assignment.getOrder() != null ? assignment.getOrder().getId() : null,
+                assignment.getDelivery() != null ? assignment.getDelivery().getId() : null);
+        afterCommit(() -> assignments.put(droneId, active));
+    }
+
+    /**
+     * Vị trí/pin ghi không qua entity (không tăng version) nên báo thẳng vào registry
+     */
+    public void updateTelemetry(Long droneId, Double lat, Double lng, Double batteryPct, LocalDateTime seenAt) {
+        drones.computeIfPresent(droneId, (id, state) -> indexed(state.withTelemetry(lat, lng, batteryPct, seenAt)));
+    }
+
+    // ---- truy vấn ----
+
+    public int size() {
+        return drones.size();
+    }
+
+    public Map<DroneStatus, Long> countByStatus() {
+        Map<DroneStatus, Long> counts = new EnumMap<>(DroneStatus.class);
+        for (DroneState state : drones.values()) {
+            if (state.status() != null) {
+                counts.merge(state.status(), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Danh sách drone theo id giảm dần; statuses null/rỗng = không lọc
+     */
+    public List<DroneState> list(Collection<DroneStatus> statuses) {
+        return drones.values().stream()
+                .filter(s -> statuses == null || statuses.isEmpty() || statuses.contains(s.status()))
+                .sorted(NEWEST_FIRST)
+                .toList();
+    }
+
+    public Page<DroneState> page(Collection<DroneStatus> statuses, int page, int size) {
+        List<DroneState> all = list(statuses);
+        int from = Math.min(page * size, all.size());
+        int to = Math.min(from + size, all.size());
+        return new PageImpl<>(all.subList(from, to),
+                PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id")), all.size());
+    }
+
+    public DroneState get(Long droneId) {
+        return drones.get(droneId);
+    }
+
+    public ActiveAssignment currentAssignment(Long droneId) {
+        return assignments.get(droneId);
+    }
+
+    /**
+     * Tối đa k drone IDLE cách (lat, lng) không quá radiusKm, gần nhất trước, đủ tầm để tới đó rồi bay thêm extraKm
+     * (đường thẳng) và chở được payloadKg. Registry có thể trễ so với DB một nhịp commit, nên bên gọi vẫn phải kiểm tra
+     * lại trạng thái và tầm cả chuyến trên entity trước khi gán.
+     */
+    public List<Nearby> nearestIdle(double lat, double lng, double radiusKm, int k, double extraKm, double payloadKg) {
+        List<Nearby> result = new ArrayList<>(k);
+        for (DroneSpatialIndex.Neighbor neighbor : idleIndex.nearest(lat, lng, radiusKm, k, extraKm, payloadKg)) {
+            DroneState state = drones.get(neighbor.droneId());
+            if (state != null) {
+                result.add(new Nearby(state, neighbor.distanceKm()));
+            }
+        }
+        return result;
+    }
+
+    // ---- đồng bộ với DB ----
+
+    // Nạp trước các listener khác của ApplicationReadyEvent (AutoAssignScheduler dispatch ngay sau khi khởi động)
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void load() {
+        reconcile();
+    }
+
+    @Scheduled(fixedDelayString = "${drone.registry.reconcileMs:60000}", initialDelayString = "${drone.registry.reconcileMs:60000}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        Map<Long, DroneState> fromDb = new HashMap<>();
+        for (Drone drone : droneRepository.findAll()) {
+            fromDb.put(drone.getId(), DroneState.of(drone));
+        }
+        int drift = 0;
+        for (DroneState db : fromDb.values()) {
+            DroneState current = drones.get(db.id());
+            // Bản trong bộ nhớ mới hơn (commit sau lúc đọc DB) thì giữ nguyên
+            if (current != null && current.version() > db.version()) {
+                continue;
+            }
+            // Pin ghi qua entity (tăng version) nên so version là đủ
+            if (current == null || current.version() < db.version() || current.status() != db.status()) {
+                store(db);
+                drift++;
+            } else if (db.lastSeenAt() != null
+                    && (current.lastSeenAt() == null || db.lastSeenAt().isAfter(current.lastSeenAt()))) {
+                store(current.withTelemetry(db.currentLat(), db.currentLng(), null, db.lastSeenAt()));
+            }
+        }
+        for (Long id : drones.keySet()) {
+            if (!fromDb.containsKey(id)) {
+                drop(id);
+                drift++;
+            }
+        }
+
+        Map<Long, ActiveAssignment> activeFromDb = new HashMap<>();
+        for (DroneAssignment a : assignmentRepository.findByCompletedAtIsNull()) {
+            if (a.getDrone() == null) {
+                continue;
+            }
+            // Nhiều assignment mở cho một drone: lấy cái mới nhất như FleetService.getCurrentAssignment
+            ActiveAssignment candidate = new ActiveAssignment(a.getId(),
+                    a.getOrder() != null ? a.getOrder().getId() : null,
+                    a.getDelivery() != null ? a.getDelivery().getId() : null);
+            activeFromDb.merge(a.getDrone().getId(), candidate,
+                    (x, y) -> x.assignmentId() >= y.assignmentId() ? x : y);
+        }
+        if (!activeFromDb.equals(assignments)) {
+            assignments.keySet().retainAll(activeFromDb.keySet());
+            assignments.putAll(activeFromDb);
+            drift++;
+        }
+
+        if (drift > 0) {
+            log.info("Fleet registry reconciled with drones table ({} drones, {} corrections)", drones.size(), drift);
+        }
+    }
+
+    private void store(DroneState state) {
+        drones.compute(state.id(), (id, old) -> indexed(state));
+    }
+
+    private void drop(Long droneId) {
+        drones.computeIfPresent(droneId, (id, old) -> {
+            idleIndex.remove(id);
+            return null;
+        });
+    }
+
+    // Gọi trong compute của drones (khoá theo drone) để lưới cập nhật cùng thứ tự với map
+    private DroneState indexed(DroneState state) {
+        if (state.status() == DroneStatus.IDLE && state.currentLat() != null && state.currentLng() != null) {
+            idleIndex.put(state.id(), state.currentLat(), state.currentLng(),
+                    etaEngine.reachKm(state.maxRangeKm(), state.batteryPct()),
+                    DroneEtaEngine.maxPayloadKg(state.maxPayloadKg()));
+        } else {
+            idleIndex.remove(state.id());
+        }
+        return state;
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
@@ -1,20 +1,32 @@
 package com.fastfood.management.service.impl;
 
 import com.fastfood.management.entity.*;
+import com.fastfood.management.event.DroneIdleEvent;
 import com.fastfood.management.repository.DeliveryRepository;
 import com.fastfood.management.repository.DroneAssignmentRepository;
 import com.fastfood.management.repository.DroneRepository;
+import com.fastfood.management.repository.OrderRepository;
 import com.fastfood.management.service.api.FleetService;
 import com.fastfood.management.service.api.DroneTrackingService;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,37 +37,202 @@ public class FleetServiceImpl implements FleetService {
     private final DroneRepository droneRepository;
     private final DroneAssignmentRepository assignmentRepository;
     private final DeliveryRepository deliveryRepository;
+    private final OrderRepository orderRepository;
     private final DroneTrackingService droneTrackingService;
+    private final FleetRegistry fleetRegistry;
+    private final DroneEtaEngine etaEngine;
+    private final ApplicationEventPublisher eventPublisher;
 
-    // Demo config for simple ETA calculation
+    // Tốc độ, gió, cất cánh, chờ tại cửa hàng: xem DroneEtaEngine (drone.poc.*)
     private static final double DISPATCH_RADIUS_KM = 10.0; // chỉ chọn drone trong bán kính này quanh cửa hàng
-    private static final double PATH_FACTOR = 1.10;         // hệ số đường bay so với đường thẳng
-    private static final double V_AIR_KMH = 30.0;           // tốc độ bay danh định của drone (km/h)
-    private static final double V_MIN_KMH = 5.0;            // tốc độ tối thiểu (km/h)
-    private static final double V_MAX_KMH = 60.0;           // tốc độ tối đa (km/h)
-    private static final int T_OVERHEAD_SEC = 60;           // thời gian chuẩn bị/cất cánh (s)
-    private static final int T_QUEUE_SEC = 0;               // thời gian chờ xếp hàng (s)
+    private static final int DISPATCH_CANDIDATES = 10;      // số drone gần nhất lấy từ FleetRegistry để xếp hạng
+    private static final double AGE_WEIGHT = 0.5;           // gán theo lô: mỗi giây đơn đã chờ bù 0.5 s ETA
     
     @Override
     @Transactional
     public Optional<DroneAssignment> autoAssignDrone(Order order) {
         log.info("Auto-assigning drone for order: {}", order.getId());
-        
-        List<Drone> availableDrones = getAvailableDrones();
-        if (availableDrones.isEmpty()) {
-            log.warn("No available drones for order: {}", order.getId());
-            return Optional.empty();
-        }
 
-        // Lọc theo bán kính từ cửa hàng và rank theo ETA rồi khoảng cách đến cửa hàng
-        Optional<Drone> selectedDrone = selectDroneByEta(order, availableDrones);
+        // Lấy drone gần cửa hàng từ FleetRegistry và rank theo ETA rồi khoảng cách đến cửa hàng
+        Optional<Drone> selectedDrone = selectDroneByEta(order);
         if (selectedDrone.isEmpty()) {
+            log.warn("No available drones for order: {}", order.getId());
             return Optional.empty();
         }
         
         return Optional.of(createAssignment(order, selectedDrone.get(), "SYSTEM", DroneAssignment.AssignmentMode.AUTO));
     }
     
+    @Override
+    @Transactional
+    public Optional<DroneAssignment> dispatchReadyOrder(Long orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new EntityNotFoundException("Order not found: " + orderId));
+        if (order.getStatus() != Order.OrderStatus.READY_FOR_DELIVERY) {
+            throw new IllegalStateException("Order " + orderId + " is no longer READY_FOR_DELIVERY (" + order.getStatus() + ")");
+        }
+
+        Optional<DroneAssignment> assigned = autoAssignDrone(order);
+        assigned.ifPresent(assignment -> startDelivery(order, assignment));
+        return assigned;
+    }
+
+    @Override
+    @Transactional
+    public List<DroneAssignment> dispatchReadyOrders(List<Long> orderIds) {
+        List<Order> orders = orderRepository.findAllById(orderIds).stream()
+                .filter(o -> o.getStatus() == Order.OrderStatus.READY_FOR_DELIVERY
+                        && o.getPaymentStatus() == Order.PaymentStatus.PAID
+                        && hasCoordinates(o))
+                .sorted(Comparator.comparing(Order::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+
+        // Ứng viên của từng đơn lấy từ lưới IDLE, một lần tra cho mỗi cửa hàng với quãng tới khách và tải nhỏ nhất
+        // trong các đơn của cửa hàng đó (từng cặp được kiểm tra đủ tầm/tải khi dựng ma trận); k không nhỏ hơn số đơn để
+        // nhiều đơn cùng khu vực vẫn đủ drone để ghép
+        int k = Math.max(DISPATCH_CANDIDATES, orders.size());
+        double[] payloadKg = new double[orders.size()];
+        Map<Long, double[]> minNeedByStore = new HashMap<>();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            payloadKg[i] = etaEngine.payloadKg(order);
+            double legKm = DroneSpatialIndex.haversineKm(order.getStore().getLatitude(), order.getStore().getLongitude(),
+                    order.getAddress().getLatitude(), order.getAddress().getLongitude());
+            minNeedByStore.merge(order.getStore().getId(), new double[]{legKm, payloadKg[i]},
+                    (a, b) -> new double[]{Math.min(a[0], b[0]), Math.min(a[1], b[1])});
+        }
+        Map<Long, List<FleetRegistry.Nearby>> nearbyByStore = new HashMap<>();
+        List<List<FleetRegistry.Nearby>> nearbyByOrder = new ArrayList<>(orders.size());
+        Set<Long> droneIds = new LinkedHashSet<>();
+        for (Order order : orders) {
+            Store store = order.getStore();
+            List<FleetRegistry.Nearby> nearby = nearbyByStore.computeIfAbsent(store.getId(), id -> {
+                double[] need = minNeedByStore.get(id);
+                return fleetRegistry.nearestIdle(store.getLatitude(), store.getLongitude(), DISPATCH_RADIUS_KM, k,
+                        need[0], need[1]);
+            });
+            nearbyByOrder.add(nearby);
+            nearby.forEach(n -> droneIds.add(n.drone().id()));
+        }
+        List<Drone> drones = droneRepository.findAllById(droneIds).stream()
+                .filter(d -> d.getStatus() == Drone.DroneStatus.IDLE
+                        && d.getCurrentLat() != null && d.getCurrentLng() != null)
+                .toList();
+        Map<Long, Integer> column = new HashMap<>();
+        for (int j = 0; j < drones.size(); j++) {
+            column.put(drones.get(j).getId(), j);
+        }
+
+        // Chi phí = ETA tới tay khách nếu giao bằng drone đó, trừ AGE_WEIGHT giây cho mỗi giây đơn đã chờ để đơn cũ
+        // thắng khi thiếu drone; cặp ngoài bán kính là INFEASIBLE
+        LocalDateTime now = LocalDateTime.now();
+        double[][] cost = new double[orders.size()][drones.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            Arrays.fill(cost[i], MinCostMatching.INFEASIBLE);
+            long ageSec = order.getCreatedAt() != null
+                    ? Math.max(0, Duration.between(order.getCreatedAt(), now).getSeconds()) : 0;
+            for (FleetRegistry.Nearby n : nearbyByOrder.get(i)) {
+                Integer j = column.get(n.drone().id());
+                if (j != null && feasible(drones.get(j), order, payloadKg[i])) {
+                    cost[i][j] = etaSec(drones.get(j), order) - AGE_WEIGHT * ageSec;
+                }
+            }
+        }
+
+        int[] match = MinCostMatching.solve(cost);
+        List<DroneAssignment> assigned = new ArrayList<>();
+        List<Order> stranded = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            if (match[i] >= 0) {
+                DroneAssignment assignment = createAssignment(order, drones.get(match[i]), "SYSTEM",
+                        DroneAssignment.AssignmentMode.AUTO);
+                startDelivery(order, assignment);
+                assigned.add(assignment);
+            } else if (nearbyByOrder.get(i).isEmpty()) {
+                stranded.add(order);
+            }
+        }
+
+        // Đơn không có drone nào trong bán kính: giữ cách xử lý của gán từng đơn (round-robin trên drone rảnh còn lại
+        // đủ tầm/tải)
+        if (!stranded.isEmpty()) {
+            List<Drone> rest = new ArrayList<>(getAvailableDrones());
+            for (Order order : stranded) {
+                double payload = etaEngine.payloadKg(order);
+                Optional<Drone> drone = selectDroneRoundRobin(rest.stream()
+                        .filter(d -> feasible(d, order, payload))
+                        .toList());
+                if (drone.isEmpty()) {
+                    continue;
+                }
+                rest.remove(drone.get());
+                DroneAssignment assignment = createAssignment(order, drone.get(), "SYSTEM",
+                        DroneAssignment.AssignmentMode.AUTO);
+                startDelivery(order, assignment);
+                assigned.add(assignment);
+            }
+        }
+
+        if (assigned.isEmpty()) {
+            log.debug("Batch dispatch: no feasible drone for {} orders", orders.size());
+        } else {
+            log.info("Batch dispatch: {} orders, {} candidate drones, {} assigned", orders.size(), drones.size(), assigned.size());
+        }
+        return assigned;
+    }
+
+    // Chuyển đơn vừa gán sang giao hàng: order OUT_FOR_DELIVERY, delivery IN_PROGRESS (W0_W1), drone EN_ROUTE_TO_STORE
+    private void startDelivery(Order order, DroneAssignment assignment) {
+        LocalDateTime now = LocalDateTime.now();
+        order.setStatus(Order.OrderStatus.OUT_FOR_DELIVERY);
+        order.setUpdatedAt(now);
+
+        Delivery delivery = assignment.getDelivery();
+        delivery.setStatus(Delivery.DeliveryStatus.IN_PROGRESS);
+        delivery.setCurrentSegment("W0_W1");
+        delivery.setSegmentStartTime(now);
+
+        assignment.getDrone().setStatus(Drone.DroneStatus.EN_ROUTE_TO_STORE);
+    }
+
+    // Drone IDLE đủ tải và đủ tầm cho đơn, cho nhánh round-robin dự phòng
+    private List<Drone> feasibleAvailableDrones(Order order) {
+        double payloadKg = etaEngine.payloadKg(order);
+        return getAvailableDrones().stream()
+                .filter(drone -> feasible(drone, order, payloadKg))
+                .toList();
+    }
+
+    // Đơn thiếu toạ độ thì chỉ xét được tải
+    private boolean feasible(Drone drone, Order order, double payloadKg) {
+        if (!hasCoordinates(order)) {
+            return DroneEtaEngine.maxPayloadKg(drone.getMaxPayloadKg()) >= payloadKg;
+        }
+        return etaEngine.feasible(drone, payloadKg, order.getStore().getLatitude(), order.getStore().getLongitude(),
+                order.getAddress().getLatitude(), order.getAddress().getLongitude());
+    }
+
+    private static boolean hasCoordinates(Order order) {
+        Store store = order.getStore();
+        Address dest = order.getAddress();
+        return store != null && dest != null
+                && store.getLatitude() != null && store.getLongitude() != null
+                && dest.getLatitude() != null && dest.getLongitude() != null;
+    }
+
+    // ETA tới tay khách nếu giao order bằng drone (đơn đã có toạ độ; drone lấy từ lưới IDLE nên có vị trí)
+    private int etaSec(Drone drone, Order order) {
+        Store store = order.getStore();
+        Address dest = order.getAddress();
+        return etaEngine.deliverySec(drone.getModel(), drone.getCurrentLat(), drone.getCurrentLng(),
+                store.getLatitude(), store.getLongitude(), dest.getLatitude(), dest.getLongitude());
+    }
+
     @Override
     @Transactional
     public DroneAssignment manualAssignDrone(Order order, Drone drone, String assignedBy) {
@@ -117,7 +294,7 @@ public class FleetServiceImpl implements FleetService {
         delivery.setW3Lng(drone.getHomeLng());
         delivery.setCurrentSegment("W0_W1");
         delivery.setSegmentStartTime(LocalDateTime.now());
-        delivery.setEtaSeconds(calculateInitialETA());
+        delivery.setEtaSeconds(etaEngine.deliverySec(delivery));
 
         delivery = deliveryRepository.save(delivery);
         order.setDelivery(delivery);
@@ -152,65 +329,55 @@ public class FleetServiceImpl implements FleetService {
                     drone.getLastAssignedAt() != null ? drone.getLastAssignedAt() : LocalDateTime.MIN));
     }
 
-    private Optional<Drone> selectDroneByEta(Order order, List<Drone> availableDrones) {
+    private Optional<Drone> selectDroneByEta(Order order) {
         Store store = order.getStore();
         Address dest = order.getAddress();
         if (store == null || dest == null ||
                 store.getLatitude() == null || store.getLongitude() == null ||
                 dest.getLatitude() == null || dest.getLongitude() == null) {
             log.warn("Missing coordinates for store or destination; fallback to round-robin");
-            return selectDroneRoundRobin(availableDrones);
+            return selectDroneRoundRobin(feasibleAvailableDrones(order));
         }
 
         double storeLat = store.getLatitude();
         double storeLng = store.getLongitude();
+        double payloadKg = etaEngine.payloadKg(order);
+        double storeToDestKm = DroneSpatialIndex.haversineKm(storeLat, storeLng, dest.getLatitude(), dest.getLongitude());
 
-        // Khoảng cách cửa hàng -> khách hàng (đã nhân path factor)
-        double dStoreToDestKm = haversineKm(storeLat, storeLng, dest.getLatitude(), dest.getLongitude()) * PATH_FACTOR;
-
-        // Chỉ chọn drone trong bán kính dispatch quanh cửa hàng
-        List<DroneCandidate> candidates = availableDrones.stream()
-                .filter(d -> d.getCurrentLat() != null && d.getCurrentLng() != null)
-                .map(d -> new DroneCandidate(d,
-                        haversineKm(d.getCurrentLat(), d.getCurrentLng(), storeLat, storeLng)))
-                .filter(dc -> dc.distanceToStoreKm() <= DISPATCH_RADIUS_KM)
+        // Chỉ chọn drone trong bán kính dispatch quanh cửa hàng: tra lưới IDLE của FleetRegistry (đã loại drone không đủ
+        // tầm tới khách hoặc không đủ tải) rồi nạp đúng các drone đó, kiểm tra lại trạng thái và tầm cả chuyến (gồm
+        // đường về trạm) trên entity vì registry có thể trễ một nhịp commit
+        List<FleetRegistry.Nearby> nearby = fleetRegistry.nearestIdle(storeLat, storeLng, DISPATCH_RADIUS_KM,
+                DISPATCH_CANDIDATES, storeToDestKm, payloadKg);
+        Map<Long, Drone> loaded = droneRepository.findAllById(
+                        nearby.stream().map(n -> n.drone().id()).toList()).stream()
+                .collect(Collectors.toMap(Drone::getId, d -> d));
+        List<DroneCandidate> candidates = nearby.stream()
+                .map(n -> {
+                    Drone drone = loaded.get(n.drone().id());
+                    return drone != null && drone.getStatus() == Drone.DroneStatus.IDLE
+                            && drone.getCurrentLat() != null && drone.getCurrentLng() != null
+                            && feasible(drone, order, payloadKg)
+                            ? new DroneCandidate(drone, etaSec(drone, order), n.distanceKm()) : null;
+                })
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
         if (candidates.isEmpty()) {
-            log.warn("No candidates within dispatch radius; fallback to round-robin");
-            return selectDroneRoundRobin(availableDrones);
+            log.warn("No feasible candidates within dispatch radius; fallback to round-robin");
+            return selectDroneRoundRobin(feasibleAvailableDrones(order));
         }
 
-        // wind_along = wind_speed * cos(phi) -> demo: wind_speed=0 => v_eff = clamp(V_AIR_KMH)
-        double vEffKmh = clamp(V_AIR_KMH, V_MIN_KMH, V_MAX_KMH);
-        double tFlightSec = (dStoreToDestKm / vEffKmh) * 3600.0; // đổi giờ -> giây
-        double etaSecBase = T_QUEUE_SEC + T_OVERHEAD_SEC + tFlightSec;
-
-        // Rank theo ETA (như nhau cho demo) và sau đó theo khoảng cách đến cửa hàng
+        // Rank theo ETA riêng của từng drone (model, gió theo hướng bay) rồi theo khoảng cách đến cửa hàng
         return candidates.stream()
                 .sorted(Comparator
-                        .comparingDouble((DroneCandidate dc) -> etaSecBase)
+                        .comparingInt(DroneCandidate::etaSec)
                         .thenComparingDouble(DroneCandidate::distanceToStoreKm))
                 .map(DroneCandidate::drone)
                 .findFirst();
     }
 
-    private double haversineKm(double lat1, double lon1, double lat2, double lon2) {
-        double R = 6371.0; // bán kính Trái Đất (km)
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
-
-    private double clamp(double v, double min, double max) {
-        return Math.max(min, Math.min(max, v));
-    }
-
-    private record DroneCandidate(Drone drone, double distanceToStoreKm) {}
+    private record DroneCandidate(Drone drone, int etaSec, double distanceToStoreKm) {}
     
     @Override
     @Transactional
@@ -227,6 +394,8 @@ public class FleetServiceImpl implements FleetService {
         String oldStatus = drone.getStatus() != null ? drone.getStatus().name() : "UNKNOWN";
         drone.setStatus(Drone.DroneStatus.IDLE);
         droneRepository.save(drone);
+        // Dispatcher gán đơn đang chờ ngay sau khi commit
+        eventPublisher.publishEvent(new DroneIdleEvent(drone.getId()));
         
         // Broadcast trạng thái qua tracking service để tránh phụ thuộc Controller
         try {
@@ -247,10 +416,4 @@ public class FleetServiceImpl implements FleetService {
         // Use the newest active assignment to avoid NonUniqueResultException when duplicates exist
         return assignmentRepository.findTopByDroneIdAndCompletedAtIsNullOrderByAssignedAtDesc(droneId);
     }
-    
-    private Integer calculateInitialETA() {
-        // POC: Tổng thời gian các leg theo config
-        // W0→W1: 90s, W1→W2: 240s, W2→W3: 120s + dwell: 10s
-        return 90 + 240 + 10; // Không tính W2→W3 trong ETA giao hàng
-    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.fastfood.management.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Đưa các bộ cấp id dạng bảng (id_generators, allocationSize 50) lên trên MAX(id) hiện có của từng bảng.
+ * V4__Pooled_id_generators.sql làm việc này khi chạy Flyway; môi trường ddl-auto=update thì Hibernate tạo
+ * id_generators rỗng và id mới sẽ bắt đầu lại từ 1, đụng các dòng AUTO_INCREMENT đã có.
+ * Chạy sau khi dựng xong EntityManagerFactory (schema đã cập nhật) và trước scheduler/web server, nên chưa có
+ * insert nào lấy id. Chỉ nâng giá trị lên, không bao giờ hạ (an toàn khi nhiều instance cùng khởi động).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdGeneratorSeeder implements SmartInitializingSingleton {
+
+    // gen_name trùng tên bảng (pkColumnValue của @TableGenerator)
+    private static final List<String> TABLES = List.of(
+            "orders", "order_items", "order_activity", "payments", "delivery_events", "stock_reservations");
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String table : TABLES) {
+            try {
+                seed(table);
+            } catch (DataAccessException ex) {
+                log.warn("Could not seed id generator for {}: {}", table, ex.getMessage());
+            }
+        }
+    }
+
+    private void seed(String table) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        long floor = (maxId != null ? maxId : 0) + ALLOCATION_SIZE;
+        int updated = jdbcTemplate.update(
+                "UPDATE id_generators SET gen_value = ? WHERE gen_name = ? AND gen_value < ?", floor, table, floor);
+        if (updated > 0) {
+            log.info("Raised id generator {} to {}", table, floor);
+            return;
+        }
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM id_generators WHERE gen_name = ?", Integer.class, table);
+        if (rows == null || rows == 0) {
+            jdbcTemplate.update("INSERT INTO id_generators (gen_name, gen_value) VALUES (?, ?)", table, floor);
+            log.info("Seeded id generator {} at {}", table, floor);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.fastfood.management.entity.Inventory;
 import com.fastfood.management.model.InventoryDTO;
 import com.fastfood.management.repository.InventoryRepository;
 import com.fastfood.management.service.api.InventoryService;
+import com.fastfood.management.service.api.StockReservationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +18,7 @@ import java.util.stream.Collectors;
 public class InventoryServiceImpl implements InventoryService {
 
     private final InventoryRepository inventoryRepository;
+    private final StockReservationService stockReservationService;
 
     @Override
     @Transactional(readOnly = true)
@@ -29,8 +31,13 @@ public class InventoryServiceImpl implements InventoryService {
     public InventoryDTO updateInventory(Long inventoryId, int quantity) {
         Inventory inv = inventoryRepository.findById(inventoryId)
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy inventory với id: " + inventoryId));
+        int oldQuantity = inv.getQuantity() != null ? inv.getQuantity() : 0;
         inv.setQuantity(quantity);
         Inventory saved = inventoryRepository.save(inv);
+        if (inv.getMenuItem() != null) {
+            // Đồng bộ bộ đếm giữ hàng trong bộ nhớ với số tồn mới
+            stockReservationService.adjustAvailable(inv.getMenuItem().getId(), quantity - oldQuantity);
+        }
         return InventoryDTO.fromEntity(saved);
     }
 }
\ No newline at end of file
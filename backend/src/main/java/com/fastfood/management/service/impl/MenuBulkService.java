@@ -0,0 +1,712 @@
+package com.fastfood.management.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fastfood.management.dto.response.MenuItemResponse;
+import com.fastfood.management.entity.Category;
+import com.fastfood.management.entity.Store;
+import com.fastfood.management.repository.CategoryRepository;
+import com.fastfood.management.repository.MenuItemRepository;
+import com.fastfood.management.repository.StoreRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Nhập/xuất menu hàng loạt dạng CSV hoặc JSON lines, cùng một bộ cột cho cả hai chiều (file xuất ra nhập lại được).
+ * - Import đọc dần từng dòng, cửa hàng/danh mục/món đã có được tra trong bộ nhớ (nạp một lần đầu mỗi lượt import),
+ *   dòng hợp lệ được gom thành lô menu.import.chunkSize và ghi bằng JDBC batch, mỗi lô một transaction.
+ *   Lô lỗi ở DB thì ghi lại từng dòng để chỉ ra đúng dòng hỏng.
+ * - Có id hoặc trùng (cửa hàng, tên) với món đã có thì cập nhật, ngược lại thêm mới; ô trống khi cập nhật giữ giá trị cũ.
+ * - Ghi bằng JDBC nên không qua entity listener: cuối mỗi lô báo CatalogCache, cuối lượt nạp lại MenuSearchIndex.
+ */
+@Component
+@Slf4j
+public class MenuBulkService {
+
+    public static final List<String> COLUMNS = List.of(
+            "id", "storeId", "store", "categoryId", "category", "name", "description", "price", "imageUrl", "available");
+
+    private static final String INSERT_SQL = "INSERT INTO menu_items " +
+            "(name, description, price, image_url, available, category_id, store_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE menu_items SET name = COALESCE(?, name), " +
+            "description = COALESCE(?, description), price = COALESCE(?, price), image_url = COALESCE(?, image_url), " +
+            "available = COALESCE(?, available), category_id = COALESCE(?, category_id), " +
+            "store_id = COALESCE(?, store_id) WHERE id = ?";
+
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private final MenuItemRepository menuItemRepository;
+    private final StoreRepository storeRepository;
+    private final CategoryRepository categoryRepository;
+    private final CatalogCache catalogCache;
+    private final MenuSearchIndex menuSearchIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public enum Format {
+        CSV, JSONL;
+
+        /**
+         * Tham số format (csv, jsonl/ndjson) ưu tiên hơn Content-Type; không có cả hai thì là CSV
+         */
+        public static Format resolve(String format, String contentType) {
+            if (format != null && !format.isBlank()) {
+                return switch (format.trim().toLowerCase(Locale.ROOT)) {
+                    case "csv" -> CSV;
+                    case "jsonl", "ndjson" -> JSONL;
+                    default -> throw new IllegalArgumentException("Định dạng không hỗ trợ: " + format);
+                };
+            }
+            return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json") ? JSONL : CSV;
+        }
+    }
+
+    public record RowError(long line, String message) {
+    }
+
+    public record ImportResult(long rows, long inserted, long updated, long failed,
+                               List<RowError> errors, boolean errorsTruncated) {
+    }
+
+    public MenuBulkService(MenuItemRepository menuItemRepository,
+                           StoreRepository storeRepository,
+                           CategoryRepository categoryRepository,
+                           CatalogCache catalogCache,
+                           MenuSearchIndex menuSearchIndex,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           ObjectMapper objectMapper,
+                           @Value("${menu.import.chunkSize:500}") int chunkSize,
+                           @Value("${menu.import.maxErrors:1000}") int maxErrors) {
+        this.menuItemRepository = menuItemRepository;
+        this.storeRepository = storeRepository;
+        this.categoryRepository = categoryRepository;
+        this.catalogCache = catalogCache;
+        this.menuSearchIndex = menuSearchIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxErrors = Math.max(0, maxErrors);
+    }
+
+    // ---- import ----
+
+    public ImportResult importItems(InputStream in, Format format) throws IOException {
+        long started = System.currentTimeMillis();
+        Lookup lookup = loadLookup();
+        Tally tally = new Tally();
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Iterator<RawRow> rows = format == Format.CSV ? new CsvRows(reader) : new JsonRows(reader);
+        List<ItemRow> chunk = new ArrayList<>(chunkSize);
+        try {
+            while (rows.hasNext()) {
+                RawRow raw = rows.next();
+                tally.rows++;
+                try {
+                    chunk.add(lookup.resolve(raw));
+                } catch (IllegalArgumentException e) {
+                    tally.error(raw.line(), e.getMessage());
+                }
+                if (chunk.size() >= chunkSize) {
+                    write(chunk, tally);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                write(chunk, tally);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // Các lô đã ghi vẫn được commit dù file đọc dở
+            if (tally.inserted + tally.updated > 0) {
+                menuSearchIndex.load();
+            }
+        }
+        log.info("Imported menu {}: {} rows, {} inserted, {} updated, {} failed in {} ms", format, tally.rows,
+                tally.inserted, tally.updated, tally.failed, System.currentTimeMillis() - started);
+        return new ImportResult(tally.rows, tally.inserted, tally.updated, tally.failed,
+                tally.errors, tally.failed > tally.errors.size());
+    }
+
+    private void write(List<ItemRow> chunk, Tally tally) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch(chunk));
+            chunk.forEach(tally::written);
+        } catch (DataAccessException e) {
+            // Một dòng hỏng làm cả lô rollback: ghi lại từng dòng để biết dòng nào lỗi
+            for (ItemRow row : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> batch(List.of(row)));
+                    tally.written(row);
+                } catch (DataAccessException ex) {
+                    tally.error(row.line(), "Lỗi ghi DB: " + ex.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void batch(List<ItemRow> rows) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        Set<Long> stores = new HashSet<>();
+        for (ItemRow row : rows) {
+            if (row.id() == null) {
+                inserts.add(new Object[]{row.name(), row.description(), row.price(), row.imageUrl(),
+                        row.available() != null ? row.available() : Boolean.TRUE, row.categoryId(), row.storeId()});
+            } else {
+                updates.add(new Object[]{row.name(), row.description(), row.price(), row.imageUrl(),
+                        row.available(), row.categoryId(), row.storeId(), row.id()});
+                stores.add(row.previousStoreId());
+            }
+            stores.add(row.storeId());
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        stores.forEach(catalogCache::invalidateStore);
+    }
+
+    private Lookup loadLookup() {
+        Lookup lookup = new Lookup();
+        for (Store store : storeRepository.findAll()) {
+            lookup.storeIds.add(store.getId());
+            lookup.storesByName.merge(key(store.getName()), store.getId(), (a, b) -> Lookup.AMBIGUOUS);
+        }
+        for (Category category : categoryRepository.findAll()) {
+            Long storeId = category.getStore() != null ? category.getStore().getId() : null;
+            lookup.categoryStores.put(category.getId(), storeId);
+            lookup.categoriesByName.merge(storeId + "|" + key(category.getName()), category.getId(),
+                    (a, b) -> Lookup.AMBIGUOUS);
+        }
+        for (Object[] row : menuItemRepository.findImportKeys()) {
+            Long id = (Long) row[0];
+            Long storeId = (Long) row[1];
+            lookup.itemStores.put(id, storeId);
+            lookup.itemCategories.put(id, (Long) row[3]);
+            lookup.itemsByName.merge(storeId + "|" + key((String) row[2]), id, (a, b) -> Lookup.AMBIGUOUS);
+        }
+        return lookup;
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Dòng đã kiểm tra; id null = thêm mới. Các trường null khi cập nhật nghĩa là giữ nguyên
+    private record ItemRow(long line, Long id, Long previousStoreId, Long storeId, Long categoryId, String name,
+                           String description, BigDecimal price, String imageUrl, Boolean available) {
+    }
+
+    // Một dòng đọc từ file, khoá cột đã chuẩn hoá (xem normalize); error khác null khi dòng không đọc được
+    private record RawRow(long line, Map<String, String> values, String error) {
+
+        String get(String column) {
+            String value = values.get(normalize(column));
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+    }
+
+    private final class Tally {
+        long rows;
+        long inserted;
+        long updated;
+        long failed;
+        final List<RowError> errors = new ArrayList<>();
+
+        void written(ItemRow row) {
+            if (row.id() == null) {
+                inserted++;
+            } else {
+                updated++;
+            }
+        }
+
+        void error(long line, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    private static final class Lookup {
+        static final Long AMBIGUOUS = -1L;
+
+        final Set<Long> storeIds = new HashSet<>();
+        final Map<String, Long> storesByName = new HashMap<>();
+        final Map<Long, Long> categoryStores = new HashMap<>();
+        final Map<String, Long> categoriesByName = new HashMap<>();
+        final Map<Long, Long> itemStores = new HashMap<>();
+        final Map<Long, Long> itemCategories = new HashMap<>();
+        final Map<String, Long> itemsByName = new HashMap<>();
+        // Món mới đã nhận trong lượt này, để bắt dòng trùng (chưa có id nên không vào itemsByName)
+        final Set<String> newItems = new HashSet<>();
+
+        ItemRow resolve(RawRow raw) {
+            if (raw.error() != null) {
+                throw new IllegalArgumentException(raw.error());
+            }
+            Long id = parseLong(raw.get("id"), "id");
+            Long storeId = resolveStore(raw);
+            String name = raw.get("name");
+            if (name != null && name.length() > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Tên món dài quá " + MAX_NAME_LENGTH + " ký tự");
+            }
+            BigDecimal price = parsePrice(raw.get("price"));
+            Boolean available = parseBoolean(raw.get("available"));
+
+            Long previousStoreId = null;
+            if (id != null) {
+                if (!itemStores.containsKey(id)) {
+                    throw new IllegalArgumentException("Không tìm thấy món id=" + id);
+                }
+                previousStoreId = itemStores.get(id);
+            } else {
+                if (storeId == null) {
+                    throw new IllegalArgumentException("Thiếu storeId/store");
+                }
+                if (name == null) {
+                    throw new IllegalArgumentException("Thiếu tên món");
+                }
+                String itemKey = storeId + "|" + key(name);
+                Long existing = itemsByName.get(itemKey);
+                if (AMBIGUOUS.equals(existing)) {
+                    throw new IllegalArgumentException("Cửa hàng có nhiều món tên '" + name + "', cần ghi id");
+                }
+                if (existing != null) {
+                    id = existing;
+                    previousStoreId = storeId;
+                } else {
+                    if (price == null) {
+                        throw new IllegalArgumentException("Thiếu giá");
+                    }
+                    if (!newItems.add(itemKey)) {
+                        throw new IllegalArgumentException("Món '" + name + "' bị lặp trong file");
+                    }
+                }
+            }
+            Long effectiveStoreId = storeId != null ? storeId : previousStoreId;
+            Long categoryId = resolveCategory(raw, effectiveStoreId);
+            if (id != null && categoryId == null && !Objects.equals(effectiveStoreId, previousStoreId)) {
+                // Chuyển món sang cửa hàng khác mà không ghi danh mục: UPDATE giữ category_id cũ (COALESCE),
+                // nên danh mục hiện tại cũng phải hợp lệ với cửa hàng mới
+                Long currentCategory = itemCategories.get(id);
+                Long currentCategoryStore = currentCategory != null ? categoryStores.get(currentCategory) : null;
+                if (currentCategoryStore != null && !currentCategoryStore.equals(effectiveStoreId)) {
+                    throw new IllegalArgumentException("Danh mục hiện tại id=" + currentCategory
+                            + " thuộc cửa hàng cũ, cần ghi categoryId/category khi đổi cửa hàng");
+                }
+            }
+            return new ItemRow(raw.line(), id, previousStoreId, storeId, categoryId, name,
+                    raw.get("description"), price, raw.get("imageUrl"), available);
+        }
+
+        private Long resolveStore(RawRow raw) {
+            Long storeId = parseLong(raw.get("storeId"), "storeId");
+            if (storeId != null) {
+                if (!storeIds.contains(storeId)) {
+                    throw new IllegalArgumentException("Không tìm thấy cửa hàng id=" + storeId);
+                }
+                return storeId;
+            }
+            String name = raw.get("store");
+            if (name == null) {
+                return null;
+            }
+            Long byName = storesByName.get(key(name));
+            if (byName == null) {
+                throw new IllegalArgumentException("Không tìm thấy cửa hàng '" + name + "'");
+            }
+            if (AMBIGUOUS.equals(byName)) {
+                throw new IllegalArgumentException("Có nhiều cửa hàng tên '" + name + "', cần ghi storeId");
+            }
+            return byName;
+        }
+
+        // Danh mục phải thuộc cùng cửa hàng với món, hoặc là danh mục dùng chung (không gắn cửa hàng)
+        private Long resolveCategory(RawRow raw, Long storeId) {
+            Long categoryId = parseLong(raw.get("categoryId"), "categoryId");
+            if (categoryId != null) {
+                if (!categoryStores.containsKey(categoryId)) {
+                    throw new IllegalArgumentException("Không tìm thấy danh mục id=" + categoryId);
+                }
+                Long categoryStore = categoryStores.get(categoryId);
+                if (categoryStore != null && !categoryStore.equals(storeId)) {
+                    throw new IllegalArgumentException("Danh mục id=" + categoryId + " thuộc cửa hàng khác");
+                }
+                return categoryId;
+            }
+            String name = raw.get("category");
+            if (name == null) {
+                return null;
+            }
+            Long byName = categoriesByName.get(storeId + "|" + key(name));
+            if (byName == null) {
+                byName = categoriesByName.get("null|" + key(name));
+            }
+            if (byName == null) {
+                throw new IllegalArgumentException("Không tìm thấy danh mục '" + name + "'");
+            }
+            if (AMBIGUOUS.equals(byName)) {
+                throw new IllegalArgumentException("Có nhiều danh mục tên '" + name + "', cần ghi categoryId");
+            }
+            return byName;
+        }
+
+        private static Long parseLong(String value, String column) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " không hợp lệ: " + value);
+            }
+        }
+
+        private static BigDecimal parsePrice(String value) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                BigDecimal price = new BigDecimal(value);
+                if (price.signum() < 0) {
+                    throw new IllegalArgumentException("Giá không được âm: " + value);
+                }
+                return price;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Giá không hợp lệ: " + value);
+            }
+        }
+
+        private static Boolean parseBoolean(String value) {
+            if (value == null) {
+                return null;
+            }
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "true", "1", "yes", "y" -> Boolean.TRUE;
+                case "false", "0", "no", "n" -> Boolean.FALSE;
+                default -> throw new IllegalArgumentException("available không hợp lệ: " + value);
+            };
+        }
+    }
+
+    // ---- export ----
+
+    /**
+     * Ghi menu (cả món ngừng bán) ra out theo kiểu stream, cùng bộ cột với import; storeId null = mọi cửa hàng
+     */
+    @Transactional(readOnly = true)
+    public void exportItems(Long storeId, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+        long written = 0;
+        try (Stream<MenuItemResponse> items = menuItemRepository.streamResponsesForExport(storeId)) {
+            Iterator<MenuItemResponse> it = items.iterator();
+            while (it.hasNext()) {
+                List<Object> values = exportValues(it.next());
+                if (format == Format.CSV) {
+                    for (int i = 0; i < values.size(); i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(csv(values.get(i)));
+                    }
+                } else {
+                    Map<String, Object> record = new LinkedHashMap<>();
+                    for (int i = 0; i < COLUMNS.size(); i++) {
+                        record.put(COLUMNS.get(i), values.get(i));
+                    }
+                    writer.write(objectMapper.writeValueAsString(record));
+                }
+                writer.write('\n');
+                written++;
+            }
+        }
+        writer.flush();
+        log.debug("Exported {} menu items as {} (store={})", written, format, storeId);
+    }
+
+    // Theo thứ tự COLUMNS
+    private static List<Object> exportValues(MenuItemResponse item) {
+        List<Object> values = new ArrayList<>(COLUMNS.size());
+        values.add(item.getId());
+        values.add(item.getStore() != null ? item.getStore().id() : null);
+        values.add(item.getStore() != null ? item.getStore().name() : null);
+        values.add(item.getCategory() != null ? item.getCategory().id() : null);
+        values.add(item.getCategory() != null ? item.getCategory().name() : null);
+        values.add(item.getName());
+        values.add(item.getDescription());
+        values.add(item.getPrice());
+        values.add(item.getImageUrl());
+        values.add(item.isAvailable());
+        return values;
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : String.valueOf(value);
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    // ---- đọc file ----
+
+    // "store_id", "Store Id", "storeId" đều thành "storeid"
+    private static String normalize(String column) {
+        StringBuilder sb = new StringBuilder(column.length());
+        for (int i = 0; i < column.length(); i++) {
+            char c = column.charAt(i);
+            if (c != '_' && c != ' ' && c != '-' && c != '\uFEFF') {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * CSV theo RFC 4180: dòng đầu là header, ô có thể bọc trong dấu nháy kép (chứa dấu phẩy, xuống dòng, "" là một dấu nháy).
+     * line của mỗi bản ghi là dòng bắt đầu bản ghi trong file.
+     */
+    private static final class CsvRows implements Iterator<RawRow> {
+        // readRecord trả về khi file hết giữa một ô đang mở nháy
+        private static final List<String> UNTERMINATED = new ArrayList<>();
+
+        private final Reader reader;
+        private List<String> header;
+        private long line = 1;
+        private int pushedBack = -2;
+        private RawRow next;
+
+        CsvRows(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public RawRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RawRow row = next;
+            next = null;
+            return row;
+        }
+
+        private RawRow advance() {
+            try {
+                if (header == null) {
+                    List<String> first = readRecord();
+                    if (first == null) {
+                        return null;
+                    }
+                    header = first.stream().map(MenuBulkService::normalize).toList();
+                }
+                while (true) {
+                    long start = line;
+                    List<String> fields = readRecord();
+                    if (fields == null) {
+                        return null;
+                    }
+                    if (fields == UNTERMINATED) {
+                        return new RawRow(start, Map.of(), "Thiếu dấu nháy đóng");
+                    }
+                    if (fields.size() == 1 && fields.get(0).isBlank()) {
+                        continue;
+                    }
+                    Map<String, String> values = new HashMap<>();
+                    for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                        values.put(header.get(i), fields.get(i));
+                    }
+                    return new RawRow(start, values, null);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // null khi hết file
+        private List<String> readRecord() throws IOException {
+            int c = read();
+            if (c < 0) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        return UNTERMINATED;
+                    }
+                    if (c == '"') {
+                        int n = read();
+                        if (n == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = n;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c < 0 || c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        int n = read();
+                        if (n != '\n') {
+                            pushedBack = n;
+                        }
+                    }
+                    if (c >= 0) {
+                        line++;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -2) {
+                int c = pushedBack;
+                pushedBack = -2;
+                return c;
+            }
+            return reader.read();
+        }
+    }
+
+    /**
+     * Mỗi dòng một object JSON; dòng trống bỏ qua, giá trị không phải kiểu đơn (object/array) là lỗi của dòng đó
+     */
+    private final class JsonRows implements Iterator<RawRow> {
+        private final BufferedReader reader;
+        private long line;
+        private RawRow next;
+
+        JsonRows(Reader reader) {
+            this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public RawRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RawRow row = next;
+            next = null;
+            return row;
+        }
+
+        private RawRow advance() {
+            try {
+                String text;
+                while ((text = reader.readLine()) != null) {
+                    line++;
+                    if (!text.isBlank()) {
+                        return parse(line, text);
+                    }
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private RawRow parse(long lineNo, String text) {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (IOException e) {
+                return new RawRow(lineNo, Map.of(), "JSON không hợp lệ");
+            }
+            if (node == null || !node.isObject()) {
+                return new RawRow(lineNo, Map.of(), "Mỗi dòng phải là một object JSON");
+            }
+            Map<String, String> values = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = field.getValue();
+                if (value.isContainerNode()) {
+                    return new RawRow(lineNo, Map.of(), "Trường " + field.getKey() + " phải là giá trị đơn");
+                }
+                values.put(normalize(field.getKey()), value.isNull() ? null : value.asText());
+            }
+            return new RawRow(lineNo, values, null);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.fastfood.management.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fastfood.management.dto.response.MenuItemResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * JSON đã serialize của từng MenuItemResponse, theo id món. Khi ghép một danh sách, món nào có DTO giống hệt
+ * lần trước thì dùng lại nguyên byte, chỉ món đã đổi mới phải serialize lại. Bổ sung cho CatalogCache:
+ * khi một cửa hàng đổi version, các trang của nó được dựng lại mà phần lớn món không phải serialize.
+ */
+@Component
+public class MenuItemJsonCache {
+
+    public static final String CACHE_NAME = "menu-item-json";
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Long, Entry> cache;
+
+    private record Entry(MenuItemResponse item, byte[] json) {
+    }
+
+    public MenuItemJsonCache(ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${menu.itemJsonCache.maxEntries:20000}") long maxEntries) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Mảng JSON của danh sách món, giữ nguyên thứ tự
+     */
+    public byte[] toJsonArray(List<MenuItemResponse> items) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(items.size() * 256 + 2);
+        out.write('[');
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(toJson(items.get(i)));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    public byte[] toJson(MenuItemResponse item) {
+        if (item.getId() == null) {
+            return serialize(item);
+        }
+        Entry cached = cache.getIfPresent(item.getId());
+        if (cached != null && cached.item().equals(item)) {
+            return cached.json();
+        }
+        byte[] json = serialize(item);
+        cache.put(item.getId(), new Entry(item, json));
+        return json;
+    }
+
+    private byte[] serialize(MenuItemResponse item) {
+        try {
+            return objectMapper.writeValueAsBytes(item);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize menu item " + item.getId(), e);
+        }
+    }
+}
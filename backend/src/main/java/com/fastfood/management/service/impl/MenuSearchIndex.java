@@ -0,0 +1,417 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.entity.MenuItem;
+import com.fastfood.management.repository.MenuItemRepository;
+import com.fastfood.management.event.MenuItemRemovedEvent;
+import com.fastfood.management.event.MenuItemSavedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Chỉ mục tìm kiếm món trong bộ nhớ (inverted index trên tên + mô tả), thay cho LIKE '%x%' quét cả menu_items.
+ * - Từ được bỏ dấu tiếng Việt và viết thường ("Gà Rán" -> "ga", "ran"), nên "ga ran" khớp "gà rán".
+ * - Mỗi từ trong truy vấn phải khớp (AND): khớp đúng > khớp tiền tố (từ cuối, gõ dở) > sai một ký tự (từ dài >= 4);
+ *   khớp ở tên được tính điểm gấp đôi khớp ở mô tả.
+ * - Sai một ký tự tra bằng bảng "xoá một ký tự" (deletion neighborhood) rồi kiểm lại khoảng cách edit,
+ *   không phải duyệt toàn bộ từ điển.
+ * - MenuSearchIndexListener cập nhật sau mỗi lần commit thêm/sửa/xoá món; khởi động thì nạp một lượt từ DB.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MenuSearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z0-9]+");
+
+    private static final int EXACT = 4;
+    private static final int PREFIX = 2;
+    private static final int FUZZY = 1;
+    private static final int NAME_WEIGHT = 2;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    // Tiền tố quá ngắn ("g") có thể nở ra rất nhiều từ; chỉ giữ chừng này từ gần tiền tố nhất (xem prefixTerms)
+    private static final int MAX_PREFIX_EXPANSION = 256;
+
+    private final MenuItemRepository menuItemRepository;
+
+    private final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+    // Biến thể xoá một ký tự -> các từ sinh ra nó
+    private final Map<String, Set<String>> deletions = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    private record Doc(Long id, Long storeId, Long categoryId, boolean available,
+                       Set<String> nameTerms, Set<String> allTerms, int nameLength) {
+    }
+
+    public record Hit(Long menuItemId, int score) {
+    }
+
+    public record Result(List<Hit> hits, long total) {
+    }
+
+    // ---- cập nhật ----
+
+    @EventListener
+    public void onMenuItemSaved(MenuItemSavedEvent event) {
+        onSaved(event.item());
+    }
+
+    @EventListener
+    public void onMenuItemRemoved(MenuItemRemovedEvent event) {
+        onRemoved(event.menuItemId());
+    }
+
+    public void onSaved(MenuItem item) {
+        if (item.getId() == null) {
+            return;
+        }
+        Doc doc = toDoc(item.getId(), item.getStore() != null ? item.getStore().getId() : null,
+                item.getCategory() != null ? item.getCategory().getId() : null,
+                item.isAvailable(), item.getName(), item.getDescription());
+        afterCommit(() -> put(doc));
+    }
+
+    public void onRemoved(Long menuItemId) {
+        afterCommit(() -> remove(menuItemId));
+    }
+
+    // ---- truy vấn ----
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Tìm món còn bán theo truy vấn (đã bỏ dấu), lọc theo cửa hàng/danh mục nếu có; kết quả xếp theo điểm,
+     * cùng điểm thì tên ngắn hơn (khớp sát hơn) đứng trước.
+     */
+    public Result search(String query, Long storeId, Long categoryId, int page, int size) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return new Result(List.of(), 0);
+        }
+        // Từ hiếm (ít món) xử lý trước để các từ sau chỉ chấm điểm trong tập đã thu hẹp
+        List<Map<String, Integer>> matches = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Map<String, Integer> terms = matchTerms(tokens.get(i), i == tokens.size() - 1);
+            if (terms.isEmpty()) {
+                return new Result(List.of(), 0);
+            }
+            matches.add(terms);
+        }
+        matches.sort(Comparator.comparingLong(this::postingCount));
+
+        Map<Long, Integer> scores = null;
+        for (Map<String, Integer> terms : matches) {
+            Map<Long, Integer> tokenScores = scoreTerms(terms, scores, storeId, categoryId);
+            if (tokenScores.isEmpty()) {
+                return new Result(List.of(), 0);
+            }
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                Map<Long, Integer> merged = new HashMap<>();
+                for (Map.Entry<Long, Integer> e : tokenScores.entrySet()) {
+                    Integer previous = scores.get(e.getKey());
+                    if (previous != null) {
+                        merged.put(e.getKey(), previous + e.getValue());
+                    }
+                }
+                scores = merged;
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(scores.size());
+        Map<Long, Integer> nameLengths = new HashMap<>();
+        for (Map.Entry<Long, Integer> e : scores.entrySet()) {
+            Doc doc = docs.get(e.getKey());
+            if (doc == null) {
+                continue;
+            }
+            hits.add(new Hit(doc.id(), e.getValue()));
+            nameLengths.put(doc.id(), doc.nameLength());
+        }
+        hits.sort(Comparator.comparingInt(Hit::score).reversed()
+                .thenComparing(h -> nameLengths.get(h.menuItemId()))
+                .thenComparing(Hit::menuItemId));
+        int from = Math.min(page * size, hits.size());
+        int to = Math.min(from + size, hits.size());
+        return new Result(new ArrayList<>(hits.subList(from, to)), hits.size());
+    }
+
+    /**
+     * Bỏ dấu tiếng Việt, viết thường và tách từ ("Cơm Gà Xối Mỡ" -> [com, ga, xoi, mo])
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = fold(text);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    static String fold(String text) {
+        String lower = text.toLowerCase(Locale.ROOT).replace('đ', 'd');
+        return MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    // ---- nạp từ DB ----
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long started = System.currentTimeMillis();
+        int count = 0;
+        try (Stream<Object[]> rows = menuItemRepository.streamForSearchIndex()) {
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                put(toDoc((Long) row[0], (Long) row[1], (Long) row[2], Boolean.TRUE.equals(row[3]),
+                        (String) row[4], (String) row[5]));
+                count++;
+            }
+        }
+        ready = true;
+        log.info("Menu search index loaded {} items ({} terms) in {} ms",
+                count, postings.size(), System.currentTimeMillis() - started);
+    }
+
+    // ---- nội bộ ----
+
+    // Các từ trong index khớp với một từ của truy vấn -> mức khớp (EXACT/PREFIX/FUZZY)
+    private Map<String, Integer> matchTerms(String token, boolean last) {
+        Map<String, Integer> terms = new HashMap<>();
+        if (postings.containsKey(token)) {
+            terms.put(token, EXACT);
+        }
+        if (last) {
+            for (String term : prefixTerms(token)) {
+                terms.putIfAbsent(term, PREFIX);
+            }
+        }
+        if (token.length() >= MIN_FUZZY_LENGTH) {
+            for (String term : fuzzyCandidates(token)) {
+                terms.putIfAbsent(term, FUZZY);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Các từ bắt đầu bằng token. Khi quá MAX_PREFIX_EXPANSION từ thì xếp hạng trước rồi mới cắt: từ ngắn hơn
+     * (gõ thêm ít ký tự nhất) rồi từ có nhiều món hơn, thay vì lấy các từ đầu theo thứ tự từ điển ("ga" không được
+     * bỏ mất "gao" chỉ vì 256 từ "ga..." khác đứng trước).
+     */
+    private List<String> prefixTerms(String token) {
+        List<String> terms = new ArrayList<>(postings.subMap(token, false, token + Character.MAX_VALUE, false).keySet());
+        if (terms.size() <= MAX_PREFIX_EXPANSION) {
+            return terms;
+        }
+        Map<String, Integer> sizes = new HashMap<>();
+        for (String term : terms) {
+            Set<Long> ids = postings.get(term);
+            sizes.put(term, ids != null ? ids.size() : 0);
+        }
+        terms.sort(Comparator.comparingInt(String::length)
+                .thenComparing(sizes::get, Comparator.reverseOrder())
+                .thenComparing(Comparator.naturalOrder()));
+        log.debug("Prefix '{}' expands to {} terms, keeping the {} closest", token, terms.size(), MAX_PREFIX_EXPANSION);
+        return terms.subList(0, MAX_PREFIX_EXPANSION);
+    }
+
+    private long postingCount(Map<String, Integer> terms) {
+        long count = 0;
+        for (String term : terms.keySet()) {
+            Set<Long> ids = postings.get(term);
+            count += ids != null ? ids.size() : 0;
+        }
+        return count;
+    }
+
+    // Điểm của một từ truy vấn cho từng món; lọc cửa hàng/danh mục ngay ở đây để không chấm điểm món bị loại
+    private Map<Long, Integer> scoreTerms(Map<String, Integer> terms, Map<Long, Integer> restrictTo,
+                                          Long storeId, Long categoryId) {
+        Map<Long, Integer> result = new HashMap<>();
+        for (Map.Entry<String, Integer> t : terms.entrySet()) {
+            Set<Long> ids = postings.get(t.getKey());
+            if (ids == null) {
+                continue;
+            }
+            for (Long id : ids) {
+                if (restrictTo != null && !restrictTo.containsKey(id)) {
+                    continue;
+                }
+                Doc doc = docs.get(id);
+                if (doc == null || !doc.available()
+                        || (storeId != null && !storeId.equals(doc.storeId()))
+                        || (categoryId != null && !categoryId.equals(doc.categoryId()))) {
+                    continue;
+                }
+                int score = t.getValue() * (doc.nameTerms().contains(t.getKey()) ? NAME_WEIGHT : 1);
+                result.merge(id, score, Math::max);
+            }
+        }
+        return result;
+    }
+
+    private Set<String> fuzzyCandidates(String token) {
+        Set<String> candidates = new HashSet<>();
+        // token = term bỏ một ký tự (thiếu ký tự)
+        Set<String> longer = deletions.get(token);
+        if (longer != null) {
+            candidates.addAll(longer);
+        }
+        for (String variant : deletionsOf(token)) {
+            // term = token bỏ một ký tự (thừa ký tự)
+            if (postings.containsKey(variant)) {
+                candidates.add(variant);
+            }
+            // cùng biến thể sau khi bỏ một ký tự (sai một ký tự)
+            Set<String> same = deletions.get(variant);
+            if (same != null) {
+                candidates.addAll(same);
+            }
+        }
+        candidates.removeIf(term -> term.equals(token) || !withinOneEdit(token, term));
+        return candidates;
+    }
+
+    private synchronized void put(Doc doc) {
+        Doc previous = docs.put(doc.id(), doc);
+        if (previous != null) {
+            for (String term : previous.allTerms()) {
+                if (!doc.allTerms().contains(term)) {
+                    unindex(term, doc.id());
+                }
+            }
+        }
+        for (String term : doc.allTerms()) {
+            postings.computeIfAbsent(term, t -> {
+                if (t.length() >= MIN_FUZZY_LENGTH - 1) {
+                    for (String variant : deletionsOf(t)) {
+                        deletions.computeIfAbsent(variant, v -> ConcurrentHashMap.newKeySet()).add(t);
+                    }
+                }
+                return ConcurrentHashMap.newKeySet();
+            }).add(doc.id());
+        }
+    }
+
+    private synchronized void remove(Long id) {
+        Doc previous = docs.remove(id);
+        if (previous != null) {
+            previous.allTerms().forEach(term -> unindex(term, id));
+        }
+    }
+
+    private void unindex(String term, Long id) {
+        Set<Long> ids = postings.get(term);
+        if (ids == null) {
+            return;
+        }
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            postings.remove(term);
+            for (String variant : deletionsOf(term)) {
+                Set<String> terms = deletions.get(variant);
+                if (terms != null) {
+                    terms.remove(term);
+                    if (terms.isEmpty()) {
+                        deletions.remove(variant);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Doc toDoc(Long id, Long storeId, Long categoryId, boolean available, String name, String description) {
+        List<String> nameTokens = tokenize(name);
+        Set<String> all = new LinkedHashSet<>(nameTokens);
+        all.addAll(tokenize(description));
+        return new Doc(id, storeId, categoryId, available, Set.copyOf(nameTokens), Set.copyOf(all),
+                name != null ? name.length() : 0);
+    }
+
+    private static List<String> deletionsOf(String term) {
+        List<String> variants = new ArrayList<>(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            String variant = term.substring(0, i) + term.substring(i + 1);
+            if (!variant.isEmpty() && (i == 0 || term.charAt(i) != term.charAt(i - 1))) {
+                variants.add(variant);
+            }
+        }
+        return variants;
+    }
+
+    // Levenshtein <= 1 (thêm, bớt hoặc thay đúng một ký tự)
+    private static boolean withinOneEdit(String a, String b) {
+        int la = a.length();
+        int lb = b.length();
+        if (Math.abs(la - lb) > 1) {
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        boolean edited = false;
+        while (i < la && j < lb) {
+            if (a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (edited) {
+                return false;
+            }
+            edited = true;
+            if (la > lb) {
+                i++;
+            } else if (la < lb) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return !edited || (i == la && j == lb);
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.entity.Store;
+import com.fastfood.management.repository.MenuItemRepository;
+import com.fastfood.management.repository.StoreRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot menu của từng cửa hàng cho GET /stores/{id}/menu: toàn bộ món đang bán (kèm category) theo thứ tự hiển thị,
+ * serialize và nén gzip sẵn một lần. Request chỉ chọn bản nén hay bản thường, không truy vấn DB, không nén lại.
+ * - Snapshot không đổi sau khi dựng; thay đổi menu/category/store (CatalogCache.invalidateStore) đánh dấu cửa hàng,
+ *   job nền dựng lại sau menu.snapshot.rebuildDelayMs, trong lúc đó vẫn phục vụ bản cũ.
+ * - Version tăng đơn điệu, bắt đầu từ thời điểm khởi động để không trùng ETag của lần chạy trước; dùng làm ETag (weak,
+ *   vì cùng version có hai bản mã hoá).
+ * - Thời gian dựng xem qua /actuator/metrics/menu.snapshot.build và menu.snapshot.build.last.
+ */
+@Component
+@Slf4j
+public class MenuSnapshotStore {
+
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    private final MenuItemRepository menuItemRepository;
+    private final StoreRepository storeRepository;
+    private final MenuItemJsonCache menuItemJsonCache;
+    private final Timer buildTimer;
+
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis());
+    // Đếm số lần đánh dấu, để bản dựng lúc request đầu tiên biết có thay đổi chen vào giữa chừng
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong lastBuildNanos = new AtomicLong();
+
+    public record Snapshot(long storeId, long version, byte[] json, byte[] gzip) {
+
+        public String etag() {
+            return "W/\"" + version + "\"";
+        }
+    }
+
+    public MenuSnapshotStore(MenuItemRepository menuItemRepository,
+                             StoreRepository storeRepository,
+                             MenuItemJsonCache menuItemJsonCache,
+                             MeterRegistry meterRegistry) {
+        this.menuItemRepository = menuItemRepository;
+        this.storeRepository = storeRepository;
+        this.menuItemJsonCache = menuItemJsonCache;
+        this.buildTimer = Timer.builder("menu.snapshot.build")
+                .description("Time to build and compress one store menu snapshot")
+                .register(meterRegistry);
+        Gauge.builder("menu.snapshot.build.last", lastBuildNanos, v -> v.get() / 1_000_000.0)
+                .description("Duration of the most recent menu snapshot build")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("menu.snapshot.count", snapshots, Map::size)
+                .description("Number of store menu snapshots held in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Trả snapshot dạng gzip nếu client nhận gzip, kèm ETag theo version; Spring MVC tự trả 304 khi If-None-Match khớp.
+     * Trả null khi cửa hàng không tồn tại.
+     */
+    public ResponseEntity<byte[]> respond(Long storeId, String acceptEncoding) {
+        Snapshot snapshot = get(storeId);
+        if (snapshot == null) {
+            return null;
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(REVALIDATE)
+                .eTag(snapshot.etag())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? snapshot.gzip() : snapshot.json());
+    }
+
+    /**
+     * Snapshot hiện tại của cửa hàng; cửa hàng chưa có snapshot (chưa mở lúc khởi động) thì dựng ngay lần đầu
+     */
+    public Snapshot get(Long storeId) {
+        Snapshot snapshot = snapshots.get(storeId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (!storeRepository.existsById(storeId)) {
+            return null;
+        }
+        long seen = changes.get();
+        Snapshot built = build(storeId);
+        Snapshot existing = snapshots.putIfAbsent(storeId, built);
+        if (existing == null && changes.get() != seen) {
+            // Có thể đã đọc dữ liệu trước một thay đổi vừa commit: để job nền dựng lại
+            dirty.add(storeId);
+        }
+        return existing != null ? existing : built;
+    }
+
+    /**
+     * Gọi sau commit (qua CatalogCache); storeId null là món không thuộc cửa hàng nào, không nằm trong snapshot
+     */
+    public void markDirty(Long storeId) {
+        if (storeId == null) {
+            return;
+        }
+        changes.incrementAndGet();
+        dirty.add(storeId);
+    }
+
+    public void markAllDirty() {
+        changes.incrementAndGet();
+        dirty.addAll(snapshots.keySet());
+    }
+
+    @Scheduled(fixedDelayString = "${menu.snapshot.rebuildDelayMs:1000}")
+    public void rebuildDirty() {
+        for (Long storeId : dirty) {
+            if (!dirty.remove(storeId) || !snapshots.containsKey(storeId)) {
+                continue;
+            }
+            try {
+                snapshots.put(storeId, build(storeId));
+            } catch (RuntimeException ex) {
+                // Giữ bản cũ, chu kỳ sau dựng lại
+                dirty.add(storeId);
+                log.error("Failed to rebuild menu snapshot for store {}: {}", storeId, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dựng sẵn snapshot cho các cửa hàng đang hoạt động để request đầu tiên không phải chờ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        long started = System.currentTimeMillis();
+        List<Long> storeIds = storeRepository.findIdsByStatus(Store.StoreStatus.ACTIVE);
+        for (Long storeId : storeIds) {
+            snapshots.put(storeId, build(storeId));
+        }
+        log.info("Built menu snapshots for {} stores in {} ms", storeIds.size(), System.currentTimeMillis() - started);
+    }
+
+    private Snapshot build(Long storeId) {
+        long started = System.nanoTime();
+        byte[] json = menuItemJsonCache.toJsonArray(menuItemRepository.findMenuResponsesByStore(storeId));
+        Snapshot snapshot = new Snapshot(storeId, versions.incrementAndGet(), json, gzip(json));
+        long elapsed = System.nanoTime() - started;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        lastBuildNanos.set(elapsed);
+        return snapshot;
+    }
+
+    // Nén một lần cho mọi request nên dùng mức nén cao nhất
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Accept-Encoding có gzip (hoặc *) với q khác 0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+package com.fastfood.management.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * Ghép cặp chi phí nhỏ nhất (thuật toán Hungarian, O(n^2 * m)) trên ma trận chữ nhật hàng x cột, dùng cho
+ * dispatch theo lô: hàng là đơn, cột là drone. Ô không được ghép đặt giá INFEASIBLE; lời giải ưu tiên ghép được
+ * nhiều cặp khả thi nhất rồi mới tới tổng chi phí nhỏ nhất.
+ */
+final class MinCostMatching {
+
+    static final double INFEASIBLE = 1e9;
+
+    private MinCostMatching() {
+    }
+
+    /**
+     * Cột được ghép cho mỗi hàng, -1 nếu hàng không được ghép (thừa hàng hoặc chỉ còn ô INFEASIBLE)
+     */
+    static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        int cols = rows == 0 ? 0 : cost[0].length;
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        if (rows == 0 || cols == 0) {
+            return result;
+        }
+        if (rows <= cols) {
+            int[] match = hungarian(cost, rows, cols, false);
+            for (int i = 0; i < rows; i++) {
+                result[i] = feasible(cost[i][match[i]]) ? match[i] : -1;
+            }
+        } else {
+            // Thuật toán cần số hàng <= số cột: giải trên ma trận chuyển vị rồi đảo lại
+            int[] match = hungarian(cost, cols, rows, true);
+            for (int j = 0; j < cols; j++) {
+                if (feasible(cost[match[j]][j])) {
+                    result[match[j]] = j;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean feasible(double c) {
+        return c < INFEASIBLE;
+    }
+
+    // n hàng <= m cột; transposed = đọc cost[j][i]. Trả về cột của từng hàng
+    private static int[] hungarian(double[][] cost, int n, int m, boolean transposed) {
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) {
+                        continue;
+                    }
+                    double c = transposed ? cost[j - 1][i0 - 1] : cost[i0 - 1][j - 1];
+                    double cur = c - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        int[] match = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                match[p[j] - 1] = j - 1;
+            }
+        }
+        return match;
+    }
+}
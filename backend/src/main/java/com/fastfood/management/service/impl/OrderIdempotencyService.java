@@ -0,0 +1,164 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.dto.request.OrderRequest;
+import com.fastfood.management.entity.Order;
+import com.fastfood.management.entity.User;
+import com.fastfood.management.exception.IdempotencyConflictException;
+import com.fastfood.management.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Dedupe POST /orders theo header Idempotency-Key.
+ * - Lặp lại gần đây: trả từ LRU trong bộ nhớ (key -> orderId).
+ * - Không còn trong LRU: tra cột orders.idempotency_key (unique theo customer).
+ * - Nhiều request trùng key đến cùng lúc: chỉ một request chạy createOrder, các request còn lại chờ kết quả.
+ * - Key đi kèm hash nội dung request (requestHash); dùng lại key cho request khác -> IdempotencyConflictException (422).
+ *   Đơn tạo trước khi có cột idempotency_hash không có hash nên vẫn được trả lại như cũ.
+ */
+@Service
+@Slf4j
+public class OrderIdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final OrderRepository orderRepository;
+    private final Map<String, Replay> recent;
+    private final Map<String, CompletableFuture<Replay>> inFlight = new ConcurrentHashMap<>();
+
+    // Đơn đã tạo cho một key và hash request đã tạo ra nó (null = đơn cũ, chưa lưu hash)
+    private record Replay(Long orderId, String requestHash) {
+    }
+
+    public OrderIdempotencyService(OrderRepository orderRepository,
+                                   @Value("${orders.idempotency.cacheSize:10000}") int cacheSize) {
+        this.orderRepository = orderRepository;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Replay> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Trả về id của đơn ứng với key; nếu chưa có thì chạy creator đúng một lần.
+     * creator phải tự chạy trong transaction riêng (gọi qua proxy của OrderService) và lưu requestHash vào đơn.
+     * @throws IdempotencyConflictException nếu key đã gắn với một request có nội dung khác
+     */
+    public Long createOnce(User customer, String idempotencyKey, String requestHash, Supplier<Order> creator) {
+        String key = idempotencyKey.trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key phải có từ 1 đến " + MAX_KEY_LENGTH + " ký tự");
+        }
+        String cacheKey = customer.getId() + ":" + key;
+
+        Replay cached = getRecent(cacheKey);
+        if (cached != null) {
+            return matching(cached, key, requestHash);
+        }
+        Optional<Order> persisted = orderRepository.findByCustomerIdAndIdempotencyKey(customer.getId(), key);
+        if (persisted.isPresent()) {
+            return matching(remember(cacheKey, replayOf(persisted.get())), key, requestHash);
+        }
+
+        CompletableFuture<Replay> mine = new CompletableFuture<>();
+        CompletableFuture<Replay> running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            Replay first;
+            try {
+                first = running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+            return matching(first, key, requestHash);
+        }
+
+        try {
+            Replay replay;
+            try {
+                replay = new Replay(creator.get().getId(), requestHash);
+            } catch (DataIntegrityViolationException e) {
+                // Một instance khác đã ghi cùng key trước (unique customer_id + idempotency_key)
+                replay = orderRepository.findByCustomerIdAndIdempotencyKey(customer.getId(), key)
+                        .map(OrderIdempotencyService::replayOf)
+                        .orElseThrow(() -> e);
+                log.info("Idempotency-Key {} of customer {} resolved to existing order {}",
+                        key, customer.getId(), replay.orderId());
+            }
+            remember(cacheKey, replay);
+            mine.complete(replay);
+            return matching(replay, key, requestHash);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    /**
+     * SHA-256 (hex) của nội dung đơn: địa chỉ, phương thức thanh toán, ghi chú và các dòng món (không phụ thuộc thứ tự)
+     */
+    public static String requestHash(OrderRequest request) {
+        StringBuilder canonical = new StringBuilder()
+                .append(request.getAddressId()).append('|')
+                .append(request.getPaymentMethod()).append('|')
+                .append(Objects.toString(request.getNote(), "")).append('|');
+        List<OrderRequest.OrderItemRequest> items = request.getItems() != null ? request.getItems() : List.of();
+        items.stream()
+                .sorted(Comparator.comparing(OrderRequest.OrderItemRequest::getMenuItemId,
+                                Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(OrderRequest.OrderItemRequest::getQuantity,
+                                Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(item -> canonical.append(item.getMenuItemId()).append('x').append(item.getQuantity()).append(','));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Long matching(Replay replay, String key, String requestHash) {
+        if (replay.requestHash() != null && !replay.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException("Idempotency-Key " + key + " đã được dùng cho một đơn hàng khác");
+        }
+        return replay.orderId();
+    }
+
+    private static Replay replayOf(Order order) {
+        return new Replay(order.getId(), order.getIdempotencyHash());
+    }
+
+    private Replay getRecent(String cacheKey) {
+        synchronized (recent) {
+            return recent.get(cacheKey);
+        }
+    }
+
+    private Replay remember(String cacheKey, Replay replay) {
+        synchronized (recent) {
+            recent.put(cacheKey, replay);
+        }
+        return replay;
+    }
+}
@@ -1,27 +1,38 @@
 package com.fastfood.management.service.impl;
 
 import com.fastfood.management.dto.request.OrderRequest;
+import com.fastfood.management.dto.response.OrderCompactResponse;
+import com.fastfood.management.dto.response.OrderCursor;
 import com.fastfood.management.dto.response.OrderResponse;
+import com.fastfood.management.dto.response.OrderSummary;
+import com.fastfood.management.dto.response.OrderTimelineResponse;
+import com.fastfood.management.dto.response.RevenueSeriesResponse;
 import com.fastfood.management.entity.*;
+import com.fastfood.management.event.OrderReadyForDeliveryEvent;
 import com.fastfood.management.repository.*;
 import java.util.UUID;
 import com.fastfood.management.service.api.OrderService;
 import com.fastfood.management.service.api.FleetService;
+import com.fastfood.management.service.api.StockReservationService;
 import com.fastfood.management.service.impl.WebSocketService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -38,20 +49,38 @@ public class OrderServiceImpl implements OrderService {
     private final DeliveryRepository deliveryRepository;
     private final WebSocketService webSocketService;
     private final FleetService fleetService;
+    private final StockReservationService stockReservationService;
+    private final OrderStatsRollup orderStatsRollup;
+    private final PopularItemsTracker popularItemsTracker;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final int MAX_HOURLY_SERIES_DAYS = 31;
+    private static final int MAX_DAILY_SERIES_DAYS = 366;
+    private static final java.time.format.DateTimeFormatter SERIES_HOUR_FORMAT =
+            java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     @Override
     @Transactional
     public Order createOrder(OrderRequest orderRequest, User currentUser) {
+        return createOrder(orderRequest, currentUser, null);
+    }
+
+    @Override
+    @Transactional
+    public Order createOrder(OrderRequest orderRequest, User currentUser, String idempotencyKey) {
         // Validate address
         Address address = addressRepository.findById(orderRequest.getAddressId())
                 .orElseThrow(() -> new EntityNotFoundException("Address not found"));
         
-        // Determine store from first menu item and validate all items belong to same store
         if (orderRequest.getItems() == null || orderRequest.getItems().isEmpty()) {
             throw new IllegalArgumentException("Order must contain at least one item");
         }
-        MenuItem firstMenuItem = menuItemRepository.findById(orderRequest.getItems().get(0).getMenuItemId())
-                .orElseThrow(() -> new EntityNotFoundException("Menu item not found"));
+
+        // Load toàn bộ món trong đơn bằng một truy vấn IN duy nhất (thay vì findById cho từng dòng)
+        Map<Long, MenuItem> menuItems = loadMenuItems(orderRequest.getItems());
+
+        // Determine store from first menu item and validate all items belong to same store
+        MenuItem firstMenuItem = menuItems.get(orderRequest.getItems().get(0).getMenuItemId());
         Store store = firstMenuItem.getStore();
         if (store == null) {
             throw new IllegalStateException("Menu item does not belong to a store");
@@ -67,24 +96,14 @@ public class OrderServiceImpl implements OrderService {
                 .paymentStatus(Order.PaymentStatus.PENDING)
                 .address(address)
                 .note(orderRequest.getNote())
+                .idempotencyKey(idempotencyKey)
+                .idempotencyHash(idempotencyKey != null ? OrderIdempotencyService.requestHash(orderRequest) : null)
                 .build();
-        
-        order = orderRepository.save(order);
 
-        // Generate order code: ORD-YYYYMMDD-ID
-        java.time.LocalDate today = java.time.LocalDate.now();
-        String datePart = today.format(java.time.format.DateTimeFormatter.BASIC_ISO_DATE);
-        String code = "ORD-" + datePart + "-" + order.getId();
-        order.setOrderCode(code);
-        order = orderRepository.save(order);
-        
-        // tạo order, tính total 
+        // Dựng order items và tính total trong bộ nhớ trước khi ghi xuống DB
         BigDecimal totalAmount = BigDecimal.ZERO;
-        Map<Long, Integer> menuItemQuantities = new HashMap<>();
-        
         for (OrderRequest.OrderItemRequest itemRequest : orderRequest.getItems()) {
-            MenuItem menuItem = menuItemRepository.findById(itemRequest.getMenuItemId())
-                    .orElseThrow(() -> new EntityNotFoundException("Menu item not found"));
+            MenuItem menuItem = menuItems.get(itemRequest.getMenuItemId());
             // check trạng thái (có sẳn) có bật hay không
             if (!menuItem.isAvailable()) {
                 throw new IllegalStateException("Menu item " + menuItem.getName() + " is not available");
@@ -92,7 +111,7 @@ public class OrderServiceImpl implements OrderService {
             if (menuItem.getStore() == null || !menuItem.getStore().getId().equals(store.getId())) {
                 throw new IllegalStateException("All items in an order must belong to the same store");
             }
-            
+
             OrderItem orderItem = OrderItem.builder()
                     .order(order)
                     .menuItem(menuItem)
@@ -101,17 +120,22 @@ public class OrderServiceImpl implements OrderService {
                     .nameSnapshot(menuItem.getName())
                     .imageSnapshot(menuItem.getImageUrl())
                     .build();
-            
-            orderItemRepository.save(orderItem);
-            
+            order.getOrderItems().add(orderItem);
+
             totalAmount = totalAmount.add(menuItem.getPrice().multiply(BigDecimal.valueOf(itemRequest.getQuantity())));
-            menuItemQuantities.put(menuItem.getId(), itemRequest.getQuantity());
         }
-        
-        // Update order total
         order.setTotalAmount(totalAmount);
+
+        // Một lần persist: order + order items (cascade). Id được cấp phát sẵn (pooled) nên
+        // order code ORD-YYYYMMDD-ID được sinh ngay trong câu INSERT (xem OrderCodeGenerator)
+        // và toàn bộ INSERT được gom thành JDBC batch khi flush.
         order = orderRepository.save(order);
 
+        // Giữ hàng trong bộ đếm bộ nhớ (không khoá dòng inventory); transaction rollback sẽ tự trả lại
+        stockReservationService.reserve(order.getId(), order.getOrderItems().stream()
+                .collect(Collectors.toMap(it -> it.getMenuItem().getId(), OrderItem::getQuantity, Integer::sum)));
+        popularItemsTracker.recordOrder(order);
+
         // Auto insert payment record based on payment method
         insertPaymentForOrder(order);
 
@@ -132,6 +156,18 @@ public class OrderServiceImpl implements OrderService {
         return order;
     }
 
+    private Map<Long, MenuItem> loadMenuItems(List<OrderRequest.OrderItemRequest> items) {
+        Set<Long> ids = items.stream()
+                .map(OrderRequest.OrderItemRequest::getMenuItemId)
+                .collect(Collectors.toSet());
+        Map<Long, MenuItem> byId = menuItemRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(MenuItem::getId, Function.identity()));
+        if (byId.size() != ids.size()) {
+            throw new EntityNotFoundException("Menu item not found");
+        }
+        return byId;
+    }
+
     private void insertPaymentForOrder(Order order) {
         if (order.getPaymentMethod() == Order.PaymentMethod.VNPAY || order.getPaymentMethod() == Order.PaymentMethod.WALLET) {
             String provider = order.getPaymentMethod() == Order.PaymentMethod.VNPAY ? "VNPAY" : "WALLET";
@@ -166,67 +202,17 @@ public class OrderServiceImpl implements OrderService {
         
         Order.OrderStatus oldStatus = order.getStatus();
 
-        // RBAC: Cho phép MERCHANT, STAFF hoặc ADMIN thao tác các trạng thái vận hành bếp/giao hàng
-        boolean isAdmin = hasSystemRole(currentUser, Role.ROLE_ADMIN);
-        boolean isMerchant = hasSystemRole(currentUser, Role.ROLE_MERCHANT);
-        boolean isStaff = hasSystemRole(currentUser, Role.ROLE_STAFF);
-        boolean isOwner = currentUser != null && order.getCustomer() != null && order.getCustomer().getId().equals(currentUser.getId());
-
-        switch (status) {
-            case CONFIRMED:
-            case PREPARING:
-            case READY_FOR_DELIVERY:
-            case REJECTED:
-                if (!(isAdmin || isMerchant || isStaff)) {
-                    throw new IllegalStateException("Chỉ nhân viên cửa hàng hoặc admin mới được cập nhật trạng thái bếp");
-                }
-                break;
-            case ASSIGNED:
-            case OUT_FOR_DELIVERY:
-                if (!isAdmin) {
-                    throw new IllegalStateException("Chỉ admin/hệ thống được cập nhật trạng thái giao hàng (ASSIGNED/OUT_FOR_DELIVERY)");
-                }
-                break;
-            case DELIVERED:
-                // Cho phép chủ đơn xác nhận hoàn thành sau khi giao xong
-                if (!(isOwner || isAdmin)) {
-                    throw new IllegalStateException("Chỉ khách hàng chủ đơn hoặc admin được phép xác nhận hoàn thành (DELIVERED)");
-                }
-                break;
-            case CANCELLED:
-                // Cho phép chủ đơn hủy, hoặc admin/merchant
-                if (!(isOwner || isAdmin || isMerchant)) {
-                    throw new IllegalStateException("Bạn không có quyền hủy đơn này");
-                }
-                break;
-            default:
-                break;
-        }
-
-        // Ràng buộc thanh toán: từ CONFIRMED trở đi phải PAID
-        if ((status == Order.OrderStatus.CONFIRMED ||
-             status == Order.OrderStatus.PREPARING ||
-             status == Order.OrderStatus.READY_FOR_DELIVERY ||
-             status == Order.OrderStatus.ASSIGNED ||
-             status == Order.OrderStatus.OUT_FOR_DELIVERY ||
-             status == Order.OrderStatus.DELIVERED)
-            && order.getPaymentStatus() != Order.PaymentStatus.PAID) {
-            throw new IllegalStateException("Đơn chưa thanh toán (PAID), không thể chuyển trạng thái");
-        }
+        // RBAC + ràng buộc thanh toán tra từ bảng dựng sẵn; mask vai trò tính một lần cho request
+        int roleMask = OrderStatusPolicy.roleMask(currentUser, order);
+        OrderStatusPolicy.checkRole(status, roleMask);
+        // Từ CONFIRMED trở đi phải PAID
+        OrderStatusPolicy.checkPaid(status, order.getPaymentStatus());
         
         // Nếu xác nhận DELIVERED từ OUT_FOR_DELIVERY: yêu cầu chờ tối thiểu 3 giây
         if (status == Order.OrderStatus.DELIVERED && oldStatus == Order.OrderStatus.OUT_FOR_DELIVERY) {
-            java.time.LocalDateTime outForDeliveryAt = null;
-            java.util.List<OrderActivity> activitiesDesc = orderActivityRepository.findByOrderIdOrderByCreatedAtDesc(order.getId());
-            for (OrderActivity a : activitiesDesc) {
-                if (a.getToStatus() == Order.OrderStatus.OUT_FOR_DELIVERY) {
-                    outForDeliveryAt = a.getCreatedAt();
-                    break;
-                }
-            }
-            if (outForDeliveryAt == null) {
-                outForDeliveryAt = order.getUpdatedAt();
-            }
+            // Thời điểm OUT_FOR_DELIVERY lưu sẵn trên order, không cần quét order_activity
+            java.time.LocalDateTime outForDeliveryAt = order.getOutForDeliveryAt() != null
+                    ? order.getOutForDeliveryAt() : order.getUpdatedAt();
             if (outForDeliveryAt != null) {
                 long elapsed = java.time.Duration.between(outForDeliveryAt, java.time.LocalDateTime.now()).getSeconds();
                 if (elapsed < 3) {
@@ -236,7 +222,7 @@ public class OrderServiceImpl implements OrderService {
         }
 
         // Validate status transition
-        validateStatusTransition(oldStatus, status);
+        OrderStatusPolicy.checkTransition(oldStatus, status);
         
         // Update order status
         order.setStatus(status);
@@ -251,6 +237,13 @@ public class OrderServiceImpl implements OrderService {
                 .build();
         orderActivityRepository.save(activity);
 
+        // Hàng đã giữ: trừ hẳn khi giao xong, trả lại khi đơn bị hủy/từ chối (sau khi transaction commit)
+        if (status == Order.OrderStatus.DELIVERED) {
+            stockReservationService.commit(order.getId());
+        } else if (status == Order.OrderStatus.CANCELLED || status == Order.OrderStatus.REJECTED) {
+            stockReservationService.release(order.getId());
+        }
+
         // Khi READY_FOR_DELIVERY: tự động gán drone và bỏ qua ASSIGNED -> chuyển thẳng OUT_FOR_DELIVERY.
         if (status == Order.OrderStatus.READY_FOR_DELIVERY) {
             Optional<DroneAssignment> assignmentOpt = fleetService.autoAssignDrone(order);
@@ -259,6 +252,9 @@ public class OrderServiceImpl implements OrderService {
                 if (order.getDelivery() == null) {
                     insertDeliveryForOrder(order);
                 }
+                // Dispatcher thử lại ngay sau commit (gán theo lô cùng các đơn đang chờ khác)
+                eventPublisher.publishEvent(new OrderReadyForDeliveryEvent(order.getId(),
+                        order.getStore() != null ? order.getStore().getId() : null));
             } else {
                 // Có drone: cập nhật order và delivery ngay lập tức
                 Order.OrderStatus prev = order.getStatus();
@@ -344,6 +340,7 @@ public class OrderServiceImpl implements OrderService {
                 .toStatus(Order.OrderStatus.CANCELLED)
                 .build();
         orderActivityRepository.save(activity);
+        stockReservationService.release(order.getId());
         
         // Gửi WebSocket notification cho realtime order tracking
         try {
@@ -360,13 +357,8 @@ public class OrderServiceImpl implements OrderService {
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
         
         // Allow owner or system roles to view order
-        boolean isOwner = currentUser != null && order.getCustomer() != null && order.getCustomer().getId().equals(currentUser.getId());
-        boolean hasAdmin = hasSystemRole(currentUser, "ADMIN") || hasSystemRole(currentUser, "ROLE_ADMIN");
-        boolean hasMerchant = hasSystemRole(currentUser, "MERCHANT") || hasSystemRole(currentUser, "ROLE_MERCHANT");
-        boolean hasStaff = hasSystemRole(currentUser, "STAFF") || hasSystemRole(currentUser, "ROLE_STAFF");
-        boolean hasManager = hasSystemRole(currentUser, "MANAGER") || hasSystemRole(currentUser, "ROLE_MANAGER");
-        
-        if (!(isOwner || hasAdmin || hasMerchant || hasStaff || hasManager)) {
+        int roleMask = OrderStatusPolicy.roleMask(currentUser, order);
+        if (!OrderStatusPolicy.canView(roleMask)) {
             throw new AccessDeniedException("Access denied: not permitted to view this order");
         }
 
@@ -379,21 +371,88 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Order> listMyOrders(User currentUser) {
-        List<Order> orders = orderRepository.findByCustomerOrderByCreatedAtDesc(currentUser);
-        // Initialize lazy collections to avoid LazyInitializationException during JSON serialization
-        for (Order order : orders) {
-            if (order.getOrderItems() != null) {
-                order.getOrderItems().size();
-            }
+    public OrderTimelineResponse getOrderTimeline(Long id, User currentUser) {
+        Order order = orderRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Order not found"));
+        if (!OrderStatusPolicy.canView(OrderStatusPolicy.roleMask(currentUser, order))) {
+            throw new AccessDeniedException("Access denied: not permitted to view this order");
+        }
+        return OrderTimelineResponse.builder()
+                .orderId(order.getId())
+                .orderCode(order.getOrderCode())
+                .status(order.getStatus().name())
+                .createdAt(order.getCreatedAt())
+                .confirmedAt(order.getConfirmedAt())
+                .preparingAt(order.getPreparingAt())
+                .readyAt(order.getReadyAt())
+                .assignedAt(order.getAssignedAt())
+                .outForDeliveryAt(order.getOutForDeliveryAt())
+                .deliveredAt(order.getDeliveredAt())
+                .closedAt(order.getClosedAt())
+                .acceptSeconds(secondsBetween(order.getCreatedAt(), order.getConfirmedAt()))
+                .kitchenSeconds(secondsBetween(order.getConfirmedAt(), order.getReadyAt()))
+                .waitForDroneSeconds(secondsBetween(order.getReadyAt(), order.getOutForDeliveryAt()))
+                .deliverySeconds(secondsBetween(order.getOutForDeliveryAt(), order.getDeliveredAt()))
+                .totalSeconds(secondsBetween(order.getCreatedAt(), order.getDeliveredAt()))
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Order.OrderStatus> getAllowedNextStatuses(Long id, User currentUser) {
+        Order order = orderRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Order not found"));
+        int roleMask = OrderStatusPolicy.roleMask(currentUser, order);
+        if (!OrderStatusPolicy.canView(roleMask)) {
+            throw new AccessDeniedException("Access denied: not permitted to view this order");
+        }
+        return OrderStatusPolicy.allowedNext(order.getStatus(), roleMask, order.getPaymentStatus());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Order> listMyOrders(User currentUser, OrderCursor before, int limit) {
+        // 1) Keyset lấy id của trang, 2) nạp cả trang kèm items bằng một truy vấn fetch join
+        List<Long> ids = orderRepository.findIdsByCustomerBefore(currentUser.getId(),
+                before != null ? before.createdAt() : null, before != null ? before.id() : null,
+                PageRequest.of(0, limit));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Order> byId = orderRepository.findWithItemsByIdIn(ids).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        return ids.stream().map(byId::get).collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OrderCompactResponse> listMyOrdersCompact(User currentUser, OrderCursor before, int limit) {
+        // Projection thẳng vào DTO: một truy vấn cho trang đơn, một truy vấn IN cho items
+        List<OrderCompactResponse> page = orderRepository.findCompactByCustomerBefore(currentUser.getId(),
+                before != null ? before.createdAt() : null, before != null ? before.id() : null,
+                PageRequest.of(0, limit));
+        if (page.isEmpty()) {
+            return page;
+        }
+        Map<Long, List<OrderCompactResponse.Item>> itemsByOrder = new java.util.HashMap<>();
+        List<Long> ids = page.stream().map(OrderCompactResponse::getId).collect(Collectors.toList());
+        for (Object[] row : orderItemRepository.findCompactRowsByOrderIdIn(ids)) {
+            OrderCompactResponse.Item item = OrderCompactResponse.Item.builder()
+                    .id((Long) row[1])
+                    .name(row[2] != null ? (String) row[2] : "Item")
+                    .quantity((Integer) row[3])
+                    .price(row[4] != null ? (BigDecimal) row[4] : BigDecimal.ZERO)
+                    .image((String) row[5])
+                    .build();
+            itemsByOrder.computeIfAbsent((Long) row[0], k -> new java.util.ArrayList<>()).add(item);
         }
-        return orders;
+        page.forEach(o -> o.setOrderItems(itemsByOrder.getOrDefault(o.getId(), List.of())));
+        return page;
     }
 
     @Override
     public Page<OrderResponse> getOrdersByStatus(Order.OrderStatus status, Pageable pageable) {
-        Page<Order> orders = orderRepository.findByStatus(status, pageable);
-        return orders.map(this::mapOrderToResponse);
+        return orderRepository.findSummariesByStatus(status, pageable).map(this::mapSummaryToResponse);
     }
 
     @Override
@@ -416,100 +475,135 @@ public class OrderServiceImpl implements OrderService {
             return page.map(this::mapOrderToResponse);
         }
         if (storeId != null) {
-            Page<Order> orders = orderRepository.findByStoreIdAndStatus(storeId, status, pageable);
-            return orders.map(this::mapOrderToResponse);
+            return orderRepository.findSummariesByStoreIdAndStatus(storeId, status, pageable).map(this::mapSummaryToResponse);
         }
         return getOrdersByStatus(status, pageable);
     }
 
+    @Override
+    public Slice<OrderResponse> sliceOrdersByStatus(Order.OrderStatus status, Pageable pageable, Long storeId) {
+        Slice<OrderSummary> rows = storeId != null
+                ? orderRepository.sliceSummariesByStoreIdAndStatus(storeId, status, pageable)
+                : orderRepository.sliceSummariesByStatus(status, pageable);
+        return rows.map(this::mapSummaryToResponse);
+    }
+
     @Override
     @org.springframework.transaction.annotation.Transactional(readOnly = true)
     public com.fastfood.management.dto.response.OrderStatsResponse getOrderStats(Long storeId, java.time.LocalDateTime start, java.time.LocalDateTime end) {
-        java.util.List<Order.OrderStatus> processingStatuses = java.util.Arrays.asList(
-                Order.OrderStatus.CREATED,
-                Order.OrderStatus.CONFIRMED,
-                Order.OrderStatus.PREPARING,
-                Order.OrderStatus.READY_FOR_DELIVERY,
-                Order.OrderStatus.ASSIGNED,
-                Order.OrderStatus.OUT_FOR_DELIVERY
-        );
-        java.util.List<Order.OrderStatus> deliveredStatuses = java.util.Arrays.asList(Order.OrderStatus.DELIVERED);
-        java.util.List<Order.OrderStatus> cancelledStatuses = java.util.Arrays.asList(
-                Order.OrderStatus.CANCELLED,
-                Order.OrderStatus.REJECTED,
-                Order.OrderStatus.FAILED
-        );
-
-        java.math.BigDecimal totalRevenue = orderRepository.sumTotalAmountByStatusAndStore(storeId, deliveredStatuses, start, end);
-        long processingCount = orderRepository.countByStatusAndStore(storeId, processingStatuses, start, end);
-        long deliveredCount = orderRepository.countByStatusAndStore(storeId, deliveredStatuses, start, end);
-        long cancelledCount = orderRepository.countByStatusAndStore(storeId, cancelledStatuses, start, end);
+        // Ngày đã qua đọc từ order_daily_stats, hôm nay + mép ngày lẻ tính bằng một câu aggregate trên orders
+        OrderStatsRollup.Totals totals = orderStatsRollup.totals(storeId, start, end);
 
         return com.fastfood.management.dto.response.OrderStatsResponse.builder()
                 .storeId(storeId)
                 .start(start)
                 .end(end)
-                .totalRevenue(totalRevenue != null ? totalRevenue : java.math.BigDecimal.ZERO)
-                .processingCount(processingCount)
-                .deliveredCount(deliveredCount)
-                .cancelledCount(cancelledCount)
+                .totalRevenue(totals.revenue())
+                .processingCount(totals.processing())
+                .deliveredCount(totals.delivered())
+                .cancelledCount(totals.cancelled())
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RevenueSeriesResponse getRevenueSeries(Long storeId, java.time.LocalDateTime start, java.time.LocalDateTime end,
+                                                  RevenueSeriesResponse.Bucket bucket) {
+        boolean hourly = bucket == RevenueSeriesResponse.Bucket.HOUR;
+        java.time.LocalDateTime to = end != null ? end : java.time.LocalDateTime.now();
+        java.time.LocalDateTime from = start != null ? start : (hourly ? to.minusDays(1) : to.minusDays(30));
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("start phải trước end");
+        }
+        if (from.isBefore(to.minusDays(hourly ? MAX_HOURLY_SERIES_DAYS : MAX_DAILY_SERIES_DAYS))) {
+            throw new IllegalArgumentException(hourly
+                    ? "Chuỗi theo giờ tối đa " + MAX_HOURLY_SERIES_DAYS + " ngày"
+                    : "Chuỗi theo ngày tối đa " + MAX_DAILY_SERIES_DAYS + " ngày");
+        }
+
+        List<Object[]> rows = hourly
+                ? orderRepository.revenueSeriesByHour(storeId, from, to)
+                : orderRepository.revenueSeriesByDay(storeId, from, to);
+        Map<java.time.LocalDateTime, RevenueSeriesResponse.Point> byBucket = new java.util.HashMap<>();
+        for (Object[] row : rows) {
+            String key = (String) row[0];
+            java.time.LocalDateTime bucketStart = hourly
+                    ? java.time.LocalDateTime.parse(key + ":00", SERIES_HOUR_FORMAT)
+                    : java.time.LocalDate.parse(key).atStartOfDay();
+            byBucket.put(bucketStart, new RevenueSeriesResponse.Point(bucketStart,
+                    ((Number) row[1]).longValue(),
+                    row[2] != null ? ((Number) row[2]).longValue() : 0L,
+                    row[3] instanceof BigDecimal bd ? bd : new BigDecimal(String.valueOf(row[3]))));
+        }
+
+        // Bù các bucket không có đơn để client không phải tự chèn
+        List<RevenueSeriesResponse.Point> points = new java.util.ArrayList<>();
+        java.time.temporal.ChronoUnit unit = hourly ? java.time.temporal.ChronoUnit.HOURS : java.time.temporal.ChronoUnit.DAYS;
+        for (java.time.LocalDateTime b = from.truncatedTo(unit); !b.isAfter(to); b = b.plus(1, unit)) {
+            RevenueSeriesResponse.Point point = byBucket.get(b);
+            points.add(point != null ? point : new RevenueSeriesResponse.Point(b, 0, 0, BigDecimal.ZERO));
+        }
+
+        return RevenueSeriesResponse.builder()
+                .storeId(storeId)
+                .start(from)
+                .end(to)
+                .bucket(bucket)
+                .points(points)
                 .build();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOrdersCsv(Long storeId, java.time.LocalDateTime start, java.time.LocalDateTime end,
+                                java.io.OutputStream out) throws java.io.IOException {
+        java.io.Writer writer = new java.io.BufferedWriter(
+                new java.io.OutputStreamWriter(out, java.nio.charset.StandardCharsets.UTF_8));
+        writer.write("id,order_code,created_at,status,payment_method,payment_status,total_amount\n");
+        long written = 0;
+        try (java.util.stream.Stream<OrderSummary> rows = orderRepository.streamSummariesForExport(storeId, start, end)) {
+            java.util.Iterator<OrderSummary> it = rows.iterator();
+            while (it.hasNext()) {
+                OrderSummary row = it.next();
+                writer.write(String.valueOf(row.id()));
+                writer.write(',');
+                writer.write(csv(row.orderCode()));
+                writer.write(',');
+                writer.write(row.createdAt() != null ? row.createdAt().toString() : "");
+                writer.write(',');
+                writer.write(String.valueOf(row.status()));
+                writer.write(',');
+                writer.write(String.valueOf(row.paymentMethod()));
+                writer.write(',');
+                writer.write(String.valueOf(row.paymentStatus()));
+                writer.write(',');
+                writer.write(row.totalAmount() != null ? row.totalAmount().toPlainString() : "");
+                writer.write('\n');
+                written++;
+            }
+        }
+        writer.flush();
+        log.debug("Exported {} orders as CSV (store={}, start={}, end={})", written, storeId, start, end);
+    }
+
     // Helper methods
     
-    private void validateStatusTransition(Order.OrderStatus currentStatus, Order.OrderStatus newStatus) {
-
-        switch (currentStatus) {
-            case CREATED:
-                if (newStatus != Order.OrderStatus.CONFIRMED &&
-                    newStatus != Order.OrderStatus.REJECTED &&
-                    newStatus != Order.OrderStatus.CANCELLED) {
-                    throw new IllegalStateException("Invalid status transition");
-                }
-                break;
-            case CONFIRMED:
-                if (newStatus != Order.OrderStatus.PREPARING &&
-                    newStatus != Order.OrderStatus.REJECTED &&
-                    newStatus != Order.OrderStatus.CANCELLED) {
-                    throw new IllegalStateException("Invalid status transition");
-                }
-                break;
-            case PREPARING:
-                if (newStatus != Order.OrderStatus.READY_FOR_DELIVERY &&
-                    newStatus != Order.OrderStatus.REJECTED &&
-                    newStatus != Order.OrderStatus.CANCELLED) {
-                    throw new IllegalStateException("Invalid status transition");
-                }
-                break;
-            case READY_FOR_DELIVERY:
-                if (newStatus != Order.OrderStatus.ASSIGNED && newStatus != Order.OrderStatus.OUT_FOR_DELIVERY) {
-                    throw new IllegalStateException("Invalid status transition");
-                }
-                break;
-            case ASSIGNED:
-                if (newStatus != Order.OrderStatus.OUT_FOR_DELIVERY) {
-                    throw new IllegalStateException("Invalid status transition");
-                }
-                break;
-            case OUT_FOR_DELIVERY:
-                if (newStatus != Order.OrderStatus.DELIVERED && newStatus != Order.OrderStatus.FAILED) {
-                    throw new IllegalStateException("Invalid status transition");
-                }
-                break;
-            case DELIVERED:
-            case REJECTED:
-            case CANCELLED:
-            case FAILED:
-                throw new IllegalStateException("Cannot change status of a terminal state");
-            default:
-                throw new IllegalStateException("Unknown order status");
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
         }
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 
-    private boolean hasSystemRole(User user, String code) {
-        if (user == null || user.getRoles() == null) return false;
-        return user.getRoles().stream().anyMatch(r -> code.equals(r.getCode()));
+    
+    private Long secondsBetween(java.time.LocalDateTime from, java.time.LocalDateTime to) {
+        if (from == null || to == null) {
+            return null;
+        }
+        return java.time.Duration.between(from, to).getSeconds();
     }
     
     private User getCurrentUser() {
@@ -518,6 +612,18 @@ public class OrderServiceImpl implements OrderService {
         return null;
     }
     
+    private OrderResponse mapSummaryToResponse(OrderSummary row) {
+        OrderResponse response = new OrderResponse();
+        response.setId(row.id());
+        response.setOrderCode(row.orderCode());
+        response.setStatus(row.status().name());
+        response.setTotalAmount(row.totalAmount());
+        response.setPaymentMethod(row.paymentMethod().name());
+        response.setPaymentStatus(row.paymentStatus().name());
+        response.setCreatedAt(row.createdAt());
+        return response;
+    }
+    
     private OrderResponse mapOrderToResponse(Order order) {
         // In a real implementation, this would use MapStruct
         // For now, return a simple implementation
@@ -0,0 +1,256 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.entity.Order;
+import com.fastfood.management.entity.Order.OrderStatus;
+import com.fastfood.management.repository.OrderDailyStatsRepository;
+import com.fastfood.management.repository.OrderRepository;
+import com.fastfood.management.event.OrderStatusChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thống kê đơn theo cửa hàng dựa trên bảng order_daily_stats (store, ngày tạo đơn).
+ * - Mỗi lần đơn được tạo/đổi nhóm trạng thái, OrderStatsListener gọi recordTransition: delta được cộng vào
+ *   bộ nhớ sau khi commit và flush() định kỳ ghi xuống bằng một upsert cho mỗi ô (store, ngày), mỗi ô một
+ *   transaction riêng; delta chỉ rời pending sau khi ô đó commit nên không mất khi ô khác ghi lỗi.
+ * - totals(): các ngày trọn vẹn đã qua đọc từ rollup; hôm nay và phần lẻ ở hai mép khoảng thời gian
+ *   tính trực tiếp bằng một câu conditional aggregation trên orders.
+ */
+@Component
+@Slf4j
+public class OrderStatsRollup {
+
+    static final List<OrderStatus> PROCESSING = List.of(
+            OrderStatus.CREATED, OrderStatus.CONFIRMED, OrderStatus.PREPARING,
+            OrderStatus.READY_FOR_DELIVERY, OrderStatus.ASSIGNED, OrderStatus.OUT_FOR_DELIVERY);
+    static final List<OrderStatus> CANCELLED = List.of(
+            OrderStatus.CANCELLED, OrderStatus.REJECTED, OrderStatus.FAILED);
+
+    // Controller chuyển end dạng ngày thành 23:59:59 -> coi như đã phủ trọn ngày đó
+    private static final LocalTime END_OF_DAY = LocalTime.of(23, 59, 59);
+
+    private final OrderDailyStatsRepository statsRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Key, Totals> pending = new ConcurrentHashMap<>();
+
+    private record Key(Long storeId, LocalDate day) {
+    }
+
+    /**
+     * Tổng cộng của một khoảng: revenue của đơn DELIVERED và số đơn ở từng nhóm trạng thái
+     */
+    public record Totals(BigDecimal revenue, long processing, long delivered, long cancelled) {
+
+        static final Totals ZERO = new Totals(BigDecimal.ZERO, 0, 0, 0);
+
+        Totals plus(Totals o) {
+            return new Totals(revenue.add(o.revenue), processing + o.processing,
+                    delivered + o.delivered, cancelled + o.cancelled);
+        }
+
+        Totals minus(Totals o) {
+            return new Totals(revenue.subtract(o.revenue), processing - o.processing,
+                    delivered - o.delivered, cancelled - o.cancelled);
+        }
+
+        boolean isZero() {
+            return processing == 0 && delivered == 0 && cancelled == 0 && revenue.signum() == 0;
+        }
+    }
+
+    public OrderStatsRollup(OrderDailyStatsRepository statsRepository,
+                            OrderRepository orderRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.statsRepository = statsRepository;
+        this.orderRepository = orderRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        recordTransition(event.order(), event.from(), event.to());
+    }
+
+    /**
+     * Ghi nhận đơn chuyển từ trạng thái from (null khi vừa tạo) sang to. Delta chỉ được cộng khi transaction commit.
+     */
+    public void recordTransition(Order order, OrderStatus from, OrderStatus to) {
+        if (order.getStore() == null || from == to) {
+            return;
+        }
+        BigDecimal amount = order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+        Totals delta = contribution(to, amount);
+        if (from != null) {
+            delta = delta.minus(contribution(from, amount));
+        }
+        if (delta.isZero()) {
+            return; // đổi trạng thái trong cùng một nhóm (vd. CONFIRMED -> PREPARING)
+        }
+        LocalDate day = order.getCreatedAt() != null ? order.getCreatedAt().toLocalDate() : LocalDate.now();
+        Key key = new Key(order.getStore().getId(), day);
+        Totals finalDelta = delta;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(key, finalDelta);
+                }
+            });
+        } else {
+            add(key, finalDelta);
+        }
+    }
+
+    /**
+     * Tổng hợp cho khoảng [start, end] (null = không giới hạn) theo đúng ngữ nghĩa của truy vấn cũ trên orders.
+     */
+    public Totals totals(Long storeId, LocalDateTime start, LocalDateTime end) {
+        LocalDate fromDay = null;
+        if (start != null) {
+            fromDay = start.toLocalTime().equals(LocalTime.MIDNIGHT) ? start.toLocalDate() : start.toLocalDate().plusDays(1);
+        }
+        LocalDate toDay = LocalDate.now().minusDays(1);
+        if (end != null) {
+            LocalDate lastCovered = end.toLocalTime().isBefore(END_OF_DAY) ? end.toLocalDate().minusDays(1) : end.toLocalDate();
+            if (lastCovered.isBefore(toDay)) {
+                toDay = lastCovered;
+            }
+        }
+        if (fromDay != null && fromDay.isAfter(toDay)) {
+            // Khoảng ngắn hơn một ngày trọn vẹn hoặc chỉ gồm hôm nay
+            return live(storeId, start, null, end);
+        }
+
+        Totals result = rollup(storeId, fromDay, toDay);
+        if (start != null && start.isBefore(fromDay.atStartOfDay())) {
+            result = result.plus(live(storeId, start, fromDay.atStartOfDay(), null));
+        }
+        return result.plus(live(storeId, toDay.plusDays(1).atStartOfDay(), null, end));
+    }
+
+    @Scheduled(fixedDelayString = "${orders.stats.flushDelayMs:2000}")
+    public synchronized void flush() {
+        int flushed = 0;
+        for (Key key : pending.keySet()) {
+            Totals delta = pending.get(key);
+            if (delta == null || delta.isZero()) {
+                pending.computeIfPresent(key, (k, current) -> current.isZero() ? null : current);
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> statsRepository.applyDelta(key.storeId(),
+                        key.day(), delta.processing(), delta.delivered(), delta.cancelled(), delta.revenue()));
+                // Chỉ trừ đúng phần đã ghi; delta commit thêm trong lúc ghi vẫn nằm lại cho chu kỳ sau
+                pending.computeIfPresent(key, (k, current) -> {
+                    Totals rest = current.minus(delta);
+                    return rest.isZero() ? null : rest;
+                });
+                flushed++;
+            } catch (RuntimeException ex) {
+                // Delta vẫn nằm trong pending, chu kỳ sau ghi tiếp
+                log.error("Failed to flush order stats for store {} on {}: {}", key.storeId(), key.day(), ex.getMessage());
+            }
+        }
+        if (flushed > 0) {
+            log.debug("Flushed order stats deltas for {} store-days", flushed);
+        }
+    }
+
+    /**
+     * Môi trường không chạy Flyway (ddl-auto=update) chỉ có bảng rỗng: dựng lại một lần từ orders.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (statsRepository.count() > 0) {
+            return;
+        }
+        // Delta đã commit trước thời điểm này đều nằm sẵn trong orders
+        pending.clear();
+        int rows = statsRepository.backfillFromOrders();
+        if (rows > 0) {
+            log.info("Backfilled order_daily_stats with {} store-days", rows);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Totals rollup(Long storeId, LocalDate fromDay, LocalDate toDay) {
+        Totals stored = toTotals(statsRepository.sumRange(storeId, fromDay, toDay));
+        // Delta đã commit nhưng chưa flush
+        for (Map.Entry<Key, Totals> e : pending.entrySet()) {
+            Key key = e.getKey();
+            if ((storeId == null || storeId.equals(key.storeId()))
+                    && (fromDay == null || !key.day().isBefore(fromDay))
+                    && !key.day().isAfter(toDay)) {
+                stored = stored.plus(e.getValue());
+            }
+        }
+        return stored;
+    }
+
+    private Totals live(Long storeId, LocalDateTime start, LocalDateTime before, LocalDateTime end) {
+        return toTotals(orderRepository.aggregateStats(storeId, PROCESSING, OrderStatus.DELIVERED, CANCELLED,
+                start, before, end));
+    }
+
+    private void add(Key key, Totals delta) {
+        pending.merge(key, delta, Totals::plus);
+    }
+
+    private static Totals contribution(OrderStatus status, BigDecimal amount) {
+        if (status == OrderStatus.DELIVERED) {
+            return new Totals(amount, 0, 1, 0);
+        }
+        if (PROCESSING.contains(status)) {
+            return new Totals(BigDecimal.ZERO, 1, 0, 0);
+        }
+        if (CANCELLED.contains(status)) {
+            return new Totals(BigDecimal.ZERO, 0, 0, 1);
+        }
+        return Totals.ZERO;
+    }
+
+    private static Totals toTotals(List<Object[]> rows) {
+        if (rows.isEmpty() || rows.get(0) == null) {
+            return Totals.ZERO;
+        }
+        Object[] row = rows.get(0);
+        return new Totals(toBigDecimal(row[0]), toLong(row[1]), toLong(row[2]), toLong(row[3]));
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal bd ? bd : new BigDecimal(value.toString());
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+}
@@ -0,0 +1,274 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.entity.Order;
+import com.fastfood.management.entity.OrderItem;
+import com.fastfood.management.entity.PopularItemSnapshot;
+import com.fastfood.management.repository.OrderItemRepository;
+import com.fastfood.management.repository.PopularItemSnapshotRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Món bán chạy theo cửa hàng và cửa sổ thời gian, không quét order_items.
+ * - Mỗi (store, cửa sổ) là một vòng slot; mỗi slot là một SpaceSavingSketch. Đơn mới cộng vào slot hiện tại
+ *   sau khi commit, slot quá hạn được xoá khi vòng quay lại.
+ * - top(): gộp các slot còn trong cửa sổ rồi lấy K lớn nhất; kết quả được nhớ tới khi có đơn mới/sang slot mới.
+ * - snapshot() định kỳ ghi các slot thay đổi xuống popular_item_snapshots; khởi động thì nạp lại từ đó
+ *   (lần đầu chưa có snapshot thì dựng từ order_items 7 ngày gần nhất).
+ */
+@Component
+@Slf4j
+public class PopularItemsTracker {
+
+    private static final DateTimeFormatter HOUR_BUCKET = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final PopularItemSnapshotRepository snapshotRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final int capacity;
+
+    private final Map<RingKey, Ring> rings = new ConcurrentHashMap<>();
+
+    public enum Window {
+        HOUR(60, 5), DAY(24 * 60, 60), WEEK(7 * 24 * 60, 6 * 60);
+
+        final int slotMinutes;
+        final int slots;
+
+        Window(int lengthMinutes, int slotMinutes) {
+            this.slotMinutes = slotMinutes;
+            this.slots = lengthMinutes / slotMinutes;
+        }
+
+        long slotOf(LocalDateTime time) {
+            return time.toEpochSecond(ZoneOffset.UTC) / 60 / slotMinutes;
+        }
+
+        LocalDateTime slotStart(long slot) {
+            return LocalDateTime.ofEpochSecond(slot * slotMinutes * 60, 0, ZoneOffset.UTC);
+        }
+    }
+
+    public record PopularItem(Long menuItemId, long count, long error) {
+    }
+
+    private record RingKey(Long storeId, Window window) {
+    }
+
+    public PopularItemsTracker(PopularItemSnapshotRepository snapshotRepository,
+                               OrderItemRepository orderItemRepository,
+                               @Value("${menu.popular.capacity:64}") int capacity) {
+        this.snapshotRepository = snapshotRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.capacity = Math.max(8, capacity);
+    }
+
+    /**
+     * Ghi nhận món trong đơn vừa tạo; chỉ cộng khi transaction tạo đơn commit
+     */
+    public void recordOrder(Order order) {
+        if (order.getStore() == null || order.getOrderItems() == null) {
+            return;
+        }
+        Long storeId = order.getStore().getId();
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            if (item.getMenuItem() != null && item.getQuantity() != null) {
+                quantities.merge(item.getMenuItem().getId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Runnable apply = () -> {
+            LocalDateTime now = LocalDateTime.now();
+            quantities.forEach((menuItemId, qty) -> offer(storeId, menuItemId, qty, now));
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    public List<PopularItem> top(Long storeId, Window window, int k) {
+        Ring ring = rings.get(new RingKey(storeId, window));
+        if (ring == null) {
+            return List.of();
+        }
+        List<PopularItem> top = ring.top(window.slotOf(LocalDateTime.now()));
+        return top.size() > k ? top.subList(0, k) : top;
+    }
+
+    @Scheduled(fixedDelayString = "${menu.popular.snapshotMs:60000}")
+    public void snapshot() {
+        int written = 0;
+        for (Map.Entry<RingKey, Ring> e : rings.entrySet()) {
+            RingKey key = e.getKey();
+            for (Map.Entry<Long, String> slot : e.getValue().drainDirty().entrySet()) {
+                try {
+                    snapshotRepository.upsert(key.storeId(), key.window().name(),
+                            key.window().slotStart(slot.getKey()), slot.getValue());
+                    written++;
+                } catch (RuntimeException ex) {
+                    log.warn("Failed to snapshot popular items for store {} ({}): {}",
+                            key.storeId(), key.window(), ex.getMessage());
+                }
+            }
+        }
+        // Giữ lại đủ cho cửa sổ dài nhất
+        Window longest = Window.WEEK;
+        snapshotRepository.deleteBySlotStartBefore(
+                LocalDateTime.now().minusMinutes((long) (longest.slots + 1) * longest.slotMinutes));
+        if (written > 0) {
+            log.debug("Snapshotted {} popular-item slots", written);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        LocalDateTime now = LocalDateTime.now();
+        Window longest = Window.WEEK;
+        LocalDateTime since = longest.slotStart(longest.slotOf(now) - longest.slots + 1);
+        List<PopularItemSnapshot> snapshots = snapshotRepository.findBySlotStartGreaterThanEqual(since);
+        if (!snapshots.isEmpty()) {
+            for (PopularItemSnapshot s : snapshots) {
+                Window window;
+                try {
+                    window = Window.valueOf(s.getWindowName());
+                } catch (IllegalArgumentException ex) {
+                    continue;
+                }
+                ringOf(s.getStoreId(), window).restore(window.slotOf(s.getSlotStart()),
+                        SpaceSavingSketch.parse(s.getPayload(), capacity));
+            }
+            log.info("Loaded {} popular-item snapshot slots", snapshots.size());
+            return;
+        }
+
+        // Chưa có snapshot: dựng từ lịch sử theo giờ
+        List<Object[]> rows = orderItemRepository.sumQuantityByStoreItemAndHourSince(since);
+        for (Object[] row : rows) {
+            Long storeId = ((Number) row[0]).longValue();
+            Long menuItemId = ((Number) row[1]).longValue();
+            LocalDateTime hour = LocalDateTime.parse(row[2] + ":00", HOUR_BUCKET);
+            long qty = ((Number) row[3]).longValue();
+            offer(storeId, menuItemId, qty, hour);
+        }
+        if (!rows.isEmpty()) {
+            log.info("Seeded popular-item sketches from {} hourly order_items rows", rows.size());
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+
+    private void offer(Long storeId, Long menuItemId, long qty, LocalDateTime at) {
+        for (Window window : Window.values()) {
+            ringOf(storeId, window).offer(window.slotOf(at), menuItemId, qty);
+        }
+    }
+
+    private Ring ringOf(Long storeId, Window window) {
+        return rings.computeIfAbsent(new RingKey(storeId, window), k -> new Ring(window.slots, capacity));
+    }
+
+    /**
+     * Vòng slot của một (store, cửa sổ); mọi thao tác đồng bộ trên chính vòng
+     */
+    private static final class Ring {
+        private final int capacity;
+        private final SpaceSavingSketch[] sketches;
+        private final long[] slotIds;
+        private final boolean[] dirty;
+        private long version;
+        private long cachedVersion = -1;
+        private long cachedSlot = -1;
+        private List<PopularItem> cached = List.of();
+
+        Ring(int slots, int capacity) {
+            this.capacity = capacity;
+            this.sketches = new SpaceSavingSketch[slots];
+            this.slotIds = new long[slots];
+            this.dirty = new boolean[slots];
+            java.util.Arrays.fill(slotIds, Long.MIN_VALUE);
+        }
+
+        synchronized void offer(long slot, Long menuItemId, long qty) {
+            int pos = position(slot);
+            if (slotIds[pos] != slot) {
+                if (slotIds[pos] > slot) {
+                    return; // slot đã bị thay bởi slot mới hơn (dữ liệu seed quá cũ)
+                }
+                sketches[pos] = new SpaceSavingSketch(capacity);
+                slotIds[pos] = slot;
+            }
+            sketches[pos].offer(menuItemId, qty);
+            dirty[pos] = true;
+            version++;
+        }
+
+        synchronized void restore(long slot, SpaceSavingSketch sketch) {
+            int pos = position(slot);
+            if (slotIds[pos] <= slot) {
+                sketches[pos] = sketch;
+                slotIds[pos] = slot;
+                version++;
+            }
+        }
+
+        synchronized List<PopularItem> top(long currentSlot) {
+            if (version == cachedVersion && currentSlot == cachedSlot) {
+                return cached;
+            }
+            Map<Long, long[]> merged = new HashMap<>();
+            for (int i = 0; i < sketches.length; i++) {
+                if (sketches[i] != null && slotIds[i] > currentSlot - sketches.length && slotIds[i] <= currentSlot) {
+                    sketches[i].addTo(merged);
+                }
+            }
+            cached = SpaceSavingSketch.top(merged, capacity).stream()
+                    .map(e -> new PopularItem(e.itemId(), e.count(), e.error()))
+                    .toList();
+            cachedVersion = version;
+            cachedSlot = currentSlot;
+            return cached;
+        }
+
+        synchronized Map<Long, String> drainDirty() {
+            Map<Long, String> result = new HashMap<>();
+            for (int i = 0; i < dirty.length; i++) {
+                if (dirty[i] && sketches[i] != null) {
+                    result.put(slotIds[i], sketches[i].serialize());
+                    dirty[i] = false;
+                }
+            }
+            return result;
+        }
+
+        private int position(long slot) {
+            return (int) Math.floorMod(slot, (long) sketches.length);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.repository.FeedbackRepository;
+import com.fastfood.management.repository.MenuItemRepository;
+import com.fastfood.management.repository.StoreRepository;
+import com.fastfood.management.event.FeedbackRatingChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Tổng hợp đánh giá (count, sum, histogram 1-5) theo món và theo cửa hàng, lưu ngay trên menu_items/stores
+ * để danh sách menu trả kèm điểm trung bình mà không cần query gộp cho từng món.
+ * - FeedbackRatingListener báo mỗi lần thêm/sửa/xoá feedback; delta được cộng vào bộ nhớ sau khi commit
+ *   và flush() định kỳ ghi xuống bằng một câu UPDATE cộng dồn cho mỗi món/cửa hàng, mỗi món/cửa hàng một
+ *   transaction riêng để một dòng lỗi không kéo rollback các dòng đã ghi.
+ * - rebuild() dựng lại toàn bộ từ bảng feedback trong một lượt đọc stream; flush() và rebuild() không chạy đồng thời.
+ * - Điểm nằm trong JSON menu/store nên mỗi lần ghi đều báo CatalogCache bỏ entry liên quan.
+ */
+@Component
+@Slf4j
+public class RatingAggregator {
+
+    // {count, sum, star1..star5}
+    private static final int SLOTS = 7;
+
+    private final FeedbackRepository feedbackRepository;
+    private final MenuItemRepository menuItemRepository;
+    private final StoreRepository storeRepository;
+    private final CatalogCache catalogCache;
+    private final TransactionTemplate transactionTemplate;
+
+    // rebuild() thay cả map (không clear) để delta đang merge không rơi vào giữa lúc xoá
+    private volatile Map<Key, long[]> pending = new ConcurrentHashMap<>();
+
+    private enum Target { MENU_ITEM, STORE }
+
+    private record Key(Target target, Long id) {
+    }
+
+    public record RebuildResult(long feedbackRows, int menuItems, int stores) {
+    }
+
+    public RatingAggregator(FeedbackRepository feedbackRepository,
+                            MenuItemRepository menuItemRepository,
+                            StoreRepository storeRepository,
+                            CatalogCache catalogCache,
+                            PlatformTransactionManager transactionManager) {
+        this.feedbackRepository = feedbackRepository;
+        this.menuItemRepository = menuItemRepository;
+        this.storeRepository = storeRepository;
+        this.catalogCache = catalogCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener
+    public void onRatingChanged(FeedbackRatingChangedEvent event) {
+        record(event.menuItemId(), event.storeId(), event.rating(), event.sign());
+    }
+
+    /**
+     * Cộng (sign = 1) hoặc trừ (sign = -1) một đánh giá vào món và cửa hàng; chỉ áp dụng khi transaction commit.
+     * Điểm ngoài khoảng 1-5 bị bỏ qua.
+     */
+    public void record(Long menuItemId, Long storeId, Integer rating, int sign) {
+        if (rating == null || rating < 1 || rating > 5 || (menuItemId == null && storeId == null)) {
+            return;
+        }
+        Runnable apply = () -> {
+            if (menuItemId != null) {
+                add(new Key(Target.MENU_ITEM, menuItemId), rating, sign);
+            }
+            if (storeId != null) {
+                add(new Key(Target.STORE, storeId), rating, sign);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ratings.flushDelayMs:2000}")
+    public synchronized void flush() {
+        Map<Key, long[]> deltas = pending;
+        int flushed = 0;
+        for (Key key : deltas.keySet()) {
+            long[] delta = deltas.remove(key);
+            if (delta == null || isZero(delta)) {
+                continue;
+            }
+            try {
+                // Commit nằm trong try; cache chỉ bị bỏ sau khi dòng này đã commit
+                transactionTemplate.executeWithoutResult(status -> write(key, delta));
+                // Món không rõ cửa hàng chỉ ảnh hưởng danh sách toàn hệ thống; món có cửa hàng đi kèm key STORE
+                catalogCache.invalidateStore(key.target() == Target.STORE ? key.id() : null);
+                flushed++;
+            } catch (RuntimeException ex) {
+                // Giữ lại delta để chu kỳ sau ghi tiếp
+                deltas.merge(key, delta, RatingAggregator::plus);
+                log.error("Failed to flush ratings for {} {}: {}", key.target(), key.id(), ex.getMessage());
+            }
+        }
+        if (flushed > 0) {
+            log.debug("Flushed rating deltas for {} items/stores", flushed);
+        }
+    }
+
+    /**
+     * Đưa mọi tổng hợp về 0 rồi đọc bảng feedback một lượt (stream, không nạp hết vào bộ nhớ),
+     * cộng dồn theo món/cửa hàng và ghi lại. Bộ nhớ chỉ tỉ lệ với số món + cửa hàng, không với số feedback.
+     */
+    @Transactional
+    public synchronized RebuildResult rebuild() {
+        // Delta đã commit trước thời điểm này đều nằm sẵn trong feedback
+        pending = new ConcurrentHashMap<>();
+        Map<Long, long[]> items = new HashMap<>();
+        Map<Long, long[]> stores = new HashMap<>();
+        long rows = 0;
+        try (Stream<Object[]> stream = feedbackRepository.streamRatingsForRebuild()) {
+            for (Object[] row : (Iterable<Object[]>) stream::iterator) {
+                rows++;
+                if (!(row[2] instanceof Number n) || n.intValue() < 1 || n.intValue() > 5) {
+                    continue;
+                }
+                int rating = n.intValue();
+                if (row[0] != null) {
+                    accumulate(items.computeIfAbsent(((Number) row[0]).longValue(), id -> new long[SLOTS]), rating, 1);
+                }
+                if (row[1] != null) {
+                    accumulate(stores.computeIfAbsent(((Number) row[1]).longValue(), id -> new long[SLOTS]), rating, 1);
+                }
+            }
+        }
+
+        menuItemRepository.resetRatings();
+        storeRepository.resetRatings();
+        items.forEach((id, totals) -> write(new Key(Target.MENU_ITEM, id), totals));
+        stores.forEach((id, totals) -> write(new Key(Target.STORE, id), totals));
+        catalogCache.invalidateAll();
+        log.info("Rebuilt rating aggregates from {} feedback rows ({} menu items, {} stores)",
+                rows, items.size(), stores.size());
+        return new RebuildResult(rows, items.size(), stores.size());
+    }
+
+    /**
+     * Cột tổng hợp vừa được thêm (chưa có món/cửa hàng nào có đánh giá) mà bảng feedback đã có dữ liệu: dựng lại một lần.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (feedbackRepository.count() == 0
+                || menuItemRepository.existsByRating_CountGreaterThan(0L)
+                || storeRepository.existsByRating_CountGreaterThan(0L)) {
+            return;
+        }
+        rebuild();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(Key key, int rating, int sign) {
+        long[] delta = new long[SLOTS];
+        accumulate(delta, rating, sign);
+        pending.merge(key, delta, RatingAggregator::plus);
+    }
+
+    private void write(Key key, long[] d) {
+        if (key.target() == Target.MENU_ITEM) {
+            menuItemRepository.addRatings(key.id(), d[0], d[1], d[2], d[3], d[4], d[5], d[6]);
+        } else {
+            storeRepository.addRatings(key.id(), d[0], d[1], d[2], d[3], d[4], d[5], d[6]);
+        }
+    }
+
+    private static void accumulate(long[] totals, int rating, int sign) {
+        totals[0] += sign;
+        totals[1] += (long) sign * rating;
+        totals[1 + rating] += sign;
+    }
+
+    private static long[] plus(long[] a, long[] b) {
+        long[] sum = new long[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    private static boolean isZero(long[] delta) {
+        for (long v : delta) {
+            if (v != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
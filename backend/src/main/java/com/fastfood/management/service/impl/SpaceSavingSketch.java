@@ -0,0 +1,106 @@
+package com.fastfood.management.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving (Metwally et al.): giữ tối đa capacity bộ đếm, khi đầy thì thay phần tử có count nhỏ nhất
+ * và ghi lại sai số tối đa (error) của bộ đếm mới. Món thật sự bán chạy luôn nằm trong sketch,
+ * count ước lượng không bao giờ thấp hơn số thật và lệch tối đa error.
+ * Không thread-safe: PopularItemsTracker đồng bộ bên ngoài.
+ */
+final class SpaceSavingSketch {
+
+    private static final Comparator<Entry> BY_COUNT_DESC =
+            Comparator.comparingLong(Entry::count).reversed().thenComparing(Entry::itemId);
+
+    private final int capacity;
+    private final Map<Long, long[]> counters; // itemId -> {count, error}
+
+    record Entry(Long itemId, long count, long error) {
+    }
+
+    SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    void offer(Long itemId, long weight) {
+        long[] c = counters.get(itemId);
+        if (c != null) {
+            c[0] += weight;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(itemId, new long[]{weight, 0});
+            return;
+        }
+        // Thay bộ đếm nhỏ nhất (capacity nhỏ nên quét tuyến tính rẻ hơn duy trì heap khi count đổi liên tục)
+        Long minId = null;
+        long[] min = null;
+        for (Map.Entry<Long, long[]> e : counters.entrySet()) {
+            if (min == null || e.getValue()[0] < min[0]) {
+                minId = e.getKey();
+                min = e.getValue();
+            }
+        }
+        counters.remove(minId);
+        counters.put(itemId, new long[]{min[0] + weight, min[0]});
+    }
+
+    /**
+     * Cộng dồn sketch này vào acc (dùng khi gộp nhiều slot thời gian)
+     */
+    void addTo(Map<Long, long[]> acc) {
+        for (Map.Entry<Long, long[]> e : counters.entrySet()) {
+            long[] a = acc.computeIfAbsent(e.getKey(), k -> new long[2]);
+            a[0] += e.getValue()[0];
+            a[1] += e.getValue()[1];
+        }
+    }
+
+    boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    static List<Entry> top(Map<Long, long[]> counts, int k) {
+        List<Entry> entries = new ArrayList<>(counts.size());
+        counts.forEach((id, c) -> entries.add(new Entry(id, c[0], c[1])));
+        entries.sort(BY_COUNT_DESC);
+        return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+    }
+
+    // Dạng lưu snapshot: "itemId:count:error,itemId:count:error"
+    String serialize() {
+        StringBuilder sb = new StringBuilder(counters.size() * 16);
+        for (Map.Entry<Long, long[]> e : counters.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(e.getKey()).append(':').append(e.getValue()[0]).append(':').append(e.getValue()[1]);
+        }
+        return sb.toString();
+    }
+
+    static SpaceSavingSketch parse(String payload, int capacity) {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        if (payload == null || payload.isBlank()) {
+            return sketch;
+        }
+        for (String part : payload.split(",")) {
+            String[] f = part.split(":");
+            if (f.length != 3) {
+                continue;
+            }
+            try {
+                sketch.counters.put(Long.parseLong(f[0]), new long[]{Long.parseLong(f[1]), Long.parseLong(f[2])});
+            } catch (NumberFormatException ignored) {
+                // bỏ qua phần hỏng, phần còn lại vẫn dùng được
+            }
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,316 @@
+package com.fastfood.management.service.impl;
+
+import com.fastfood.management.entity.Inventory;
+import com.fastfood.management.entity.StockReservation;
+import com.fastfood.management.repository.InventoryRepository;
+import com.fastfood.management.repository.StockReservationRepository;
+import com.fastfood.management.service.api.StockReservationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Giữ hàng khi tạo đơn mà không khoá dòng inventory.
+ * - Mỗi món có bộ đếm "available" trong bộ nhớ, chia thành nhiều slot (striping) cho món tồn kho lớn
+ *   để hàng trăm request đặt cùng một món không tranh nhau một biến/dòng DB.
+ * - reserve/commit/release chỉ cập nhật bộ đếm và delta trong bộ nhớ; flush() định kỳ ghi delta ròng
+ *   xuống bảng inventory (mỗi món một UPDATE trong transaction riêng, món lỗi không kéo rollback các món đã ghi).
+ * - Phần đã giữ của từng đơn lưu ở bảng stock_reservations, ghi cùng transaction tạo đơn. commit/release khoá rồi xoá
+ *   các dòng đó trong transaction của người gọi và chỉ đổi bộ đếm sau commit, nên gọi lại lần hai (huỷ hai lần,
+ *   giao xong sau khi huỷ...) hay đơn không có dòng nào (tạo trước khi có bảng, món không theo dõi tồn kho) không trả
+ *   thêm hàng nào.
+ */
+@Service
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private final InventoryRepository inventoryRepository;
+    private final StockReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int stripes;
+    private final int hotStockThreshold;
+
+    // menuItemId -> bộ đếm; UNTRACKED cho món không có bản ghi inventory
+    private final Map<Long, ItemStock> stocks = new ConcurrentHashMap<>();
+    private static final ItemStock UNTRACKED = new ItemStock(1);
+
+    public StockReservationServiceImpl(InventoryRepository inventoryRepository,
+                                       StockReservationRepository reservationRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${inventory.reservation.stripes:8}") int stripes,
+                                       @Value("${inventory.reservation.hotStockThreshold:64}") int hotStockThreshold) {
+        this.inventoryRepository = inventoryRepository;
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.stripes = Math.max(1, stripes);
+        this.hotStockThreshold = hotStockThreshold;
+    }
+
+    @Override
+    @Transactional
+    public void reserve(Long orderId, Map<Long, Integer> quantities) {
+        Map<Long, Integer> taken = new HashMap<>();
+        try {
+            for (Map.Entry<Long, Integer> e : quantities.entrySet()) {
+                int qty = e.getValue() != null ? e.getValue() : 0;
+                if (qty <= 0) {
+                    continue;
+                }
+                ItemStock stock = stockOf(e.getKey());
+                if (stock == UNTRACKED) {
+                    continue;
+                }
+                if (!stock.tryTake(qty)) {
+                    throw new IllegalStateException("Món " + e.getKey() + " không đủ hàng trong kho");
+                }
+                stock.addDelta(qty, 0);
+                taken.put(e.getKey(), qty);
+            }
+        } catch (RuntimeException ex) {
+            giveBack(taken);
+            throw ex;
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+        // Transaction tạo đơn rollback -> dòng stock_reservations cũng rollback, trả lại hàng đã giữ trong bộ nhớ
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    giveBack(taken);
+                }
+            }
+        });
+        List<StockReservation> rows = new ArrayList<>(taken.size());
+        taken.forEach((menuItemId, qty) -> rows.add(StockReservation.builder()
+                .orderId(orderId).menuItemId(menuItemId).quantity(qty).build()));
+        reservationRepository.saveAll(rows);
+    }
+
+    @Override
+    @Transactional
+    public void commit(Long orderId) {
+        Map<Long, Integer> reserved = takeReservation(orderId);
+        if (reserved.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> {
+            reserved.forEach((menuItemId, qty) -> {
+                ItemStock stock = stockOf(menuItemId);
+                if (stock != UNTRACKED) {
+                    stock.addDelta(-qty, qty);
+                }
+            });
+        });
+    }
+
+    @Override
+    @Transactional
+    public void release(Long orderId) {
+        Map<Long, Integer> reserved = takeReservation(orderId);
+        if (!reserved.isEmpty()) {
+            afterCommit(() -> giveBack(reserved));
+        }
+    }
+
+    @Override
+    public void adjustAvailable(Long menuItemId, int quantityDelta) {
+        ItemStock stock = stocks.get(menuItemId);
+        if (stock == null) {
+            return; // chưa load, lần reserve đầu sẽ đọc số mới từ DB
+        }
+        if (stock == UNTRACKED) {
+            stocks.remove(menuItemId, UNTRACKED);
+            return;
+        }
+        stock.give(quantityDelta);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${inventory.reservation.flushDelayMs:2000}")
+    public void flush() {
+        int flushed = 0;
+        for (Map.Entry<Long, ItemStock> e : stocks.entrySet()) {
+            ItemStock stock = e.getValue();
+            if (stock == UNTRACKED) {
+                continue;
+            }
+            int reservedDelta = stock.drainReservedDelta();
+            int committed = stock.drainCommitted();
+            if (reservedDelta == 0 && committed == 0) {
+                continue;
+            }
+            try {
+                // Commit nằm trong try: chỉ khi chính món này không commit được mới trả delta lại
+                transactionTemplate.executeWithoutResult(status ->
+                        inventoryRepository.applyReservationDelta(e.getKey(), reservedDelta, committed));
+                flushed++;
+            } catch (RuntimeException ex) {
+                // Giữ lại delta để chu kỳ sau ghi tiếp
+                stock.addDelta(reservedDelta, committed);
+                log.error("Failed to flush inventory delta for menu item {}: {}", e.getKey(), ex.getMessage());
+            }
+        }
+        if (flushed > 0) {
+            log.debug("Flushed inventory reservation deltas for {} menu items", flushed);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private ItemStock stockOf(Long menuItemId) {
+        return stocks.computeIfAbsent(menuItemId, id -> {
+            Optional<Inventory> inv = inventoryRepository.findByMenuItemId(id);
+            if (inv.isEmpty() || inv.get().getQuantity() == null) {
+                return UNTRACKED;
+            }
+            int reserved = inv.get().getReserved() != null ? inv.get().getReserved() : 0;
+            int available = Math.max(0, inv.get().getQuantity() - reserved);
+            ItemStock stock = new ItemStock(available >= hotStockThreshold ? stripes : 1);
+            stock.give(available);
+            return stock;
+        });
+    }
+
+    // Khoá và xoá các dòng giữ hàng của đơn; không có dòng (đã commit/release, hoặc chưa từng giữ) -> rỗng
+    private Map<Long, Integer> takeReservation(Long orderId) {
+        List<StockReservation> rows = reservationRepository.findByOrderId(orderId);
+        if (rows.isEmpty()) {
+            return Map.of();
+        }
+        reservationRepository.deleteAllInBatch(rows);
+        Map<Long, Integer> reserved = new HashMap<>();
+        for (StockReservation row : rows) {
+            reserved.merge(row.getMenuItemId(), row.getQuantity(), Integer::sum);
+        }
+        return reserved;
+    }
+
+    private void giveBack(Map<Long, Integer> quantities) {
+        quantities.forEach((menuItemId, qty) -> {
+            ItemStock stock = stockOf(menuItemId);
+            if (stock != UNTRACKED) {
+                stock.give(qty);
+                stock.addDelta(-qty, 0);
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Bộ đếm available chia slot. Đường nhanh: CAS trên slot của thread hiện tại, không khoá.
+     * Khi không slot nào đủ (phân mảnh), gom toàn bộ slot dưới lock rồi chia lại.
+     * Mỗi đơn vị hàng chỉ bị lấy bởi đúng một CAS/getAndSet nên không bao giờ bán vượt.
+     */
+    static final class ItemStock {
+        private final AtomicIntegerArray slots;
+        private final AtomicIntegerArray reservedDelta;
+        private final AtomicIntegerArray committed;
+
+        ItemStock(int stripes) {
+            this.slots = new AtomicIntegerArray(stripes);
+            this.reservedDelta = new AtomicIntegerArray(stripes);
+            this.committed = new AtomicIntegerArray(stripes);
+        }
+
+        boolean tryTake(int qty) {
+            int n = slots.length();
+            int start = n == 1 ? 0 : ThreadLocalRandom.current().nextInt(n);
+            for (int i = 0; i < n; i++) {
+                int idx = (start + i) % n;
+                int cur;
+                while ((cur = slots.get(idx)) >= qty) {
+                    if (slots.compareAndSet(idx, cur, cur - qty)) {
+                        return true;
+                    }
+                }
+            }
+            return n > 1 && consolidateAndTake(qty);
+        }
+
+        private synchronized boolean consolidateAndTake(int qty) {
+            int n = slots.length();
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                total += slots.getAndSet(i, 0);
+            }
+            boolean ok = total >= qty;
+            int remaining = ok ? total - qty : total;
+            // chia lại đều cho các slot
+            int share = remaining / n;
+            for (int i = 0; i < n; i++) {
+                slots.addAndGet(i, i == 0 ? share + remaining % n : share);
+            }
+            return ok;
+        }
+
+        void give(int qty) {
+            slots.addAndGet(slot(), qty);
+        }
+
+        void addDelta(int reserved, int committedQty) {
+            int idx = slot();
+            if (reserved != 0) {
+                reservedDelta.addAndGet(idx, reserved);
+            }
+            if (committedQty != 0) {
+                committed.addAndGet(idx, committedQty);
+            }
+        }
+
+        int drainReservedDelta() {
+            return drain(reservedDelta);
+        }
+
+        int drainCommitted() {
+            return drain(committed);
+        }
+
+        private static int drain(AtomicIntegerArray arr) {
+            int sum = 0;
+            for (int i = 0; i < arr.length(); i++) {
+                sum += arr.getAndSet(i, 0);
+            }
+            return sum;
+        }
+
+        private int slot() {
+            int n = slots.length();
+            return n == 1 ? 0 : ThreadLocalRandom.current().nextInt(n);
+        }
+    }
+}
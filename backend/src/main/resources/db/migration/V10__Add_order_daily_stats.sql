@@ -0,0 +1,24 @@
+-- Per-store, per-day order rollup backing getOrderStats; kept current on every status transition
+CREATE TABLE order_daily_stats (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    store_id BIGINT NOT NULL,
+    stat_date DATE NOT NULL,
+    processing_count BIGINT NOT NULL DEFAULT 0,
+    delivered_count BIGINT NOT NULL DEFAULT 0,
+    cancelled_count BIGINT NOT NULL DEFAULT 0,
+    delivered_revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    CONSTRAINT uq_order_daily_stats_store_day UNIQUE (store_id, stat_date)
+);
+
+INSERT INTO order_daily_stats (store_id, stat_date, processing_count, delivered_count, cancelled_count, delivered_revenue)
+SELECT store_id, DATE(created_at),
+       SUM(CASE WHEN status IN ('CREATED','CONFIRMED','PREPARING','READY_FOR_DELIVERY','ASSIGNED','OUT_FOR_DELIVERY') THEN 1 ELSE 0 END),
+       SUM(CASE WHEN status = 'DELIVERED' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN status IN ('CANCELLED','REJECTED','FAILED') THEN 1 ELSE 0 END),
+       COALESCE(SUM(CASE WHEN status = 'DELIVERED' THEN total_amount ELSE 0 END), 0)
+FROM orders
+WHERE store_id IS NOT NULL
+GROUP BY store_id, DATE(created_at);
+
+-- Live part of the stats (today and partial-day edges) scans orders by store and creation time
+CREATE INDEX idx_orders_store_created ON orders(store_id, created_at);
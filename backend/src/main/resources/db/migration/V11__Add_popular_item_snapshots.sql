@@ -0,0 +1,9 @@
+-- Periodic snapshots of the per-store best-seller sketches (one row per store, window and time slot)
+CREATE TABLE popular_item_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    store_id BIGINT NOT NULL,
+    window_name VARCHAR(16) NOT NULL,
+    slot_start DATETIME NOT NULL,
+    payload TEXT NOT NULL,
+    CONSTRAINT uq_popular_item_snapshots_slot UNIQUE (store_id, window_name, slot_start)
+);
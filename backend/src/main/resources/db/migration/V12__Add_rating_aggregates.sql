@@ -0,0 +1,20 @@
+-- Running rating aggregates (count, sum, 1-5 star histogram) per menu item and per store, embedded in menu responses
+ALTER TABLE menu_items
+    ADD COLUMN rating_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_sum BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_1 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_2 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_3 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_4 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_5 BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE stores
+    ADD COLUMN rating_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_sum BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_1 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_2 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_3 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_4 BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_5 BIGINT NOT NULL DEFAULT 0;
+
+-- Existing feedback is folded in by RatingAggregator.rebuildIfEmpty on the next startup (one streaming pass)
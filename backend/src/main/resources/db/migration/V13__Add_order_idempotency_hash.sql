@@ -0,0 +1,2 @@
+-- SHA-256 of the POST /orders body stored with its Idempotency-Key, so a reused key with a different body is rejected
+ALTER TABLE orders ADD COLUMN idempotency_hash VARCHAR(64) NULL;
@@ -0,0 +1,8 @@
+-- Durable per-order stock reservations: a row exists while the quantity is held, commit/release delete it exactly once
+CREATE TABLE stock_reservations (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    menu_item_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    CONSTRAINT uq_stock_reservation_order_item UNIQUE (order_id, menu_item_id)
+);
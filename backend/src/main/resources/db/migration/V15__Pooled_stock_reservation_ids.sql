@@ -0,0 +1,3 @@
+-- stock_reservations is written on every order (one row per line), so allocate its ids from id_generators
+-- like orders/order_items and let Hibernate JDBC-batch the inserts (see V4__Pooled_id_generators.sql).
+INSERT INTO id_generators (gen_name, gen_value) SELECT 'stock_reservations', COALESCE(MAX(id), 0) + 50 FROM stock_reservations;
@@ -0,0 +1,14 @@
+-- Pooled id allocation for high-volume tables so Hibernate can JDBC-batch inserts
+-- (GenerationType.IDENTITY disables insert batching).
+CREATE TABLE IF NOT EXISTS id_generators (
+    gen_name VARCHAR(255) NOT NULL PRIMARY KEY,
+    gen_value BIGINT
+);
+
+-- Seed each allocator above the current max id (+ allocationSize) so pooled ranges never collide
+-- with rows created by AUTO_INCREMENT before this migration.
+INSERT INTO id_generators (gen_name, gen_value) SELECT 'orders', COALESCE(MAX(id), 0) + 50 FROM orders;
+INSERT INTO id_generators (gen_name, gen_value) SELECT 'order_items', COALESCE(MAX(id), 0) + 50 FROM order_items;
+INSERT INTO id_generators (gen_name, gen_value) SELECT 'order_activity', COALESCE(MAX(id), 0) + 50 FROM order_activity;
+INSERT INTO id_generators (gen_name, gen_value) SELECT 'payments', COALESCE(MAX(id), 0) + 50 FROM payments;
+INSERT INTO id_generators (gen_name, gen_value) SELECT 'delivery_events', COALESCE(MAX(id), 0) + 50 FROM delivery_events;
@@ -0,0 +1,3 @@
+-- Idempotency-Key for POST /orders (dedupe client retries), unique per customer
+ALTER TABLE orders ADD COLUMN idempotency_key VARCHAR(64) NULL;
+CREATE UNIQUE INDEX uq_orders_customer_idem_key ON orders(customer_id, idempotency_key);
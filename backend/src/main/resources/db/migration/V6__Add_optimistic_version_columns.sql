@@ -0,0 +1,4 @@
+-- Optimistic locking for rows updated concurrently by the auto-assign scheduler, drone simulator and manual status changes
+ALTER TABLE orders ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE deliveries ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE drones ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,19 @@
+-- Per-status transition timestamps on orders (timeline / SLA without reading order_activity)
+ALTER TABLE orders
+    ADD COLUMN confirmed_at TIMESTAMP NULL,
+    ADD COLUMN preparing_at TIMESTAMP NULL,
+    ADD COLUMN ready_at TIMESTAMP NULL,
+    ADD COLUMN assigned_at TIMESTAMP NULL,
+    ADD COLUMN out_for_delivery_at TIMESTAMP NULL,
+    ADD COLUMN delivered_at TIMESTAMP NULL,
+    ADD COLUMN closed_at TIMESTAMP NULL;
+
+-- Backfill existing orders from the activity log (first time each status was reached)
+UPDATE orders o SET
+    confirmed_at = (SELECT MIN(a.created_at) FROM order_activity a WHERE a.order_id = o.id AND a.to_status = 'CONFIRMED'),
+    preparing_at = (SELECT MIN(a.created_at) FROM order_activity a WHERE a.order_id = o.id AND a.to_status = 'PREPARING'),
+    ready_at = (SELECT MIN(a.created_at) FROM order_activity a WHERE a.order_id = o.id AND a.to_status = 'READY_FOR_DELIVERY'),
+    assigned_at = (SELECT MIN(a.created_at) FROM order_activity a WHERE a.order_id = o.id AND a.to_status = 'ASSIGNED'),
+    out_for_delivery_at = (SELECT MIN(a.created_at) FROM order_activity a WHERE a.order_id = o.id AND a.to_status = 'OUT_FOR_DELIVERY'),
+    delivered_at = (SELECT MIN(a.created_at) FROM order_activity a WHERE a.order_id = o.id AND a.to_status = 'DELIVERED'),
+    closed_at = (SELECT MIN(a.created_at) FROM order_activity a WHERE a.order_id = o.id AND a.to_status IN ('CANCELLED', 'REJECTED', 'FAILED'));
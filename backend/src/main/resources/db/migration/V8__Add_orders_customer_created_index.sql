@@ -0,0 +1,2 @@
+-- Keyset pagination of a customer's order history: (created_at, id) descending
+CREATE INDEX idx_orders_customer_created ON orders(customer_id, created_at, id);
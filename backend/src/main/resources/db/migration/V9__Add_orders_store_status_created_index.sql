@@ -0,0 +1,2 @@
+-- Admin/kitchen order listing by store and status, ordered by creation time
+CREATE INDEX idx_orders_store_status_created ON orders(store_id, status, created_at);
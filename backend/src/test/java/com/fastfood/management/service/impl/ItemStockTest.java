@@ -0,0 +1,120 @@
+package com.fastfood.management.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Nhiều thread cùng giữ/trả một món trên StockReservationServiceImpl.ItemStock: không bao giờ bán vượt tồn kho
+ * và tổng các slot luôn bảo toàn (đường CAS nhanh lẫn lúc gom slot trong consolidateAndTake).
+ */
+class ItemStockTest {
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 20_000;
+
+    @Test
+    void concurrentTakeAndGiveNeverOversellsSingleSlot() throws Exception {
+        runContended(1, 50);
+    }
+
+    @Test
+    void concurrentTakeAndGiveNeverOversellsStriped() throws Exception {
+        runContended(8, 200);
+    }
+
+    @Test
+    void fragmentedSlotsAreConsolidatedForLargeTake() {
+        StockReservationServiceImpl.ItemStock stock = new StockReservationServiceImpl.ItemStock(8);
+        for (int i = 0; i < 16; i++) {
+            stock.give(1);
+        }
+        // Không slot nào chắc chắn có đủ 16: phải gom toàn bộ mới lấy được
+        assertTrue(stock.tryTake(16));
+        assertFalse(stock.tryTake(1));
+    }
+
+    @Test
+    void takeBeyondStockFailsWithoutLosingUnits() {
+        StockReservationServiceImpl.ItemStock stock = new StockReservationServiceImpl.ItemStock(8);
+        stock.give(10);
+        assertFalse(stock.tryTake(11));
+        assertEquals(10, drain(stock));
+    }
+
+    private static void runContended(int stripes, int initial) throws Exception {
+        StockReservationServiceImpl.ItemStock stock = new StockReservationServiceImpl.ItemStock(stripes);
+        stock.give(initial);
+        // Số đang bị giữ: tăng sau khi lấy được, giảm trước khi trả nên không bao giờ lớn hơn số thật
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger takenTotal = new AtomicInteger();
+        AtomicInteger givenTotal = new AtomicInteger();
+        AtomicBoolean oversold = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    List<Integer> mine = new ArrayList<>();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        if (mine.isEmpty() || random.nextInt(3) != 0) {
+                            int qty = 1 + random.nextInt(5);
+                            if (stock.tryTake(qty)) {
+                                if (held.addAndGet(qty) > initial) {
+                                    oversold.set(true);
+                                }
+                                takenTotal.addAndGet(qty);
+                                mine.add(qty);
+                            }
+                        } else {
+                            int qty = mine.remove(mine.size() - 1);
+                            held.addAndGet(-qty);
+                            givenTotal.addAndGet(qty);
+                            stock.give(qty);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertFalse(oversold.get(), "held more units than the stock");
+        int outstanding = takenTotal.get() - givenTotal.get();
+        assertEquals(held.get(), outstanding);
+        assertTrue(outstanding <= initial);
+        // Tổng slot còn lại + phần đang giữ = tồn kho ban đầu
+        assertEquals(initial - outstanding, drain(stock));
+    }
+
+    // Lấy từng đơn vị tới khi hết; với nhiều slot tryTake tự gom khi phân mảnh nên chỉ trả false khi tổng bằng 0
+    private static int drain(StockReservationServiceImpl.ItemStock stock) {
+        int units = 0;
+        while (stock.tryTake(1)) {
+            units++;
+        }
+        return units;
+    }
+}
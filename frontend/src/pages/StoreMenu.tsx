@@ -524,7 +524,7 @@ const StoreMenu: React.FC = () => {
         setLoading(true);
         const [storeInfo, menu] = await Promise.all([
           fetchStoreById(id),
-          fetchStoreMenu(id, 0, 100),
+          fetchStoreMenu(id),
         ]);
         setStore(storeInfo || MOCK_STORE);
         setItems(menu.length ? menu : MOCK_MENU);
@@ -186,23 +186,39 @@ export async function getOrderById(userId: string | number, orderId: string | nu
   return res.data;
 }
 
+// Lịch sử đơn phân trang keyset (backend trả tối đa 100 đơn/trang); trang kế tiếp lấy theo header X-Next-Cursor
+const MY_ORDERS_PAGE_SIZE = 100;
+const MY_ORDERS_MAX_PAGES = 50;
+
+interface MyOrdersPage { data: any; next?: string }
+
+async function fetchMyOrdersPage(path: string, userId?: string | number, cursor?: string): Promise<MyOrdersPage> {
+  const params: Record<string, any> = { limit: MY_ORDERS_PAGE_SIZE };
+  if (userId !== undefined) params.userId = userId;
+  if (cursor) params.cursor = cursor;
+  const res = await api.get(path, { params });
+  const next = res.headers?.['x-next-cursor'];
+  return { data: res.data, next: typeof next === 'string' && next ? next : undefined };
+}
+
 export async function listMyOrders(userId: string | number): Promise<OrderVM[]> {
-  let data: any;
+  let page: MyOrdersPage;
+  let path = '/orders/me/compact';
+  let pageUserId: string | number | undefined = userId;
   try {
     // Ưu tiên endpoint compact để tránh payload quá lớn
-    const res = await api.get('/orders/me/compact', { params: { userId } });
-    data = res.data;
+    page = await fetchMyOrdersPage(path, userId);
   } catch (e: any) {
     // Fallback sang endpoint đầy đủ nếu compact không có (404/500/403)
+    path = '/orders/me';
     try {
-      const res2 = await api.get('/orders/me', { params: { userId } });
-      data = res2.data;
+      page = await fetchMyOrdersPage(path, userId);
     } catch (e2: any) {
-      // Thử thêm lần nữa không kèm params nếu 403
+      // Thử thêm lần nữa không kèm userId nếu 403
       if (e2?.response?.status === 403) {
+        pageUserId = undefined;
         try {
-          const res3 = await api.get('/orders/me');
-          data = res3.data;
+          page = await fetchMyOrdersPage(path);
         } catch (e3: any) {
           console.warn('listMyOrders: fallback failed', e3?.message || e3);
           return [];
@@ -214,6 +230,21 @@ export async function listMyOrders(userId: string | number): Promise<OrderVM[]>
     }
   }
 
+  const orders = parseMyOrders(page.data);
+  // Đi tiếp theo con trỏ trên cùng endpoint đã dùng cho trang đầu
+  for (let pages = 1; page.next && pages < MY_ORDERS_MAX_PAGES; pages++) {
+    try {
+      page = await fetchMyOrdersPage(path, pageUserId, page.next);
+    } catch (e: any) {
+      console.warn('listMyOrders: next page failed, returning orders loaded so far', e?.message || e);
+      break;
+    }
+    orders.push(...parseMyOrders(page.data));
+  }
+  return orders.map(toVM);
+}
+
+function parseMyOrders(data: any): OrderDTO[] {
   // Một số môi trường trả về chuỗi (HTML hoặc JSON dạng text), cần xử lý an toàn
   if (typeof data === 'string') {
     const trimmed = data.trim();
@@ -283,7 +314,7 @@ export async function listMyOrders(userId: string | number): Promise<OrderVM[]>
     console.warn('listMyOrders: Response is neither array nor object');
     orders = [];
   }
-  return orders.map(toVM);
+  return orders;
 }
 
 // Types used when creating an order from Checkout
@@ -99,8 +99,9 @@ export interface MenuItemViewModel {
   available: boolean;
 }
 
-export async function fetchStoreMenu(storeId: string | number, page = 0, size = 12): Promise<MenuItemViewModel[]> {
-  const res = await api.get(`/stores/${storeId}/menu`, { params: { page, size } });
+export async function fetchStoreMenu(storeId: string | number, page?: number, size?: number): Promise<MenuItemViewModel[]> {
+  // Không phân trang: backend trả cả menu từ snapshot nén sẵn
+  const res = await api.get(`/stores/${storeId}/menu`, page != null && size != null ? { params: { page, size } } : undefined);
   const items: MenuItemDTO[] = res.data;
   return items.map((i) => ({
     id: String(i.id),